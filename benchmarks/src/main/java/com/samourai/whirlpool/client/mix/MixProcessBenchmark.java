@@ -0,0 +1,299 @@
+package com.samourai.whirlpool.client.mix;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samourai.wallet.segwit.bech32.Bech32UtilGeneric;
+import com.samourai.wallet.util.TxUtil;
+import com.samourai.whirlpool.client.mix.handler.IPostmixHandler;
+import com.samourai.whirlpool.client.mix.handler.PremixHandler;
+import com.samourai.whirlpool.client.mix.handler.UtxoWithBalance;
+import com.samourai.whirlpool.client.utils.ClientCryptoService;
+import com.samourai.whirlpool.client.utils.ClientUtils;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolServer;
+import com.samourai.whirlpool.client.whirlpool.WhirlpoolClientConfig;
+import com.samourai.whirlpool.protocol.WhirlpoolProtocol;
+import com.samourai.whirlpool.protocol.beans.Utxo;
+import com.samourai.whirlpool.protocol.websocket.messages.ConfirmInputRequest;
+import com.samourai.whirlpool.protocol.websocket.messages.ConfirmInputResponse;
+import com.samourai.whirlpool.protocol.websocket.messages.RegisterInputRequest;
+import com.samourai.whirlpool.protocol.websocket.messages.SigningRequest;
+import com.samourai.whirlpool.protocol.websocket.messages.SubscribePoolResponse;
+import com.samourai.whirlpool.protocol.websocket.notifications.ConfirmInputMixStatusNotification;
+import com.samourai.whirlpool.protocol.websocket.notifications.RegisterOutputMixStatusNotification;
+import com.samourai.whirlpool.protocol.websocket.notifications.SigningMixStatusNotification;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bouncycastle.crypto.engines.RSAEngine;
+import org.bouncycastle.crypto.params.RSABlindingParameters;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Client side of a mix: REGISTER_INPUT message signing, bordereau blinding and unblinding, and
+ * SIGNING (parse coordinator tx, verifyTx, find receive output, sign input, serialize witness)
+ * on mix transactions of 5 to 100 inputs. signing() must complete before coordinator deadline for
+ * each client running on the host, so it is also broken down step by step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MixProcessBenchmark {
+  private static final String POOL_ID = "0.01btc";
+  private static final long DENOMINATION = 1000000;
+  private static final long MUST_MIX_BALANCE_MIN = 1000170;
+  private static final long MUST_MIX_BALANCE_CAP = 1009500;
+  private static final long MUST_MIX_BALANCE_MAX = 1010000;
+  private static final long PREMIX_BALANCE = 1000300;
+  private static final String MIX_ID = "mixBenchmark";
+  private static final String USER_PRE_HASH = "userPreHash";
+  private static final String RECEIVE_ADDRESS = "tb1qjara0278vrsr8gvaga7jpy2c9amtgvytr44xym";
+
+  @Param({"5", "10", "50", "100"})
+  private int nbInputs;
+
+  private NetworkParameters params;
+  private WhirlpoolClientConfig config;
+  private ClientCryptoService clientCryptoService;
+  private ObjectMapper mapper;
+
+  private ECKey premixKey;
+  private UtxoWithBalance premixUtxo;
+  private IPostmixHandler postmixHandler;
+  private RSAKeyParameters coordinatorPrivateKey;
+  private RSAKeyParameters coordinatorPublicKey;
+  private byte[] coordinatorPublicKeySerialized;
+
+  // protocol messages
+  private SubscribePoolResponse subscribePoolResponse;
+  private ConfirmInputMixStatusNotification confirmInputNotification;
+  private RegisterOutputMixStatusNotification registerOutputNotification;
+  private SigningMixStatusNotification signingNotification;
+
+  // computed values
+  private RSABlindingParameters blindingParams;
+  private byte[] signedBordereau;
+  private Transaction mixTx;
+  private Transaction signedMixTx;
+  private int inputIndex;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    params = WhirlpoolServer.LOCAL_TESTNET.getParams();
+    config = new WhirlpoolClientConfig(null, null, null, null, params, false);
+    clientCryptoService = new ClientCryptoService();
+    mapper = new ObjectMapper();
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    premixKey = new ECKey();
+    premixUtxo =
+        new UtxoWithBalance(
+            Sha256Hash.of("mix-benchmark-premix".getBytes()).toString(), 1, PREMIX_BALANCE);
+    postmixHandler =
+        new IPostmixHandler() {
+          @Override
+          public String computeReceiveAddress(NetworkParameters params) {
+            return RECEIVE_ADDRESS;
+          }
+
+          @Override
+          public void confirmReceiveAddress() {}
+
+          @Override
+          public void cancelReceiveAddress() {}
+        };
+
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+    keyPairGenerator.initialize(2048);
+    KeyPair keyPair = keyPairGenerator.generateKeyPair();
+    RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+    coordinatorPrivateKey =
+        new RSAKeyParameters(true, privateKey.getModulus(), privateKey.getPrivateExponent());
+    coordinatorPublicKeySerialized = keyPair.getPublic().getEncoded();
+    coordinatorPublicKey =
+        clientCryptoService.getPublicKey(POOL_ID, coordinatorPublicKeySerialized);
+
+    // mix tx with our input and output in the middle
+    mixTx = computeMixTx();
+    byte[] rawTx = mixTx.bitcoinSerialize();
+    inputIndex =
+        TxUtil.getInstance().findInputIndex(mixTx, premixUtxo.getHash(), premixUtxo.getIndex());
+    signedMixTx = new Transaction(params, rawTx);
+    new PremixHandler(premixUtxo, premixKey, USER_PRE_HASH)
+        .signTransaction(signedMixTx, inputIndex, params);
+
+    Map<String, Object> subscribePool = new HashMap<String, Object>();
+    subscribePool.put("networkId", params.getPaymentProtocolId());
+    subscribePool.put("denomination", DENOMINATION);
+    subscribePool.put("mustMixBalanceMin", MUST_MIX_BALANCE_MIN);
+    subscribePool.put("mustMixBalanceCap", MUST_MIX_BALANCE_CAP);
+    subscribePool.put("mustMixBalanceMax", MUST_MIX_BALANCE_MAX);
+    subscribePoolResponse = mapper.convertValue(subscribePool, SubscribePoolResponse.class);
+
+    Map<String, Object> confirmInput = new HashMap<String, Object>();
+    confirmInput.put("mixId", MIX_ID);
+    confirmInput.put("publicKey64", WhirlpoolProtocol.encodeBytes(coordinatorPublicKeySerialized));
+    confirmInputNotification =
+        mapper.convertValue(confirmInput, ConfirmInputMixStatusNotification.class);
+
+    Map<String, Object> registerOutput = new HashMap<String, Object>();
+    registerOutput.put("mixId", MIX_ID);
+    registerOutput.put("inputsHash", computeInputsHash(mixTx));
+    registerOutputNotification =
+        mapper.convertValue(registerOutput, RegisterOutputMixStatusNotification.class);
+
+    Map<String, Object> signing = new HashMap<String, Object>();
+    signing.put("mixId", MIX_ID);
+    signing.put("transaction64", WhirlpoolProtocol.encodeBytes(rawTx));
+    signingNotification = mapper.convertValue(signing, SigningMixStatusNotification.class);
+
+    blindingParams = clientCryptoService.computeBlindingParams(coordinatorPublicKey);
+    signedBordereau = signBlinded(clientCryptoService.blind(RECEIVE_ADDRESS, blindingParams));
+  }
+
+  private Transaction computeMixTx() {
+    Bech32UtilGeneric bech32Util = Bech32UtilGeneric.getInstance();
+    int ownIndex = nbInputs / 2;
+    Transaction tx = new Transaction(params);
+    for (int i = 0; i < nbInputs; i++) {
+      TransactionOutPoint outPoint;
+      byte[] outputScript;
+      if (i == ownIndex) {
+        outPoint =
+            new TransactionOutPoint(
+                params, premixUtxo.getIndex(), Sha256Hash.wrap(premixUtxo.getHash()));
+        outputScript = bech32Util.computeScriptPubKey(RECEIVE_ADDRESS, params);
+      } else {
+        outPoint =
+            new TransactionOutPoint(
+                params, i % 4, Sha256Hash.of(("mix-benchmark-input-" + i).getBytes()));
+        outputScript = computeP2wpkhScript(("mix-benchmark-output-" + i).getBytes());
+      }
+      tx.addInput(new TransactionInput(params, null, new byte[0], outPoint));
+      tx.addOutput(
+          new TransactionOutput(params, null, Coin.valueOf(DENOMINATION), outputScript));
+    }
+    return tx;
+  }
+
+  private byte[] computeP2wpkhScript(byte[] seed) {
+    byte[] script = new byte[22];
+    script[0] = 0x00; // OP_0
+    script[1] = 0x14; // push 20 bytes
+    System.arraycopy(Sha256Hash.hash(seed), 0, script, 2, 20);
+    return script;
+  }
+
+  private String computeInputsHash(Transaction tx) {
+    List<Utxo> utxos = new ArrayList<Utxo>();
+    for (TransactionInput input : tx.getInputs()) {
+      utxos.add(
+          new Utxo(input.getOutpoint().getHash().toString(), input.getOutpoint().getIndex()));
+    }
+    return WhirlpoolProtocol.computeInputsHash(utxos);
+  }
+
+  private byte[] signBlinded(byte[] blinded) {
+    RSAEngine coordinatorSigner = new RSAEngine();
+    coordinatorSigner.init(true, coordinatorPrivateKey);
+    return coordinatorSigner.processBlock(blinded, 0, blinded.length);
+  }
+
+  private MixProcess newMixProcess() {
+    // new PremixHandler for each mix, so REGISTER_INPUT signature is not memoized
+    return new MixProcess(
+        config,
+        POOL_ID,
+        DENOMINATION,
+        new PremixHandler(premixUtxo, premixKey, USER_PRE_HASH),
+        postmixHandler,
+        clientCryptoService);
+  }
+
+  /** MixProcess ready for SIGNING, prepared before each signing() invocation. */
+  @State(Scope.Thread)
+  public static class RegisteredOutputState {
+    private MixProcess mixProcess;
+
+    @Setup(Level.Invocation)
+    public void setup(MixProcessBenchmark benchmark) throws Exception {
+      mixProcess = benchmark.newMixProcess();
+      mixProcess.registerInput(benchmark.subscribePoolResponse);
+      ConfirmInputRequest confirmInputRequest =
+          mixProcess.confirmInput(benchmark.confirmInputNotification);
+
+      Map<String, Object> confirmInputResponse = new HashMap<String, Object>();
+      confirmInputResponse.put("mixId", MIX_ID);
+      confirmInputResponse.put(
+          "signedBordereau64",
+          WhirlpoolProtocol.encodeBytes(
+              benchmark.signBlinded(
+                  WhirlpoolProtocol.decodeBytes(confirmInputRequest.blindedBordereau64))));
+      mixProcess.onConfirmInputResponse(
+          benchmark.mapper.convertValue(confirmInputResponse, ConfirmInputResponse.class));
+      mixProcess.registerOutput(benchmark.registerOutputNotification);
+    }
+  }
+
+  @Benchmark
+  public RegisterInputRequest registerInput() throws Exception {
+    return newMixProcess().registerInput(subscribePoolResponse);
+  }
+
+  @Benchmark
+  public byte[] blind() throws Exception {
+    RSAKeyParameters publicKey =
+        clientCryptoService.getPublicKey(POOL_ID, coordinatorPublicKeySerialized);
+    RSABlindingParameters params = clientCryptoService.computeBlindingParams(publicKey);
+    return clientCryptoService.blind(RECEIVE_ADDRESS, params);
+  }
+
+  @Benchmark
+  public byte[] unblind() {
+    return clientCryptoService.unblind(signedBordereau, blindingParams);
+  }
+
+  @Benchmark
+  public SigningRequest signing(RegisteredOutputState state) throws Exception {
+    return state.mixProcess.signing(signingNotification);
+  }
+
+  @Benchmark
+  public Transaction signingParseTx() {
+    return new Transaction(
+        params, WhirlpoolProtocol.decodeBytes(signingNotification.transaction64));
+  }
+
+  @Benchmark
+  public Integer signingFindTxOutputIndex() {
+    return ClientUtils.findTxOutputIndex(RECEIVE_ADDRESS, mixTx, params);
+  }
+
+  @Benchmark
+  public Transaction signingSignTransaction() throws Exception {
+    new PremixHandler(premixUtxo, premixKey, USER_PRE_HASH)
+        .signTransaction(signedMixTx, inputIndex, params);
+    return signedMixTx;
+  }
+
+  @Benchmark
+  public String[] signingWitnessSerialize64() {
+    return ClientUtils.witnessSerialize64(signedMixTx.getWitness(inputIndex));
+  }
+}
@@ -0,0 +1,196 @@
+package com.samourai.whirlpool.client.tx0;
+
+import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.wallet.client.Bip84Wallet;
+import com.samourai.wallet.client.indexHandler.MemoryIndexHandler;
+import com.samourai.wallet.hd.HD_Wallet;
+import com.samourai.wallet.hd.java.HD_WalletFactoryJava;
+import com.samourai.whirlpool.client.utils.BIP69InputComparatorUnspentOutput;
+import com.samourai.whirlpool.client.wallet.WhirlpoolWalletConfig;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolServer;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolWalletAccount;
+import com.samourai.whirlpool.client.whirlpool.beans.Pool;
+import com.samourai.whirlpool.client.whirlpool.beans.Tx0Data;
+import com.samourai.whirlpool.protocol.fee.WhirlpoolFee;
+import com.samourai.whirlpool.protocol.websocket.notifications.MixStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionOutput;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Tx0Service preview, build and sign paths, from 1 to NB_PREMIX_MAX premix outputs and 1 to 50
+ * spend-from inputs. Run with GCProfiler (default for benchmarks.jar) to get bytes allocated per
+ * operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class Tx0ServiceBenchmark {
+  private static final String SEED_WORDS = "all all all all all all all all all all all all";
+  private static final String SEED_PASSPHRASE = "whirlpool";
+  private static final String FEE_PAYMENT_CODE =
+      "PM8TJXp19gCE6hQzqRi719FGJzF6AreRwvoQKLRnQ7dpgaakakFns22jHUqhtPQWmfevPQRCyfFbdDrKvrfw9oZv5PjaCerQMa3BKkPyUf9yN1CDR3w6";
+  private static final String FEE_ADDRESS = "tb1qjara0278vrsr8gvaga7jpy2c9amtgvytr44xym";
+  private static final long FEE_CHANGE = 10000;
+  private static final int FEE_TX0 = 5;
+  private static final int FEE_PREMIX = 5;
+  private static final long CHANGE_PER_INPUT = 100000;
+
+  @Param({"1", "10", "100", "600"})
+  private int nbPremix;
+
+  @Param({"1", "10", "50"})
+  private int nbInputs;
+
+  private NetworkParameters params;
+  private Tx0Service tx0Service;
+  private Bip84Wallet premixWallet;
+  private Bip84Wallet changeWallet;
+
+  private Tx0Config tx0Config;
+  private Tx0Param tx0Param;
+  private Tx0Data tx0Data;
+  private List<UnspentOutputWithKey> sortedSpendFroms;
+
+  private Tx0Preview tx0Preview;
+  private byte[] opReturnValue;
+  private List<TransactionOutput> tx0Outputs;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    WhirlpoolServer server = WhirlpoolServer.LOCAL_TESTNET;
+    params = server.getParams();
+    WhirlpoolWalletConfig config =
+        new WhirlpoolWalletConfig(
+            null, null, null, server.getServerUrlClear(), params, false, null);
+    tx0Service = new Tx0Service(config);
+
+    HD_WalletFactoryJava hdWalletFactory = HD_WalletFactoryJava.getInstance();
+    byte[] seed = hdWalletFactory.computeSeedFromWords(SEED_WORDS);
+    HD_Wallet bip84w = hdWalletFactory.getBIP84(seed, SEED_PASSPHRASE, params);
+    Bip84Wallet depositWallet = newWallet(bip84w, WhirlpoolWalletAccount.DEPOSIT);
+    premixWallet = newWallet(bip84w, WhirlpoolWalletAccount.PREMIX);
+    changeWallet = depositWallet;
+
+    tx0Config = new Tx0Config().setMaxOutputs(nbPremix);
+    tx0Param = new Tx0Param(FEE_TX0, FEE_PREMIX, newPool(), null);
+    tx0Data =
+        new Tx0Data(FEE_PAYMENT_CODE, 0, FEE_CHANGE, 100, new byte[] {1, 2}, FEE_ADDRESS, 0);
+
+    // spend from nbInputs deposit utxos, with enough balance for nbPremix and some change
+    long balanceMin = tx0Service.computeSpendFromBalanceMin(tx0Param, nbPremix);
+    long valuePerInput = (balanceMin / nbInputs) + CHANGE_PER_INPUT;
+    sortedSpendFroms = new ArrayList<UnspentOutputWithKey>();
+    for (int i = 0; i < nbInputs; i++) {
+      UnspentResponse.UnspentOutput utxo = new UnspentResponse.UnspentOutput();
+      utxo.tx_hash = Sha256Hash.of(("tx0-benchmark-" + i).getBytes()).toString();
+      utxo.tx_output_n = i % 4;
+      utxo.value = valuePerInput;
+      utxo.script = "foo";
+      utxo.addr = "foo";
+      utxo.confirmations = 1234;
+      utxo.xpub = new UnspentResponse.UnspentOutput.Xpub();
+      utxo.xpub.path = "foo";
+      byte[] key =
+          depositWallet.getAddressAt(Bip84Wallet.CHAIN_RECEIVE, i).getECKey().getPrivKeyBytes();
+      sortedSpendFroms.add(new UnspentOutputWithKey(utxo, key));
+    }
+    Collections.sort(sortedSpendFroms, new BIP69InputComparatorUnspentOutput());
+
+    tx0Preview = tx0Service.tx0Preview(sortedSpendFroms, tx0Config, tx0Param, tx0Data);
+    if (tx0Preview.getNbPremix() != nbPremix) {
+      throw new IllegalStateException(
+          "Unexpected nbPremix: " + tx0Preview.getNbPremix() + " vs " + nbPremix);
+    }
+
+    UnspentOutputWithKey firstInput = sortedSpendFroms.get(0);
+    opReturnValue =
+        WhirlpoolFee.getInstance(config.getSecretPointFactory())
+            .encode(
+                tx0Data.getFeeIndice(),
+                tx0Data.getFeePayload(),
+                tx0Data.getFeePaymentCode(),
+                params,
+                firstInput.getKey(),
+                firstInput.computeOutpoint(params));
+
+    // outputs of a complete tx0, for signTx0
+    tx0Outputs = buildTx0().getTx().getOutputs();
+  }
+
+  private Bip84Wallet newWallet(HD_Wallet bip84w, WhirlpoolWalletAccount account) {
+    return new Bip84Wallet(
+        bip84w, account.getAccountIndex(), new MemoryIndexHandler(), new MemoryIndexHandler());
+  }
+
+  private Pool newPool() {
+    Pool pool = new Pool();
+    pool.setPoolId("0.01btc");
+    pool.setDenomination(1000000);
+    pool.setFeeValue(50000);
+    pool.setMustMixBalanceMin(1000170);
+    pool.setMustMixBalanceCap(1009500);
+    pool.setMustMixBalanceMax(1010000);
+    pool.setMinAnonymitySet(5);
+    pool.setMinMustMix(3);
+    pool.setNbRegistered(0);
+    pool.setMixAnonymitySet(5);
+    pool.setMixStatus(MixStatus.CONFIRM_INPUT);
+    pool.setElapsedTime(1000);
+    pool.setNbConfirmed(0);
+    return pool;
+  }
+
+  @Benchmark
+  public int computeNbPremixMax() {
+    return tx0Service.computeNbPremixMax(
+        tx0Param.getPremixValue(),
+        sortedSpendFroms,
+        tx0Data.computeFeeValueOrFeeChange(),
+        tx0Param.getFeeTx0());
+  }
+
+  @Benchmark
+  public Tx0Preview tx0Preview() throws Exception {
+    return tx0Service.tx0Preview(sortedSpendFroms, tx0Config, tx0Param, tx0Data);
+  }
+
+  @Benchmark
+  public Tx0 buildTx0() throws Exception {
+    // derive premix addresses from the same indexs on each run
+    premixWallet.getIndexHandler().set(0);
+    changeWallet.getIndexChangeHandler().set(0);
+    return tx0Service.buildTx0(
+        sortedSpendFroms,
+        premixWallet,
+        tx0Preview,
+        opReturnValue,
+        FEE_ADDRESS,
+        changeWallet,
+        params);
+  }
+
+  @Benchmark
+  public Transaction signTx0() {
+    // inputs are signed while being added (buildTx0Input), then signTx0 hook runs
+    Transaction tx = new Transaction(params);
+    for (TransactionOutput output : tx0Outputs) {
+      tx.addOutput(
+          new TransactionOutput(params, null, output.getValue(), output.getScriptBytes()));
+    }
+    for (UnspentOutputWithKey spendFrom : sortedSpendFroms) {
+      tx0Service.buildTx0Input(tx, spendFrom, params);
+    }
+    tx0Service.signTx0(tx, sortedSpendFroms, params);
+    return tx;
+  }
+}
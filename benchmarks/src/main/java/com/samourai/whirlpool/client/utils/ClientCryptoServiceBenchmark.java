@@ -0,0 +1,99 @@
+package com.samourai.whirlpool.client.utils;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.RSABlindingEngine;
+import org.bouncycastle.crypto.engines.RSAEngine;
+import org.bouncycastle.crypto.generators.RSABlindingFactorGenerator;
+import org.bouncycastle.crypto.params.RSABlindingParameters;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.bouncycastle.crypto.signers.PSSSigner;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Bordereau blinding as done on CONFIRM_INPUT (parse coordinator key, blinding factor, blind) and
+ * REGISTER_OUTPUT (unblind). "legacy" benchmarks reproduce the previous allocation of key, factor
+ * generator, signer and engine on each mix, to compare with ClientCryptoService caches in the same
+ * run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientCryptoServiceBenchmark {
+  private static final String POOL_ID = "0.01btc";
+  private static final String BORDEREAU = "tb1qjara0278vrsr8gvaga7jpy2c9amtgvytr44xym";
+
+  @Param({"2048"})
+  private int keySize;
+
+  private ClientCryptoService clientCryptoService;
+  private byte[] publicKeySerialized;
+  private RSAKeyParameters publicKey;
+  private RSABlindingParameters blindingParams;
+  private byte[] signedBlinded;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+    keyPairGenerator.initialize(keySize);
+    KeyPair keyPair = keyPairGenerator.generateKeyPair();
+    publicKeySerialized = keyPair.getPublic().getEncoded();
+
+    clientCryptoService = new ClientCryptoService();
+    publicKey = clientCryptoService.getPublicKey(POOL_ID, publicKeySerialized);
+    blindingParams = clientCryptoService.computeBlindingParams(publicKey);
+
+    // signed blinded bordereau, as received on CONFIRM_INPUT response
+    RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+    RSAEngine serverSigner = new RSAEngine();
+    serverSigner.init(
+        true,
+        new RSAKeyParameters(true, privateKey.getModulus(), privateKey.getPrivateExponent()));
+    byte[] blinded = clientCryptoService.blind(BORDEREAU, blindingParams);
+    signedBlinded = serverSigner.processBlock(blinded, 0, blinded.length);
+  }
+
+  @Benchmark
+  public byte[] blind() throws Exception {
+    RSAKeyParameters serverPublicKey =
+        clientCryptoService.getPublicKey(POOL_ID, publicKeySerialized);
+    // blinding factor is prefetched between mixs
+    clientCryptoService.prefetchBlindingFactors(POOL_ID);
+    RSABlindingParameters params = clientCryptoService.computeBlindingParams(serverPublicKey);
+    return clientCryptoService.blind(BORDEREAU, params);
+  }
+
+  @Benchmark
+  public byte[] blindLegacy() throws Exception {
+    RSAKeyParameters serverPublicKey = ClientUtils.publicKeyUnserialize(publicKeySerialized);
+    RSABlindingFactorGenerator blindingFactorGenerator = new RSABlindingFactorGenerator();
+    blindingFactorGenerator.init(serverPublicKey);
+    BigInteger blindingFactor = blindingFactorGenerator.generateBlindingFactor();
+    RSABlindingParameters params = new RSABlindingParameters(serverPublicKey, blindingFactor);
+
+    PSSSigner blinder = new PSSSigner(new RSABlindingEngine(), new SHA256Digest(), 32);
+    blinder.init(true, params);
+    byte[] toBlind = BORDEREAU.getBytes();
+    blinder.update(toBlind, 0, toBlind.length);
+    return blinder.generateSignature();
+  }
+
+  @Benchmark
+  public byte[] unblind() {
+    return clientCryptoService.unblind(signedBlinded, blindingParams);
+  }
+
+  @Benchmark
+  public byte[] unblindLegacy() {
+    RSABlindingEngine unblinder = new RSABlindingEngine();
+    unblinder.init(false, blindingParams);
+    return unblinder.processBlock(signedBlinded, 0, signedBlinded.length);
+  }
+}
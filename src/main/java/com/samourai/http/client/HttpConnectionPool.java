@@ -0,0 +1,240 @@
+package com.samourai.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keep-alive connections of a single PooledHttpClient, by host. Connections are never shared
+ * between pools, so that each HttpUsage keeps its own connections (and proxy circuits).
+ */
+public class HttpConnectionPool {
+  private static final Logger log = LoggerFactory.getLogger(HttpConnectionPool.class);
+
+  private final Proxy proxy; // null for direct connections
+  private int connectTimeout;
+  private int readTimeout;
+  private int keepAliveTimeout;
+  private int maxIdlePerHost;
+
+  // idle connections by host, most recently used first
+  private final Map<String, LinkedList<PooledConnection>> idleConnections;
+  private int nbOpened;
+  private int nbReused;
+
+  public HttpConnectionPool(
+      Proxy proxy, int connectTimeout, int readTimeout, int keepAliveTimeout, int maxIdlePerHost) {
+    this.proxy = proxy;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.keepAliveTimeout = keepAliveTimeout;
+    this.maxIdlePerHost = maxIdlePerHost;
+    this.idleConnections = new HashMap<String, LinkedList<PooledConnection>>();
+    this.nbOpened = 0;
+    this.nbReused = 0;
+  }
+
+  /** @return idle connection to host if any, otherwise a new connection */
+  public PooledConnection acquire(String host, int port, boolean https) throws IOException {
+    String key = computeKey(host, port, https);
+    synchronized (this) {
+      LinkedList<PooledConnection> idles = idleConnections.get(key);
+      if (idles != null) {
+        long now = System.currentTimeMillis();
+        while (!idles.isEmpty()) {
+          PooledConnection connection = idles.removeFirst();
+          if (connection.isUsable(now, keepAliveTimeout)) {
+            connection.reused = true;
+            nbReused++;
+            return connection;
+          }
+          connection.close();
+        }
+      }
+    }
+    return open(host, port, https);
+  }
+
+  /** @return new connection to host, bypassing idle connections */
+  public PooledConnection open(String host, int port, boolean https) throws IOException {
+    Socket socket = (proxy != null ? new Socket(proxy) : new Socket());
+    try {
+      // let proxy resolve hostname (.onion...)
+      InetSocketAddress address =
+          (proxy != null
+              ? InetSocketAddress.createUnresolved(host, port)
+              : new InetSocketAddress(host, port));
+      socket.connect(address, connectTimeout);
+      socket.setSoTimeout(readTimeout);
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      if (https) {
+        socket = startTls(socket, host, port);
+      }
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    synchronized (this) {
+      nbOpened++;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("connection opened: " + host + ":" + port);
+    }
+    return new PooledConnection(computeKey(host, port, https), socket);
+  }
+
+  private Socket startTls(Socket socket, String host, int port) throws IOException {
+    SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+    sslSocket.startHandshake();
+    // no endpoint identification for SSLSocket on Java 6: verify hostname as HttpsURLConnection
+    if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+      sslSocket.close();
+      throw new SSLException("Hostname verification failed: " + host);
+    }
+    return sslSocket;
+  }
+
+  /** Return connection to pool after a complete response, or close it. */
+  public void release(PooledConnection connection, boolean keepAlive) {
+    if (!keepAlive || keepAliveTimeout <= 0) {
+      connection.close();
+      return;
+    }
+    connection.lastUsed = System.currentTimeMillis();
+    synchronized (this) {
+      LinkedList<PooledConnection> idles = idleConnections.get(connection.key);
+      if (idles == null) {
+        idles = new LinkedList<PooledConnection>();
+        idleConnections.put(connection.key, idles);
+      }
+      idles.addFirst(connection);
+      while (idles.size() > maxIdlePerHost) {
+        idles.removeLast().close();
+      }
+    }
+  }
+
+  /** Close idle connections. */
+  public synchronized void close() {
+    for (LinkedList<PooledConnection> idles : idleConnections.values()) {
+      for (PooledConnection connection : idles) {
+        connection.close();
+      }
+    }
+    idleConnections.clear();
+  }
+
+  /** Close idle connections expired. */
+  public synchronized void evictExpired() {
+    long now = System.currentTimeMillis();
+    for (LinkedList<PooledConnection> idles : idleConnections.values()) {
+      Iterator<PooledConnection> iter = idles.iterator();
+      while (iter.hasNext()) {
+        PooledConnection connection = iter.next();
+        if (!connection.isUsable(now, keepAliveTimeout)) {
+          iter.remove();
+          connection.close();
+        }
+      }
+    }
+  }
+
+  private String computeKey(String host, int port, boolean https) {
+    return (https ? "https://" : "http://") + host + ":" + port;
+  }
+
+  public synchronized int getNbIdle() {
+    int nbIdle = 0;
+    for (LinkedList<PooledConnection> idles : idleConnections.values()) {
+      nbIdle += idles.size();
+    }
+    return nbIdle;
+  }
+
+  public synchronized int getNbOpened() {
+    return nbOpened;
+  }
+
+  public synchronized int getNbReused() {
+    return nbReused;
+  }
+
+  public void setConnectTimeout(int connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public void setReadTimeout(int readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  public void setKeepAliveTimeout(int keepAliveTimeout) {
+    this.keepAliveTimeout = keepAliveTimeout;
+  }
+
+  public void setMaxIdlePerHost(int maxIdlePerHost) {
+    this.maxIdlePerHost = maxIdlePerHost;
+  }
+
+  public static class PooledConnection {
+    private final String key;
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+    private long lastUsed;
+    private boolean reused;
+
+    PooledConnection(String key, Socket socket) throws IOException {
+      this.key = key;
+      this.socket = socket;
+      this.input = new BufferedInputStream(socket.getInputStream());
+      this.output = new BufferedOutputStream(socket.getOutputStream());
+      this.lastUsed = System.currentTimeMillis();
+      this.reused = false;
+    }
+
+    boolean isUsable(long now, int keepAliveTimeout) {
+      return !socket.isClosed()
+          && !socket.isInputShutdown()
+          && !socket.isOutputShutdown()
+          && now - lastUsed < keepAliveTimeout;
+    }
+
+    public InputStream getInput() {
+      return input;
+    }
+
+    public OutputStream getOutput() {
+      return output;
+    }
+
+    /** @return true when connection was already used for a previous request */
+    public boolean isReused() {
+      return reused;
+    }
+
+    public void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+}
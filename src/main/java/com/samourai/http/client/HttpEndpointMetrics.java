@@ -0,0 +1,121 @@
+package com.samourai.http.client;
+
+import com.samourai.whirlpool.client.mix.metrics.LatencyHistogram;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Request metrics of an endpoint. Recording is lock-free. */
+public class HttpEndpointMetrics {
+  private final HttpUsage httpUsage;
+  private final String method;
+  private final String endpoint;
+
+  private final AtomicLong nbRequests;
+  private final AtomicLong nbErrors;
+  private final ConcurrentHashMap<String, AtomicLong> nbErrorsByClass;
+  private final LatencyHistogram latency;
+  private final AtomicLong requestBytes;
+  private final AtomicLong responseBytes;
+
+  public HttpEndpointMetrics(HttpUsage httpUsage, String method, String endpoint) {
+    this.httpUsage = httpUsage;
+    this.method = method;
+    this.endpoint = endpoint;
+    this.nbRequests = new AtomicLong(0);
+    this.nbErrors = new AtomicLong(0);
+    this.nbErrorsByClass = new ConcurrentHashMap<String, AtomicLong>();
+    this.latency = new LatencyHistogram();
+    this.requestBytes = new AtomicLong(0);
+    this.responseBytes = new AtomicLong(0);
+  }
+
+  public void onSuccess(long elapsedMs, long requestSize, long responseSize) {
+    nbRequests.incrementAndGet();
+    latency.record(elapsedMs);
+    if (requestSize > 0) {
+      requestBytes.addAndGet(requestSize);
+    }
+    if (responseSize > 0) {
+      responseBytes.addAndGet(responseSize);
+    }
+  }
+
+  public void onError(long elapsedMs, long requestSize, Throwable e) {
+    nbRequests.incrementAndGet();
+    nbErrors.incrementAndGet();
+    latency.record(elapsedMs);
+    if (requestSize > 0) {
+      requestBytes.addAndGet(requestSize);
+    }
+    Throwable cause = (e.getCause() != null ? e.getCause() : e); // unwrap HttpException
+    String errorClass = cause.getClass().getSimpleName();
+    AtomicLong nbErrorsForClass = nbErrorsByClass.get(errorClass);
+    if (nbErrorsForClass == null) {
+      nbErrorsByClass.putIfAbsent(errorClass, new AtomicLong(0));
+      nbErrorsForClass = nbErrorsByClass.get(errorClass);
+    }
+    nbErrorsForClass.incrementAndGet();
+  }
+
+  public HttpUsage getHttpUsage() {
+    return httpUsage;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public long getNbRequests() {
+    return nbRequests.get();
+  }
+
+  public long getNbErrors() {
+    return nbErrors.get();
+  }
+
+  public Map<String, Long> getNbErrorsByClass() {
+    Map<String, Long> result = new HashMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : nbErrorsByClass.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().get());
+    }
+    return result;
+  }
+
+  /** @return request latency (ms), including response parsing */
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  public long getRequestBytes() {
+    return requestBytes.get();
+  }
+
+  public long getResponseBytes() {
+    return responseBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return httpUsage
+        + " "
+        + method
+        + " "
+        + endpoint
+        + ": requests="
+        + getNbRequests()
+        + ", errors="
+        + getNbErrorsByClass()
+        + ", latency=["
+        + latency
+        + "], requestBytes="
+        + getRequestBytes()
+        + ", responseBytes="
+        + getResponseBytes();
+  }
+}
@@ -0,0 +1,137 @@
+package com.samourai.http.client;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request metrics by HttpUsage, method and endpoint template. Endpoint template is the url path
+ * without query, with identifier-like segments (numbers, txids, xpubs...) replaced by "*".
+ */
+public class HttpMetrics {
+  private static final int MAX_ENDPOINTS = 500;
+  private static final int ID_SEGMENT_MIN_LENGTH = 16;
+  private static final String ENDPOINT_OTHER = "other";
+  private static HttpMetrics instance;
+
+  private final ConcurrentHashMap<EndpointKey, HttpEndpointMetrics> endpoints;
+
+  public static synchronized HttpMetrics getInstance() {
+    if (instance == null) {
+      instance = new HttpMetrics();
+    }
+    return instance;
+  }
+
+  public HttpMetrics() {
+    this.endpoints = new ConcurrentHashMap<EndpointKey, HttpEndpointMetrics>();
+  }
+
+  /** @return metrics of endpoint for url, created on first call */
+  public HttpEndpointMetrics computeEndpointMetrics(
+      HttpUsage httpUsage, String method, String url) {
+    String endpoint = computeEndpointTemplate(url);
+    EndpointKey key = new EndpointKey(httpUsage, method, endpoint);
+    HttpEndpointMetrics endpointMetrics = endpoints.get(key);
+    if (endpointMetrics == null) {
+      if (endpoints.size() >= MAX_ENDPOINTS) {
+        // don't grow forever on unexpected urls
+        endpoint = ENDPOINT_OTHER;
+        key = new EndpointKey(httpUsage, method, endpoint);
+      }
+      endpoints.putIfAbsent(key, new HttpEndpointMetrics(httpUsage, method, endpoint));
+      endpointMetrics = endpoints.get(key);
+    }
+    return endpointMetrics;
+  }
+
+  /** @return metrics of endpoint template, or null when no request recorded yet */
+  public HttpEndpointMetrics getEndpointMetrics(
+      HttpUsage httpUsage, String method, String endpoint) {
+    return endpoints.get(new EndpointKey(httpUsage, method, endpoint));
+  }
+
+  public Collection<HttpEndpointMetrics> getEndpointMetrics() {
+    return endpoints.values();
+  }
+
+  protected static String computeEndpointTemplate(String url) {
+    // skip scheme and host
+    int start = url.indexOf("://");
+    start = (start >= 0 ? url.indexOf('/', start + 3) : 0);
+    if (start < 0) {
+      return "/";
+    }
+    int end = url.indexOf('?', start);
+    if (end < 0) {
+      end = url.length();
+    }
+
+    StringBuilder sb = new StringBuilder(end - start);
+    int segmentStart = start;
+    while (segmentStart < end) {
+      int segmentEnd = url.indexOf('/', segmentStart + 1);
+      if (segmentEnd < 0 || segmentEnd > end) {
+        segmentEnd = end;
+      }
+      // segment includes leading '/'
+      if (isIdSegment(url, segmentStart + 1, segmentEnd)) {
+        sb.append("/*");
+      } else {
+        sb.append(url, segmentStart, segmentEnd);
+      }
+      segmentStart = segmentEnd;
+    }
+    return sb.toString();
+  }
+
+  private static boolean isIdSegment(String url, int start, int end) {
+    if (end - start >= ID_SEGMENT_MIN_LENGTH) {
+      return true;
+    }
+    if (start >= end) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (!Character.isDigit(url.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // compared by fields, without building a String key for each request
+  private static final class EndpointKey {
+    private final HttpUsage httpUsage; // null for clients without usage
+    private final String method;
+    private final String endpoint;
+    private final int hashCode;
+
+    EndpointKey(HttpUsage httpUsage, String method, String endpoint) {
+      this.httpUsage = httpUsage;
+      this.method = method;
+      this.endpoint = endpoint;
+      this.hashCode =
+          31 * (31 * (httpUsage != null ? httpUsage.hashCode() : 0) + method.hashCode())
+              + endpoint.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EndpointKey)) {
+        return false;
+      }
+      EndpointKey other = (EndpointKey) o;
+      return httpUsage == other.httpUsage
+          && method.equals(other.method)
+          && endpoint.equals(other.endpoint);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.samourai.http.client;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed GET responses with their validators (ETag, Last-Modified), for conditional GET.
+ * Enabled per HttpUsage, and entries are kept by HttpUsage: clients of different usages sharing a
+ * cache never get each other's responses. Cached objects are returned as is to every caller on
+ * HTTP 304, so they must be treated as read-only.
+ */
+public class HttpResponseCache {
+  public static final String HEADER_ETAG = "ETag";
+  public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final int MAX_ENTRIES_DEFAULT = 100;
+
+  private final Set<HttpUsage> httpUsages;
+  private final LinkedHashMap<String, Entry> entries; // LRU, guarded by itself
+  private final AtomicLong nbNotModified;
+  private final AtomicLong nbModified;
+
+  public HttpResponseCache(HttpUsage... httpUsages) {
+    this(MAX_ENTRIES_DEFAULT, Arrays.asList(httpUsages));
+  }
+
+  public HttpResponseCache(final int maxEntries, Collection<HttpUsage> httpUsages) {
+    this.httpUsages = EnumSet.noneOf(HttpUsage.class);
+    this.httpUsages.addAll(httpUsages);
+    this.entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    this.nbNotModified = new AtomicLong(0);
+    this.nbModified = new AtomicLong(0);
+  }
+
+  public boolean isEnabled(HttpUsage httpUsage) {
+    return httpUsage != null && httpUsages.contains(httpUsage);
+  }
+
+  public Entry get(HttpUsage httpUsage, String url, Class<?> responseType) {
+    synchronized (entries) {
+      return entries.get(computeKey(httpUsage, url, responseType));
+    }
+  }
+
+  public void put(
+      HttpUsage httpUsage,
+      String url,
+      Class<?> responseType,
+      String etag,
+      String lastModified,
+      Object value) {
+    synchronized (entries) {
+      entries.put(computeKey(httpUsage, url, responseType), new Entry(etag, lastModified, value));
+    }
+  }
+
+  public void remove(HttpUsage httpUsage, String url, Class<?> responseType) {
+    synchronized (entries) {
+      entries.remove(computeKey(httpUsage, url, responseType));
+    }
+  }
+
+  protected void onNotModified() {
+    nbNotModified.incrementAndGet();
+  }
+
+  protected void onModified() {
+    nbModified.incrementAndGet();
+  }
+
+  /** @return headers with validators of cached entry, if any */
+  protected Map<String, String> computeConditionalHeaders(
+      Map<String, String> headers, Entry entry) {
+    if (entry == null) {
+      return headers;
+    }
+    Map<String, String> conditionalHeaders = new LinkedHashMap<String, String>();
+    if (headers != null) {
+      conditionalHeaders.putAll(headers);
+    }
+    if (entry.etag != null) {
+      conditionalHeaders.put(HEADER_IF_NONE_MATCH, entry.etag);
+    }
+    if (entry.lastModified != null) {
+      conditionalHeaders.put(HEADER_IF_MODIFIED_SINCE, entry.lastModified);
+    }
+    return conditionalHeaders;
+  }
+
+  private String computeKey(HttpUsage httpUsage, String url, Class<?> responseType) {
+    return httpUsage + " " + responseType.getName() + " " + url;
+  }
+
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** @return responses served from cache (HTTP 304) */
+  public long getNbNotModified() {
+    return nbNotModified.get();
+  }
+
+  /** @return full responses received for usages with cache enabled */
+  public long getNbModified() {
+    return nbModified.get();
+  }
+
+  public static class Entry {
+    private final String etag;
+    private final String lastModified;
+    private final Object value;
+
+    Entry(String etag, String lastModified, Object value) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.value = value;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    public Object getValue() {
+      return value;
+    }
+  }
+}
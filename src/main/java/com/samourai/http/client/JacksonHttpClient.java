@@ -2,10 +2,18 @@ package com.samourai.http.client;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import com.samourai.wallet.api.backend.beans.HttpException;
 import io.reactivex.Observable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java8.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,11 +21,28 @@ import org.slf4j.LoggerFactory;
 public abstract class JacksonHttpClient implements IHttpClient {
   private static final Logger log = LoggerFactory.getLogger(JacksonHttpClient.class);
 
+  private static final String METHOD_GET = "GET";
+  private static final String METHOD_POST = "POST";
+  private static final byte[] EMPTY = new byte[0];
+
   private ObjectMapper objectMapper;
+  private ConcurrentHashMap<Class<?>, ObjectReader> objectReaders; // by response type
+  private HttpUsage httpUsage;
+  private HttpMetrics httpMetrics;
+  private HttpResponseCache responseCache;
 
+  /** Client without HttpUsage: its requests are recorded in HttpMetrics under a null usage. */
   public JacksonHttpClient() {
+    this(null);
+  }
+
+  public JacksonHttpClient(HttpUsage httpUsage) {
     this.objectMapper = new ObjectMapper();
     objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    this.objectReaders = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    this.httpUsage = httpUsage;
+    this.httpMetrics = HttpMetrics.getInstance();
+    this.responseCache = null;
   }
 
   protected abstract String requestJsonGet(String urlStr, Map<String, String> headers)
@@ -29,6 +54,42 @@ public abstract class JacksonHttpClient implements IHttpClient {
   protected abstract String requestJsonPostUrlEncoded(
       String urlStr, Map<String, String> headers, Map<String, String> body) throws Exception;
 
+  /**
+   * Responses are decoded from stream. Default implementation wraps requestJsonGet() and parses its
+   * String as is, override to decode directly from response body without intermediate String.
+   *
+   * @return response body stream, closed after decoding
+   */
+  protected InputStream requestStreamGet(String urlStr, Map<String, String> headers)
+      throws Exception {
+    return toStream(requestJsonGet(urlStr, headers));
+  }
+
+  protected InputStream requestStreamPost(
+      String urlStr, Map<String, String> headers, byte[] jsonBody) throws Exception {
+    return toStream(requestJsonPost(urlStr, headers, new String(jsonBody, Charsets.UTF_8)));
+  }
+
+  protected InputStream requestStreamPostUrlEncoded(
+      String urlStr, Map<String, String> headers, Map<String, String> body) throws Exception {
+    return toStream(requestJsonPostUrlEncoded(urlStr, headers, body));
+  }
+
+  private InputStream toStream(String content) {
+    return new ContentStream(content);
+  }
+
+  /**
+   * Conditional GET, used when response cache is enabled for this client's HttpUsage. Override to
+   * send request headers as is (including If-None-Match, If-Modified-Since) and return
+   * JsonResponse.notModified() on HTTP 304, or the response with its ETag/Last-Modified headers.
+   * Default implementation doesn't support validators, so responses are never cached.
+   */
+  protected JsonResponse requestJsonGetConditional(String urlStr, Map<String, String> headers)
+      throws Exception {
+    return new JsonResponse(requestStreamGet(urlStr, headers), null, null);
+  }
+
   protected void onRequestError(Exception e) {}
 
   @Override
@@ -37,11 +98,47 @@ public abstract class JacksonHttpClient implements IHttpClient {
     if (log.isDebugEnabled()) {
       log.debug("getJson: " + urlStr);
     }
+    long startTime = System.nanoTime();
     try {
-      String responseContent = requestJsonGet(urlStr, headers);
-      T result = parseJson(responseContent, responseType);
+      T result;
+      if (responseCache != null && responseCache.isEnabled(httpUsage)) {
+        HttpResponseCache.Entry cached = responseCache.get(httpUsage, urlStr, responseType);
+        JsonResponse response =
+            requestJsonGetConditional(
+                urlStr, responseCache.computeConditionalHeaders(headers, cached));
+        if (response.isNotModified()) {
+          if (cached == null) {
+            throw new Exception("Unexpected HTTP 304: " + urlStr);
+          }
+          // unchanged: reuse previously parsed response
+          responseCache.onNotModified();
+          result = (T) cached.getValue();
+          onRequestSuccess(METHOD_GET, urlStr, startTime, 0, 0);
+        } else {
+          responseCache.onModified();
+          InputStream responseStream =
+              response.getStream() != null ? response.getStream() : toStream(response.getContent());
+          result = readResponse(responseStream, responseType, METHOD_GET, urlStr, startTime, 0);
+          if (response.hasValidators()) {
+            responseCache.put(
+                httpUsage,
+                urlStr,
+                responseType,
+                response.getEtag(),
+                response.getLastModified(),
+                result);
+          } else if (cached != null) {
+            responseCache.remove(httpUsage, urlStr, responseType);
+          }
+        }
+      } else {
+        result =
+            readResponse(
+                requestStreamGet(urlStr, headers), responseType, METHOD_GET, urlStr, startTime, 0);
+      }
       return result;
     } catch (Exception e) {
+      onRequestError(METHOD_GET, urlStr, startTime, 0, e);
       onRequestError(e);
       if (log.isDebugEnabled()) {
         log.error("getJson failed: " + urlStr + ":" + e.getMessage());
@@ -66,12 +163,20 @@ public abstract class JacksonHttpClient implements IHttpClient {
         new Callable<T>() {
           @Override
           public T call() throws Exception {
+            long startTime = System.nanoTime();
+            long requestSize = 0;
             try {
-              String jsonBody = objectMapper.writeValueAsString(bodyObj);
-              String responseContent = requestJsonPost(urlStr, headers, jsonBody);
-              T result = parseJson(responseContent, responseType);
-              return result;
+              byte[] jsonBody = objectMapper.writeValueAsBytes(bodyObj);
+              requestSize = jsonBody.length;
+              return readResponse(
+                  requestStreamPost(urlStr, headers, jsonBody),
+                  responseType,
+                  METHOD_POST,
+                  urlStr,
+                  startTime,
+                  requestSize);
             } catch (Exception e) {
+              onRequestError(METHOD_POST, urlStr, startTime, requestSize, e);
               onRequestError(e);
               if (log.isDebugEnabled()) {
                 log.error("postJson failed: " + urlStr, e);
@@ -90,11 +195,18 @@ public abstract class JacksonHttpClient implements IHttpClient {
       log.debug(
           "postUrlEncoded: " + urlStr + ", POST.body=" + (body != null ? body.keySet() : "null"));
     }
+    long startTime = System.nanoTime();
+    long requestSize = computeSize(body);
     try {
-      String responseContent = requestJsonPostUrlEncoded(urlStr, headers, body);
-      T result = parseJson(responseContent, responseType);
-      return result;
+      return readResponse(
+          requestStreamPostUrlEncoded(urlStr, headers, body),
+          responseType,
+          METHOD_POST,
+          urlStr,
+          startTime,
+          requestSize);
     } catch (Exception e) {
+      onRequestError(METHOD_POST, urlStr, startTime, requestSize, e);
       onRequestError(e);
       if (log.isDebugEnabled()) {
         log.error("postUrlEncoded failed: " + urlStr, e);
@@ -106,6 +218,71 @@ public abstract class JacksonHttpClient implements IHttpClient {
     }
   }
 
+  /** Parse response, then record request success with response size. */
+  private <T> T readResponse(
+      InputStream responseStream,
+      Class<T> responseType,
+      String method,
+      String urlStr,
+      long startTime,
+      long requestSize)
+      throws Exception {
+    T result;
+    long responseSize;
+    if (responseStream instanceof ContentStream) {
+      // String response: parse it as is, without copy
+      String content = ((ContentStream) responseStream).content;
+      result = parseJson(content, responseType);
+      responseSize = computeSize(content);
+    } else {
+      CountingInputStream countingStream = new CountingInputStream(responseStream);
+      try {
+        result = parseJson(countingStream, responseType);
+      } finally {
+        countingStream.close();
+      }
+      responseSize = countingStream.getCount();
+    }
+    onRequestSuccess(method, urlStr, startTime, requestSize, responseSize);
+    return result;
+  }
+
+  private void onRequestSuccess(
+      String method, String urlStr, long startTime, long requestSize, long responseSize) {
+    if (httpMetrics != null) {
+      long elapsedMs = (System.nanoTime() - startTime) / 1000000;
+      httpMetrics
+          .computeEndpointMetrics(httpUsage, method, urlStr)
+          .onSuccess(elapsedMs, requestSize, responseSize);
+    }
+  }
+
+  private void onRequestError(
+      String method, String urlStr, long startTime, long requestSize, Exception e) {
+    if (httpMetrics != null) {
+      long elapsedMs = (System.nanoTime() - startTime) / 1000000;
+      httpMetrics
+          .computeEndpointMetrics(httpUsage, method, urlStr)
+          .onError(elapsedMs, requestSize, e);
+    }
+  }
+
+  private long computeSize(String content) {
+    return content != null ? content.length() : 0;
+  }
+
+  private long computeSize(Map<String, String> body) {
+    // approximate size of url-encoded body
+    long size = 0;
+    if (body != null) {
+      for (Map.Entry<String, String> entry : body.entrySet()) {
+        String value = entry.getValue();
+        size += entry.getKey().length() + (value != null ? value.length() : 0);
+      }
+    }
+    return size;
+  }
+
   private <T> T parseJson(String responseContent, Class<T> responseType) throws Exception {
     T result;
     if (log.isTraceEnabled()) {
@@ -122,11 +299,35 @@ public abstract class JacksonHttpClient implements IHttpClient {
     if (String.class.equals(responseType)) {
       result = (T) responseContent;
     } else {
-      result = objectMapper.readValue(responseContent, responseType);
+      result = getObjectReader(responseType).readValue(responseContent);
     }
     return result;
   }
 
+  private <T> T parseJson(InputStream responseStream, Class<T> responseType) throws Exception {
+    if (log.isTraceEnabled()) {
+      log.trace(
+          "response["
+              + (responseType != null ? responseType.getCanonicalName() : "null")
+              + "]: (stream)");
+    }
+    if (String.class.equals(responseType)) {
+      return (T) new String(ByteStreams.toByteArray(responseStream), Charsets.UTF_8);
+    }
+    // decode directly from stream, without intermediate String
+    return getObjectReader(responseType).readValue(responseStream);
+  }
+
+  /** @return reader for type, created once (ObjectReader is immutable and thread-safe) */
+  protected ObjectReader getObjectReader(Class<?> responseType) {
+    ObjectReader objectReader = objectReaders.get(responseType);
+    if (objectReader == null) {
+      objectReader = objectMapper.readerFor(responseType);
+      objectReaders.put(responseType, objectReader);
+    }
+    return objectReader;
+  }
+
   protected <T> Observable<Optional<T>> httpObservable(final Callable<T> supplier) {
     return Observable.fromCallable(
         new Callable<Optional<T>>() {
@@ -147,4 +348,55 @@ public abstract class JacksonHttpClient implements IHttpClient {
   protected ObjectMapper getObjectMapper() {
     return objectMapper;
   }
+
+  public HttpUsage getHttpUsage() {
+    return httpUsage;
+  }
+
+  /** @return request metrics (shared by all clients by default), or null when disabled */
+  public HttpMetrics getHttpMetrics() {
+    return httpMetrics;
+  }
+
+  public void setHttpMetrics(HttpMetrics httpMetrics) {
+    this.httpMetrics = httpMetrics;
+  }
+
+  /** @return cache for conditional GET (disabled by default) */
+  public HttpResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  public void setResponseCache(HttpResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  /** Stream of a String response: encoded only when read, which doesn't happen when parsed. */
+  private static class ContentStream extends InputStream {
+    private final String content;
+    private InputStream bytes; // lazy
+
+    ContentStream(String content) {
+      this.content = content;
+      this.bytes = null;
+    }
+
+    private InputStream getBytes() {
+      if (bytes == null) {
+        byte[] encoded = content != null ? content.getBytes(Charsets.UTF_8) : EMPTY;
+        bytes = new ByteArrayInputStream(encoded);
+      }
+      return bytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return getBytes().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return getBytes().read(b, off, len);
+    }
+  }
 }
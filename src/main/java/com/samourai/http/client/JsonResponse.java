@@ -0,0 +1,57 @@
+package com.samourai.http.client;
+
+import java.io.InputStream;
+
+/** Response of a conditional GET: body (String or stream) with its validators, or not modified. */
+public class JsonResponse {
+  private static final JsonResponse NOT_MODIFIED = new JsonResponse(null, null, null, null);
+
+  private String content;
+  private InputStream stream;
+  private String etag;
+  private String lastModified;
+
+  public JsonResponse(String content, String etag, String lastModified) {
+    this(content, null, etag, lastModified);
+  }
+
+  public JsonResponse(InputStream stream, String etag, String lastModified) {
+    this(null, stream, etag, lastModified);
+  }
+
+  private JsonResponse(String content, InputStream stream, String etag, String lastModified) {
+    this.content = content;
+    this.stream = stream;
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  /** HTTP 304 */
+  public static JsonResponse notModified() {
+    return NOT_MODIFIED;
+  }
+
+  public boolean isNotModified() {
+    return this == NOT_MODIFIED;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public InputStream getStream() {
+    return stream;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public boolean hasValidators() {
+    return etag != null || lastModified != null;
+  }
+}
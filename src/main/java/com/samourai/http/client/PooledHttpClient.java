@@ -0,0 +1,631 @@
+package com.samourai.http.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.samourai.wallet.api.backend.beans.HttpException;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java8.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP/1.1 client with keep-alive connection pooling and gzip/deflate decoding. Each instance owns
+ * its connection pool, so one instance should be used per HttpUsage (see PooledHttpClientService)
+ * to keep usages isolated. postJson() runs on a bounded executor of this client.
+ */
+public class PooledHttpClient extends JacksonHttpClient {
+  private static final Logger log = LoggerFactory.getLogger(PooledHttpClient.class);
+
+  public static final int CONNECT_TIMEOUT_DEFAULT = 30000;
+  public static final int READ_TIMEOUT_DEFAULT = 60000;
+  public static final int KEEP_ALIVE_TIMEOUT_DEFAULT = 30000;
+  public static final int MAX_IDLE_PER_HOST_DEFAULT = 4;
+  public static final int ASYNC_THREADS_DEFAULT = 2;
+
+  private static final String CRLF = "\r\n";
+  private static final int DRAIN_MAX = 8192; // bytes left unread before giving up a connection
+
+  private final Proxy proxy;
+  private final HttpConnectionPool connectionPool;
+  private int asyncThreads;
+  private Scheduler asyncScheduler; // lazy
+
+  public PooledHttpClient(HttpUsage httpUsage) {
+    this(httpUsage, null);
+  }
+
+  /** @param proxy SOCKS proxy, or null for direct connections */
+  public PooledHttpClient(HttpUsage httpUsage, Proxy proxy) {
+    super(httpUsage);
+    if (proxy != null && proxy.type() == Proxy.Type.HTTP) {
+      throw new IllegalArgumentException("HTTP proxy not supported, use SOCKS");
+    }
+    this.proxy = proxy;
+    this.connectionPool =
+        new HttpConnectionPool(
+            proxy,
+            CONNECT_TIMEOUT_DEFAULT,
+            READ_TIMEOUT_DEFAULT,
+            KEEP_ALIVE_TIMEOUT_DEFAULT,
+            MAX_IDLE_PER_HOST_DEFAULT);
+    this.asyncThreads = ASYNC_THREADS_DEFAULT;
+    this.asyncScheduler = null;
+  }
+
+  @Override
+  public void connect() throws Exception {
+    // connections are opened on demand
+  }
+
+  /** Close idle connections. */
+  public void close() {
+    connectionPool.close();
+  }
+
+  @Override
+  protected InputStream requestStreamGet(String urlStr, Map<String, String> headers)
+      throws Exception {
+    return checkStatus(execute("GET", urlStr, headers, null, null));
+  }
+
+  @Override
+  protected InputStream requestStreamPost(
+      String urlStr, Map<String, String> headers, byte[] jsonBody) throws Exception {
+    return checkStatus(execute("POST", urlStr, headers, "application/json", jsonBody));
+  }
+
+  @Override
+  protected InputStream requestStreamPostUrlEncoded(
+      String urlStr, Map<String, String> headers, Map<String, String> body) throws Exception {
+    byte[] bodyBytes = computeUrlEncoded(body).getBytes(Charsets.UTF_8);
+    return checkStatus(
+        execute("POST", urlStr, headers, "application/x-www-form-urlencoded", bodyBytes));
+  }
+
+  @Override
+  protected String requestJsonGet(String urlStr, Map<String, String> headers) throws Exception {
+    return readString(requestStreamGet(urlStr, headers));
+  }
+
+  @Override
+  protected String requestJsonPost(String urlStr, Map<String, String> headers, String jsonBody)
+      throws Exception {
+    return readString(requestStreamPost(urlStr, headers, jsonBody.getBytes(Charsets.UTF_8)));
+  }
+
+  @Override
+  protected String requestJsonPostUrlEncoded(
+      String urlStr, Map<String, String> headers, Map<String, String> body) throws Exception {
+    return readString(requestStreamPostUrlEncoded(urlStr, headers, body));
+  }
+
+  @Override
+  protected JsonResponse requestJsonGetConditional(String urlStr, Map<String, String> headers)
+      throws Exception {
+    HttpResponse response = execute("GET", urlStr, headers, null, null);
+    if (response.status == 304) {
+      response.body.close();
+      return JsonResponse.notModified();
+    }
+    InputStream body = checkStatus(response);
+    return new JsonResponse(
+        body, response.headers.get("etag"), response.headers.get("last-modified"));
+  }
+
+  @Override
+  protected <T> Observable<Optional<T>> httpObservable(Callable<T> supplier) {
+    // don't block subscriber thread
+    return super.httpObservable(supplier).subscribeOn(getAsyncScheduler());
+  }
+
+  protected HttpResponse execute(
+      String method, String urlStr, Map<String, String> headers, String contentType, byte[] body)
+      throws IOException {
+    URL url = new URL(urlStr);
+    boolean https = "https".equalsIgnoreCase(url.getProtocol());
+    if (!https && !"http".equalsIgnoreCase(url.getProtocol())) {
+      throw new IOException("Unsupported protocol: " + url.getProtocol());
+    }
+    String host = url.getHost();
+    int port = (url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+    byte[] request = computeRequest(method, url, port, headers, contentType, body);
+
+    HttpConnectionPool.PooledConnection connection = connectionPool.acquire(host, port, https);
+    try {
+      return sendRequest(connection, method, request);
+    } catch (IOException e) {
+      connection.close();
+      if (!connection.isReused() || !"GET".equals(method)) {
+        throw e;
+      }
+      // idle connection was closed by server: retry once on a new connection
+      if (log.isDebugEnabled()) {
+        log.debug("retrying on new connection: " + e.getMessage());
+      }
+      connection = connectionPool.open(host, port, https);
+      try {
+        return sendRequest(connection, method, request);
+      } catch (IOException ee) {
+        connection.close();
+        throw ee;
+      }
+    }
+  }
+
+  private HttpResponse sendRequest(
+      HttpConnectionPool.PooledConnection connection, String method, byte[] request)
+      throws IOException {
+    OutputStream output = connection.getOutput();
+    output.write(request);
+    output.flush();
+    return readResponse(connection, method);
+  }
+
+  private byte[] computeRequest(
+      String method,
+      URL url,
+      int port,
+      Map<String, String> headers,
+      String contentType,
+      byte[] body) {
+    String path = url.getFile();
+    StringBuilder sb = new StringBuilder();
+    sb.append(method).append(' ').append(path.isEmpty() ? "/" : path).append(" HTTP/1.1" + CRLF);
+    sb.append("Host: ").append(url.getHost());
+    if (port != url.getDefaultPort()) {
+      sb.append(':').append(port);
+    }
+    sb.append(CRLF);
+    sb.append("Accept: application/json" + CRLF);
+    sb.append("Accept-Encoding: gzip, deflate" + CRLF);
+    sb.append("Connection: keep-alive" + CRLF);
+    if (headers != null) {
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        sb.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+      }
+    }
+    if (body != null) {
+      sb.append("Content-Type: ").append(contentType).append("; charset=UTF-8" + CRLF);
+      sb.append("Content-Length: ").append(body.length).append(CRLF);
+    }
+    sb.append(CRLF);
+    byte[] head = sb.toString().getBytes(Charsets.ISO_8859_1);
+    if (body == null) {
+      return head;
+    }
+    byte[] request = new byte[head.length + body.length];
+    System.arraycopy(head, 0, request, 0, head.length);
+    System.arraycopy(body, 0, request, head.length, body.length);
+    return request;
+  }
+
+  private HttpResponse readResponse(HttpConnectionPool.PooledConnection connection, String method)
+      throws IOException {
+    InputStream input = connection.getInput();
+    String statusLine;
+    int status;
+    do {
+      statusLine = readLine(input);
+      if (statusLine == null) {
+        throw new EOFException("Connection closed by server");
+      }
+      String[] statusParts = statusLine.split(" ", 3);
+      if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+        throw new IOException("Invalid HTTP response: " + statusLine);
+      }
+      try {
+        status = Integer.parseInt(statusParts[1]);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid HTTP response: " + statusLine);
+      }
+    } while (status >= 100 && status < 200 && skipHeaders(input)); // skip 100-continue
+
+    Map<String, String> responseHeaders = readHeaders(input);
+    String connectionHeader = responseHeaders.get("connection");
+    boolean keepAlive =
+        statusLine.startsWith("HTTP/1.1")
+            ? !"close".equalsIgnoreCase(connectionHeader)
+            : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+    // body framing
+    InputStream bodyStream;
+    String transferEncoding = responseHeaders.get("transfer-encoding");
+    String contentLength = responseHeaders.get("content-length");
+    if ("HEAD".equals(method) || status == 204 || status == 304) {
+      bodyStream = new BoundedInputStream(input, 0);
+    } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+      bodyStream = new ChunkedInputStream(input);
+    } else if (contentLength != null) {
+      try {
+        bodyStream = new BoundedInputStream(input, Long.parseLong(contentLength.trim()));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid Content-Length: " + contentLength);
+      }
+    } else {
+      // body ends when server closes connection
+      bodyStream = input;
+      keepAlive = false;
+    }
+    InputStream body = new ResponseBodyStream(bodyStream, connection, keepAlive);
+
+    // content decoding
+    String contentEncoding = responseHeaders.get("content-encoding");
+    if (contentEncoding != null && status != 304 && status != 204) {
+      contentEncoding = contentEncoding.trim().toLowerCase();
+      try {
+        if ("gzip".equals(contentEncoding) || "x-gzip".equals(contentEncoding)) {
+          body = new GZIPInputStream(body);
+        } else if ("deflate".equals(contentEncoding)) {
+          body = new InflaterInputStream(body);
+        } else if (!"identity".equals(contentEncoding)) {
+          throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+      } catch (IOException e) {
+        connection.close();
+        body.close();
+        throw e;
+      }
+    }
+    return new HttpResponse(status, responseHeaders, body);
+  }
+
+  private boolean skipHeaders(InputStream input) throws IOException {
+    readHeaders(input);
+    return true;
+  }
+
+  private Map<String, String> readHeaders(InputStream input) throws IOException {
+    Map<String, String> headers = new HashMap<String, String>();
+    String line;
+    while ((line = readLine(input)) != null && !line.isEmpty()) {
+      int separator = line.indexOf(':');
+      if (separator > 0) {
+        String name = line.substring(0, separator).trim().toLowerCase();
+        String value = line.substring(separator + 1).trim();
+        String existing = headers.get(name);
+        headers.put(name, existing != null ? existing + ", " + value : value);
+      }
+    }
+    return headers;
+  }
+
+  private InputStream checkStatus(HttpResponse response) throws Exception {
+    if (response.status >= 200 && response.status < 300) {
+      return response.body;
+    }
+    String responseBody = readString(response.body);
+    throw new HttpException(new Exception("HTTP " + response.status), responseBody);
+  }
+
+  private String computeUrlEncoded(Map<String, String> body) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    if (body != null) {
+      for (Map.Entry<String, String> entry : body.entrySet()) {
+        if (sb.length() > 0) {
+          sb.append('&');
+        }
+        sb.append(URLEncoder.encode(entry.getKey(), "UTF-8"));
+        sb.append('=');
+        String value = entry.getValue();
+        sb.append(value != null ? URLEncoder.encode(value, "UTF-8") : "");
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String readString(InputStream inputStream) throws IOException {
+    try {
+      return new String(ByteStreams.toByteArray(inputStream), Charsets.UTF_8);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+    int b;
+    while ((b = input.read()) != -1) {
+      if (b == '\n') {
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+          length--;
+        }
+        return new String(bytes, 0, length, Charsets.ISO_8859_1);
+      }
+      line.write(b);
+    }
+    return (line.size() > 0 ? new String(line.toByteArray(), Charsets.ISO_8859_1) : null);
+  }
+
+  private synchronized Scheduler getAsyncScheduler() {
+    if (asyncScheduler == null) {
+      final String threadPrefix =
+          "httpClient-" + (getHttpUsage() != null ? getHttpUsage().name() : "default") + "-";
+      ThreadPoolExecutor threadPoolExecutor =
+          new ThreadPoolExecutor(
+              asyncThreads,
+              asyncThreads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new ThreadFactory() {
+                private final AtomicInteger threadId = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, threadPrefix + threadId.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      asyncScheduler = Schedulers.from(threadPoolExecutor);
+    }
+    return asyncScheduler;
+  }
+
+  public Proxy getProxy() {
+    return proxy;
+  }
+
+  public HttpConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  public void setConnectTimeout(int connectTimeout) {
+    connectionPool.setConnectTimeout(connectTimeout);
+  }
+
+  public void setReadTimeout(int readTimeout) {
+    connectionPool.setReadTimeout(readTimeout);
+  }
+
+  /** @param keepAliveTimeout how long idle connections are kept (ms), 0 to disable keep-alive */
+  public void setKeepAliveTimeout(int keepAliveTimeout) {
+    connectionPool.setKeepAliveTimeout(keepAliveTimeout);
+  }
+
+  public void setMaxIdlePerHost(int maxIdlePerHost) {
+    connectionPool.setMaxIdlePerHost(maxIdlePerHost);
+  }
+
+  /** @param asyncThreads max concurrent postJson requests, effective before first postJson */
+  public synchronized void setAsyncThreads(int asyncThreads) {
+    this.asyncThreads = asyncThreads;
+  }
+
+  protected static class HttpResponse {
+    private final int status;
+    private final Map<String, String> headers; // lowercase names
+    private final InputStream body;
+
+    HttpResponse(int status, Map<String, String> headers, InputStream body) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public String getHeader(String name) {
+      return headers.get(name.toLowerCase());
+    }
+
+    public InputStream getBody() {
+      return body;
+    }
+  }
+
+  /** Returns connection to pool when body is fully read and closed. */
+  private class ResponseBodyStream extends FilterInputStream {
+    private final HttpConnectionPool.PooledConnection connection;
+    private final boolean keepAlive;
+    private boolean eof;
+    private boolean closed;
+
+    ResponseBodyStream(
+        InputStream in, HttpConnectionPool.PooledConnection connection, boolean keepAlive) {
+      super(in);
+      this.connection = connection;
+      this.keepAlive = keepAlive;
+      this.eof = false;
+      this.closed = false;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b == -1) {
+        eof = true;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n == -1) {
+        eof = true;
+      }
+      return n;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      boolean reusable = false;
+      if (keepAlive) {
+        try {
+          // decoders may stop before end of body (gzip trailer, last chunk)
+          long drained = 0;
+          while (!eof && drained <= DRAIN_MAX) {
+            if (in.read() == -1) {
+              eof = true;
+            }
+            drained++;
+          }
+          reusable = eof;
+        } catch (IOException e) {
+          reusable = false;
+        }
+      }
+      connectionPool.release(connection, reusable);
+    }
+  }
+
+  /** Body delimited by Content-Length. */
+  private static class BoundedInputStream extends FilterInputStream {
+    private long remaining;
+
+    BoundedInputStream(InputStream in, long length) {
+      super(in);
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of body");
+      }
+      remaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int n = in.read(b, off, (int) Math.min(len, remaining));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of body");
+      }
+      remaining -= n;
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public void close() {
+      // connection is managed by ResponseBodyStream
+    }
+  }
+
+  /** Body with chunked transfer-encoding. */
+  private static class ChunkedInputStream extends FilterInputStream {
+    private long chunkRemaining;
+    private boolean eof;
+
+    ChunkedInputStream(InputStream in) {
+      super(in);
+      this.chunkRemaining = 0;
+      this.eof = false;
+    }
+
+    private boolean nextChunk() throws IOException {
+      if (eof) {
+        return false;
+      }
+      if (chunkRemaining == 0) {
+        String line = readLine(in);
+        if (line == null) {
+          throw new EOFException("Unexpected end of chunked body");
+        }
+        int extension = line.indexOf(';');
+        String size = (extension >= 0 ? line.substring(0, extension) : line).trim();
+        try {
+          chunkRemaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid chunk size: " + line);
+        }
+        if (chunkRemaining == 0) {
+          // skip trailers
+          String trailer;
+          while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {}
+          eof = true;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void endChunk() throws IOException {
+      if (chunkRemaining == 0) {
+        readLine(in); // CRLF after chunk data
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of chunked body");
+      }
+      chunkRemaining--;
+      endChunk();
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of chunked body");
+      }
+      chunkRemaining -= n;
+      endChunk();
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), chunkRemaining);
+    }
+
+    @Override
+    public void close() {
+      // connection is managed by ResponseBodyStream
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.samourai.http.client;
+
+import java.net.Proxy;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * PooledHttpClient by HttpUsage. Each usage gets its own client, so connections are never reused
+ * across usages.
+ */
+public class PooledHttpClientService implements IHttpClientService {
+  private final Proxy proxy;
+  private final Map<HttpUsage, PooledHttpClient> httpClients; // guarded by itself
+
+  public PooledHttpClientService() {
+    this(null);
+  }
+
+  /** @param proxy SOCKS proxy, or null for direct connections */
+  public PooledHttpClientService(Proxy proxy) {
+    this.proxy = proxy;
+    this.httpClients = new EnumMap<HttpUsage, PooledHttpClient>(HttpUsage.class);
+  }
+
+  @Override
+  public PooledHttpClient getHttpClient(HttpUsage httpUsage) {
+    synchronized (httpClients) {
+      PooledHttpClient httpClient = httpClients.get(httpUsage);
+      if (httpClient == null) {
+        httpClient = newHttpClient(httpUsage);
+        httpClients.put(httpUsage, httpClient);
+      }
+      return httpClient;
+    }
+  }
+
+  /** Override to configure timeouts or a distinct proxy (Tor stream isolation) by usage. */
+  protected PooledHttpClient newHttpClient(HttpUsage httpUsage) {
+    return new PooledHttpClient(httpUsage, proxy);
+  }
+
+  /** Close idle connections of all clients. */
+  public void close() {
+    synchronized (httpClients) {
+      for (PooledHttpClient httpClient : httpClients.values()) {
+        httpClient.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.samourai.http.client;
+
+import com.samourai.wallet.api.backend.beans.HttpException;
+import io.reactivex.Observable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java8.util.Optional;
+
+/**
+ * IHttpClient decorator merging concurrent identical GETs into a single request: callers asking
+ * for a GET already in flight wait for it and get the same parsed result. Results can also be
+ * reused for a short TTL. Returned objects are shared between callers and must be treated as
+ * read-only. POSTs are never merged.
+ */
+public class SingleFlightHttpClient implements IHttpClient {
+  private static final int MAX_RESULTS = 100;
+
+  private final IHttpClient httpClient;
+  private final long resultTtlMs;
+  private final ConcurrentHashMap<String, FutureTask<Object>> inFlight;
+  private final LinkedHashMap<String, CachedResult> results; // LRU, guarded by itself
+
+  private final AtomicLong nbIssued;
+  private final AtomicLong nbMerged;
+  private final AtomicLong nbCached;
+
+  public SingleFlightHttpClient(IHttpClient httpClient) {
+    this(httpClient, 0);
+  }
+
+  /** @param resultTtlMs how long a result is reused for identical GETs, 0 to disable */
+  public SingleFlightHttpClient(IHttpClient httpClient, long resultTtlMs) {
+    this.httpClient = httpClient;
+    this.resultTtlMs = resultTtlMs;
+    this.inFlight = new ConcurrentHashMap<String, FutureTask<Object>>();
+    this.results =
+        new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > MAX_RESULTS;
+          }
+        };
+    this.nbIssued = new AtomicLong(0);
+    this.nbMerged = new AtomicLong(0);
+    this.nbCached = new AtomicLong(0);
+  }
+
+  @Override
+  public void connect() throws Exception {
+    httpClient.connect();
+  }
+
+  @Override
+  public <T> T getJson(
+      final String urlStr, final Class<T> responseType, final Map<String, String> headers)
+      throws HttpException {
+    String key = computeKey(urlStr, responseType, headers);
+
+    // recent result
+    if (resultTtlMs > 0) {
+      synchronized (results) {
+        CachedResult cachedResult = results.get(key);
+        if (cachedResult != null) {
+          if (System.currentTimeMillis() < cachedResult.expiry) {
+            nbCached.incrementAndGet();
+            return (T) cachedResult.value;
+          }
+          results.remove(key);
+        }
+      }
+    }
+
+    FutureTask<Object> task =
+        new FutureTask<Object>(
+            new Callable<Object>() {
+              @Override
+              public Object call() throws Exception {
+                return httpClient.getJson(urlStr, responseType, headers);
+              }
+            });
+    FutureTask<Object> existingTask = inFlight.putIfAbsent(key, task);
+    if (existingTask != null) {
+      // join request in flight
+      nbMerged.incrementAndGet();
+      return (T) await(existingTask);
+    }
+
+    nbIssued.incrementAndGet();
+    try {
+      task.run();
+      Object result = await(task);
+      if (resultTtlMs > 0) {
+        synchronized (results) {
+          results.put(key, new CachedResult(result, System.currentTimeMillis() + resultTtlMs));
+        }
+      }
+      return (T) result;
+    } finally {
+      inFlight.remove(key, task);
+    }
+  }
+
+  private Object await(FutureTask<Object> task) throws HttpException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HttpException(e, null);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof HttpException) {
+        throw (HttpException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new HttpException((Exception) cause, null);
+    }
+  }
+
+  @Override
+  public <T> Observable<Optional<T>> postJson(
+      String url, Class<T> responseType, Map<String, String> headers, Object body) {
+    return httpClient.postJson(url, responseType, headers, body);
+  }
+
+  @Override
+  public <T> T postUrlEncoded(
+      String urlStr, Class<T> responseType, Map<String, String> headers, Map<String, String> body)
+      throws HttpException {
+    return httpClient.postUrlEncoded(urlStr, responseType, headers, body);
+  }
+
+  private String computeKey(String urlStr, Class<?> responseType, Map<String, String> headers) {
+    return responseType.getName() + " " + urlStr + (headers != null ? " " + headers : "");
+  }
+
+  /** @return GETs sent to wrapped client */
+  public long getNbIssued() {
+    return nbIssued.get();
+  }
+
+  /** @return GETs merged into a request already in flight */
+  public long getNbMerged() {
+    return nbMerged.get();
+  }
+
+  /** @return GETs served from a recent result */
+  public long getNbCached() {
+    return nbCached.get();
+  }
+
+  private static class CachedResult {
+    private final Object value;
+    private final long expiry;
+
+    CachedResult(Object value, long expiry) {
+      this.value = value;
+      this.expiry = expiry;
+    }
+  }
+}
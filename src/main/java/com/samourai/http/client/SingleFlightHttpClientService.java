@@ -0,0 +1,30 @@
+package com.samourai.http.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Wraps clients of an IHttpClientService with SingleFlightHttpClient, one per HttpUsage. */
+public class SingleFlightHttpClientService implements IHttpClientService {
+  private final IHttpClientService httpClientService;
+  private final long resultTtlMs;
+  private final Map<HttpUsage, SingleFlightHttpClient> httpClients; // guarded by itself
+
+  public SingleFlightHttpClientService(IHttpClientService httpClientService, long resultTtlMs) {
+    this.httpClientService = httpClientService;
+    this.resultTtlMs = resultTtlMs;
+    this.httpClients = new EnumMap<HttpUsage, SingleFlightHttpClient>(HttpUsage.class);
+  }
+
+  @Override
+  public SingleFlightHttpClient getHttpClient(HttpUsage httpUsage) {
+    synchronized (httpClients) {
+      SingleFlightHttpClient httpClient = httpClients.get(httpUsage);
+      if (httpClient == null) {
+        httpClient =
+            new SingleFlightHttpClient(httpClientService.getHttpClient(httpUsage), resultTtlMs);
+        httpClients.put(httpUsage, httpClient);
+      }
+      return httpClient;
+    }
+  }
+}
@@ -120,6 +120,11 @@ public class StompTransport {
     stompClient.disconnect();
   }
 
+  /** @return true once disconnected, transport cannot be used anymore */
+  public synchronized boolean isDone() {
+    return done;
+  }
+
   // STOMP communication
 
   public void send(String destination, Object message) {
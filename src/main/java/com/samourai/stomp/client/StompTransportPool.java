@@ -0,0 +1,226 @@
+package com.samourai.stomp.client;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spare transports connected ahead of time, not subscribed yet. Each spare uses its own
+ * IStompClient, so it remains a distinct identity for the server. Spares are kept by url and
+ * connect headers (server + pool), starting from the first take() for them.
+ */
+public class StompTransportPool {
+  private static final Logger log = LoggerFactory.getLogger(StompTransportPool.class);
+
+  private final IStompClientService stompClientService;
+  private int spares;
+
+  // by url + connect headers, guarded by this
+  private final Map<String, LinkedList<PooledTransport>> connected;
+  private final Map<String, Integer> nbConnecting;
+  private boolean closed;
+  private long nbTaken;
+  private long nbMissed;
+
+  public StompTransportPool(IStompClientService stompClientService, int spares) {
+    this.stompClientService = stompClientService;
+    this.spares = spares;
+    this.connected = new HashMap<String, LinkedList<PooledTransport>>();
+    this.nbConnecting = new HashMap<String, Integer>();
+    this.closed = false;
+    this.nbTaken = 0;
+    this.nbMissed = 0;
+  }
+
+  /**
+   * Take a connected transport, and connect a new spare to replace it.
+   *
+   * @return connected transport to attach a listener to, or null when no spare is ready
+   */
+  public PooledTransport take(String wsUrl, Map<String, String> connectHeaders) {
+    String key = computeKey(wsUrl, connectHeaders);
+    PooledTransport pooledTransport = null;
+    synchronized (this) {
+      LinkedList<PooledTransport> transports = connected.get(key);
+      if (transports != null && !transports.isEmpty()) {
+        pooledTransport = transports.removeFirst();
+        pooledTransport.taken = true;
+        nbTaken++;
+      } else {
+        nbMissed++;
+      }
+    }
+    refill(key, wsUrl, connectHeaders);
+    return pooledTransport;
+  }
+
+  private void refill(String key, String wsUrl, Map<String, String> connectHeaders) {
+    int nbMissing;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      LinkedList<PooledTransport> transports = connected.get(key);
+      int nbReady = (transports != null ? transports.size() : 0);
+      nbMissing = spares - nbReady - getNbConnecting(key);
+      if (nbMissing <= 0) {
+        return;
+      }
+      nbConnecting.put(key, getNbConnecting(key) + nbMissing);
+    }
+    for (int i = 0; i < nbMissing; i++) {
+      connectSpare(key, wsUrl, connectHeaders);
+    }
+  }
+
+  private void connectSpare(String key, String wsUrl, Map<String, String> connectHeaders) {
+    if (log.isDebugEnabled()) {
+      log.debug("connecting spare transport: " + wsUrl);
+    }
+    PooledTransport pooledTransport = new PooledTransport(key);
+    IStompClient stompClient = stompClientService.newStompClient();
+    pooledTransport.transport = new StompTransport(stompClient, pooledTransport, "spare");
+    pooledTransport.transport.connect(wsUrl, connectHeaders);
+  }
+
+  /** @return false when pool was closed meanwhile */
+  private synchronized boolean onSpareConnected(PooledTransport pooledTransport) {
+    nbConnecting.put(pooledTransport.key, getNbConnecting(pooledTransport.key) - 1);
+    if (closed) {
+      return false;
+    }
+    LinkedList<PooledTransport> transports = connected.get(pooledTransport.key);
+    if (transports == null) {
+      transports = new LinkedList<PooledTransport>();
+      connected.put(pooledTransport.key, transports);
+    }
+    transports.addLast(pooledTransport);
+    return true;
+  }
+
+  private synchronized void onSpareDisconnected(PooledTransport pooledTransport) {
+    if (pooledTransport.connected) {
+      LinkedList<PooledTransport> transports = connected.get(pooledTransport.key);
+      if (transports != null) {
+        transports.remove(pooledTransport);
+      }
+    } else {
+      // failed to connect: will be replaced on next take()
+      nbConnecting.put(pooledTransport.key, getNbConnecting(pooledTransport.key) - 1);
+    }
+  }
+
+  private int getNbConnecting(String key) {
+    Integer nb = nbConnecting.get(key);
+    return nb != null ? nb : 0;
+  }
+
+  private String computeKey(String wsUrl, Map<String, String> connectHeaders) {
+    return wsUrl + " " + new TreeMap<String, String>(connectHeaders);
+  }
+
+  /** Disconnect spares. */
+  public void close() {
+    LinkedList<PooledTransport> transports = new LinkedList<PooledTransport>();
+    synchronized (this) {
+      closed = true;
+      for (LinkedList<PooledTransport> transportsForKey : connected.values()) {
+        transports.addAll(transportsForKey);
+      }
+      connected.clear();
+    }
+    for (PooledTransport pooledTransport : transports) {
+      pooledTransport.transport.disconnect();
+    }
+  }
+
+  public synchronized int getNbSpares() {
+    int nbSpares = 0;
+    for (LinkedList<PooledTransport> transports : connected.values()) {
+      nbSpares += transports.size();
+    }
+    return nbSpares;
+  }
+
+  /** @return connections served by a spare */
+  public synchronized long getNbTaken() {
+    return nbTaken;
+  }
+
+  /** @return connections without spare ready */
+  public synchronized long getNbMissed() {
+    return nbMissed;
+  }
+
+  public synchronized int getSpares() {
+    return spares;
+  }
+
+  /** @param spares connected transports to keep by server + pool */
+  public synchronized void setSpares(int spares) {
+    this.spares = spares;
+  }
+
+  /** Spare transport, forwarding its events to the listener attached once taken. */
+  public class PooledTransport implements IStompTransportListener {
+    private final String key;
+    private StompTransport transport;
+    private IStompTransportListener listener; // attached listener
+    private boolean connected;
+    private boolean taken;
+    private boolean disconnected;
+    private Throwable disconnectException;
+
+    PooledTransport(String key) {
+      this.key = key;
+      this.listener = null;
+      this.connected = false;
+      this.taken = false;
+      this.disconnected = false;
+    }
+
+    public StompTransport getTransport() {
+      return transport;
+    }
+
+    /**
+     * Forward transport events to listener, starting with onTransportConnected() (or
+     * onTransportDisconnected() when it was lost meanwhile).
+     */
+    public synchronized void attach(IStompTransportListener listener) {
+      this.listener = listener;
+      if (disconnected) {
+        listener.onTransportDisconnected(disconnectException);
+      } else {
+        listener.onTransportConnected();
+      }
+    }
+
+    @Override
+    public synchronized void onTransportConnected() {
+      connected = true;
+      if (!onSpareConnected(this)) {
+        transport.disconnect();
+      }
+    }
+
+    @Override
+    public synchronized void onTransportDisconnected(Throwable exception) {
+      if (listener != null) {
+        listener.onTransportDisconnected(exception);
+        return;
+      }
+      disconnected = true;
+      disconnectException = exception;
+      if (!taken) {
+        if (log.isDebugEnabled()) {
+          log.debug("spare transport disconnected");
+        }
+        onSpareDisconnected(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.samourai.wallet.client;
+
+import com.samourai.wallet.hd.HD_Address;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of derived addresses for one account. Addresses can be prefetched on a shared
+ * background executor, so EC derivation doesn't happen on the calling thread. An address requested
+ * while being prefetched is awaited instead of derived twice.
+ */
+public abstract class Bip84AddressCache {
+  private static Executor sharedExecutor;
+
+  private final Executor executor;
+  private int cacheSize;
+  private int lookahead;
+
+  // LRU, guarded by itself
+  private final LinkedHashMap<Long, FutureTask<HD_Address>> addresses;
+
+  private long nbHits;
+  private long nbMisses;
+
+  public Bip84AddressCache(int cacheSize, int lookahead) {
+    this(cacheSize, lookahead, getSharedExecutor());
+  }
+
+  public Bip84AddressCache(int cacheSize, int lookahead, Executor executor) {
+    this.executor = executor;
+    this.cacheSize = cacheSize;
+    this.lookahead = lookahead;
+    this.addresses =
+        new LinkedHashMap<Long, FutureTask<HD_Address>>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, FutureTask<HD_Address>> eldest) {
+            return size() > Bip84AddressCache.this.cacheSize;
+          }
+        };
+    this.nbHits = 0;
+    this.nbMisses = 0;
+  }
+
+  protected abstract HD_Address derive(int chainIndex, int addressIndex);
+
+  public HD_Address get(int chainIndex, int addressIndex) {
+    FutureTask<HD_Address> task;
+    synchronized (addresses) {
+      long key = computeKey(chainIndex, addressIndex);
+      task = addresses.get(key);
+      if (task != null && task.isDone()) {
+        nbHits++;
+      } else {
+        nbMisses++;
+        if (task == null) {
+          task = computeTask(chainIndex, addressIndex);
+          addresses.put(key, task);
+        }
+      }
+    }
+    // derive now, unless already derived or being derived in background
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return derive(chainIndex, addressIndex);
+    } catch (ExecutionException e) {
+      synchronized (addresses) {
+        addresses.remove(computeKey(chainIndex, addressIndex)); // retry next time
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Derive addresses [fromIndex, fromIndex+nb) in background, if not cached yet. */
+  public void prefetch(int chainIndex, int fromIndex, int nb) {
+    nb = Math.min(nb, cacheSize);
+    for (int i = 0; i < nb; i++) {
+      int addressIndex = fromIndex + i;
+      FutureTask<HD_Address> task = null;
+      synchronized (addresses) {
+        long key = computeKey(chainIndex, addressIndex);
+        if (!addresses.containsKey(key)) {
+          task = computeTask(chainIndex, addressIndex);
+          addresses.put(key, task);
+        }
+      }
+      if (task != null) {
+        executor.execute(task);
+      }
+    }
+  }
+
+  /** Prefetch lookahead window after addressIndex. */
+  public void prefetchLookahead(int chainIndex, int addressIndex) {
+    if (lookahead > 0) {
+      prefetch(chainIndex, addressIndex + 1, lookahead);
+    }
+  }
+
+  private FutureTask<HD_Address> computeTask(final int chainIndex, final int addressIndex) {
+    return new FutureTask<HD_Address>(
+        new Callable<HD_Address>() {
+          @Override
+          public HD_Address call() throws Exception {
+            return derive(chainIndex, addressIndex);
+          }
+        });
+  }
+
+  private static long computeKey(int chainIndex, int addressIndex) {
+    return ((long) chainIndex << 32) | (addressIndex & 0xffffffffL);
+  }
+
+  public void setCacheSize(int cacheSize) {
+    synchronized (addresses) {
+      this.cacheSize = cacheSize;
+    }
+  }
+
+  public void setLookahead(int lookahead) {
+    this.lookahead = lookahead;
+  }
+
+  public int getSize() {
+    synchronized (addresses) {
+      return addresses.size();
+    }
+  }
+
+  public long getNbHits() {
+    synchronized (addresses) {
+      return nbHits;
+    }
+  }
+
+  public long getNbMisses() {
+    synchronized (addresses) {
+      return nbMisses;
+    }
+  }
+
+  /** @return shared executor for CPU-bound key derivation */
+  public static synchronized Executor getSharedExecutor() {
+    if (sharedExecutor == null) {
+      int nbThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+      ThreadPoolExecutor threadPoolExecutor =
+          new ThreadPoolExecutor(
+              nbThreads,
+              nbThreads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new ThreadFactory() {
+                private final AtomicInteger threadId = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread =
+                      new Thread(runnable, "addressDerivation-" + threadId.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      sharedExecutor = threadPoolExecutor;
+    }
+    return sharedExecutor;
+  }
+}
@@ -56,7 +56,10 @@ public class Bip84ApiWallet extends Bip84Wallet {
   }
 
   public void refreshIndexs() throws Exception {
-    MultiAddrResponse.Address address = fetchAddress();
+    refreshIndexs(fetchAddress());
+  }
+
+  public void refreshIndexs(MultiAddrResponse.Address address) {
     setIndexMin(address.account_index, indexHandler);
     setIndexMin(address.change_index, indexChangeHandler);
   }
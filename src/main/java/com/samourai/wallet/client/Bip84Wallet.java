@@ -11,11 +11,14 @@ public class Bip84Wallet {
   private static final Logger log = LoggerFactory.getLogger(Bip84Wallet.class);
   public static final int CHAIN_RECEIVE = 0;
   protected static final int CHAIN_CHANGE = 1;
+  public static final int ADDRESS_CACHE_SIZE_DEFAULT = 1000;
+  public static final int ADDRESS_LOOKAHEAD_DEFAULT = 20;
 
   protected HD_Wallet bip84w;
   protected int accountIndex;
   protected IIndexHandler indexHandler;
   protected IIndexHandler indexChangeHandler;
+  private Bip84AddressCache addressCache;
 
   public Bip84Wallet(
       HD_Wallet bip84w,
@@ -26,6 +29,13 @@ public class Bip84Wallet {
     this.accountIndex = accountIndex;
     this.indexHandler = indexHandler;
     this.indexChangeHandler = indexChangeHandler;
+    this.addressCache =
+        new Bip84AddressCache(ADDRESS_CACHE_SIZE_DEFAULT, ADDRESS_LOOKAHEAD_DEFAULT) {
+          @Override
+          protected HD_Address derive(int chainIndex, int addressIndex) {
+            return getAddressBip84(Bip84Wallet.this.accountIndex, chainIndex, addressIndex);
+          }
+        };
   }
 
   public HD_Address getNextAddress() {
@@ -34,7 +44,9 @@ public class Bip84Wallet {
 
   public HD_Address getNextAddress(boolean increment) {
     int nextAddressIndex = increment ? indexHandler.getAndIncrement() : indexHandler.get();
-    return getAddressAt(CHAIN_RECEIVE, nextAddressIndex);
+    HD_Address address = getAddressAt(CHAIN_RECEIVE, nextAddressIndex);
+    addressCache.prefetchLookahead(CHAIN_RECEIVE, nextAddressIndex);
+    return address;
   }
 
   public HD_Address getNextChangeAddress() {
@@ -44,11 +56,29 @@ public class Bip84Wallet {
   public HD_Address getNextChangeAddress(boolean increment) {
     int nextAddressIndex =
         increment ? indexChangeHandler.getAndIncrement() : indexChangeHandler.get();
-    return getAddressAt(CHAIN_CHANGE, nextAddressIndex);
+    HD_Address address = getAddressAt(CHAIN_CHANGE, nextAddressIndex);
+    addressCache.prefetchLookahead(CHAIN_CHANGE, nextAddressIndex);
+    return address;
+  }
+
+  /** Derive addresses after current receive & change indexs in background. */
+  public void prefetchLookahead() {
+    addressCache.prefetchLookahead(CHAIN_RECEIVE, indexHandler.get() - 1);
+    addressCache.prefetchLookahead(CHAIN_CHANGE, indexChangeHandler.get() - 1);
+  }
+
+  /** Derive next receive addresses in background, before requesting them. */
+  public void prefetchNextAddresses(int nb) {
+    addressCache.prefetch(CHAIN_RECEIVE, indexHandler.get(), nb);
+  }
+
+  /** Derive next change addresses in background, before requesting them. */
+  public void prefetchNextChangeAddresses(int nb) {
+    addressCache.prefetch(CHAIN_CHANGE, indexChangeHandler.get(), nb);
   }
 
   public HD_Address getAddressAt(int chainIndex, int addressIndex) {
-    return getAddressBip84(accountIndex, chainIndex, addressIndex);
+    return addressCache.get(chainIndex, addressIndex);
   }
 
   public HD_Address getAddressAt(UnspentResponse.UnspentOutput utxo) {
@@ -74,4 +104,8 @@ public class Bip84Wallet {
   public int getAccountIndex() {
     return accountIndex;
   }
+
+  public Bip84AddressCache getAddressCache() {
+    return addressCache;
+  }
 }
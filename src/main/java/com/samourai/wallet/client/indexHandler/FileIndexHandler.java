@@ -2,25 +2,75 @@ package com.samourai.wallet.client.indexHandler;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Indexes stored as a JSON snapshot plus an append-only journal of changes. Changes are appended
+ * to the journal (concurrent changes are written together), journal is compacted into snapshot in
+ * background when it grows, and replayed on load.
+ */
 public class FileIndexHandler {
   private static final Logger log = LoggerFactory.getLogger(FileIndexHandler.class);
+  private static final String JOURNAL_SUFFIX = ".journal";
+  private static final String JOURNAL_COMPACTING_SUFFIX = ".journal.compacting";
+  private static final char SEPARATOR = '\t';
+  private static final int COMPACT_RECORDS = 1000;
+  private static final int ASYNC_FLUSH_DELAY = 1000; // 1s
+
+  private static ScheduledExecutorService asyncFlushExecutor; // async flushs & compactions
 
   private File file;
+  private File journalFile;
+  private File journalCompactingFile;
+  private JournalDurability durability;
   private ObjectMapper mapper = new ObjectMapper();
   private Map<String, Integer> indexes = new ConcurrentHashMap<String, Integer>();
 
+  // journal records not written yet, guarded by this
+  private StringBuilder pending = new StringBuilder();
+  private long pendingSeq = 0;
+  private boolean flushScheduled = false;
+
+  // journal writer, guarded by writeLock
+  private final Object writeLock = new Object();
+  private FileOutputStream journalOutput;
+  private long writtenSeq = 0;
+  private long nbJournalRecords = 0;
+  private boolean compacting = false;
+
   public FileIndexHandler(File file) {
+    this(file, JournalDurability.WRITE);
+  }
+
+  public FileIndexHandler(File file, JournalDurability durability) {
     this.file = file;
+    this.journalFile = new File(file.getParent(), file.getName() + JOURNAL_SUFFIX);
+    this.journalCompactingFile =
+        new File(file.getParent(), file.getName() + JOURNAL_COMPACTING_SUFFIX);
+    this.durability = durability;
     load();
   }
 
+  /** @return true when snapshot or journal exists for file */
+  public static boolean exists(File file) {
+    return file.exists()
+        || new File(file.getParent(), file.getName() + JOURNAL_SUFFIX).exists()
+        || new File(file.getParent(), file.getName() + JOURNAL_COMPACTING_SUFFIX).exists();
+  }
+
   public int get(String key, int defaultValue) {
     if (!indexes.containsKey(key)) {
       return defaultValue;
@@ -28,37 +78,294 @@ public class FileIndexHandler {
     return indexes.get(key);
   }
 
-  public synchronized int getAndIncrement(String key, int defaultValue) {
-    int value = get(key, defaultValue);
-    set(key, value + 1);
+  public int getAndIncrement(String key, int defaultValue) {
+    int value;
+    long seq;
+    synchronized (this) {
+      value = get(key, defaultValue);
+      seq = append(key, value + 1);
+    }
+    commit(seq);
     return value;
   }
 
-  public synchronized void set(String key, int value) {
-    indexes.put(key, value);
-    write();
+  public void set(String key, int value) {
+    long seq;
+    synchronized (this) {
+      seq = append(key, value);
+    }
+    commit(seq);
+  }
+
+  public Map<String, Integer> getIndexes() {
+    return new HashMap<String, Integer>(indexes);
   }
 
   public ItemFileIndexHandler getIndexHandler(String key, int defaultValue) {
     return new ItemFileIndexHandler(this, key, defaultValue);
   }
 
+  /**
+   * Write pending changes to journal.
+   *
+   * @throws RuntimeException when journal could not be written, changes are kept pending
+   */
+  public void flush() {
+    long seq;
+    synchronized (this) {
+      seq = pendingSeq;
+    }
+    write(seq, durability == JournalDurability.FSYNC);
+  }
+
+  /** Flush and compact journal into snapshot. */
+  public void close() {
+    synchronized (writeLock) {
+      try {
+        flush();
+      } finally {
+        compact();
+        closeJournal();
+      }
+    }
+  }
+
+  private long append(String key, int value) {
+    indexes.put(key, value);
+    pending.append(key).append(SEPARATOR).append(value).append('\n');
+    return ++pendingSeq;
+  }
+
+  private void commit(long seq) {
+    if (durability == JournalDurability.ASYNC) {
+      scheduleFlush();
+      return;
+    }
+    write(seq, durability == JournalDurability.FSYNC);
+  }
+
+  // group commit: first thread in writes all pending records, next ones may find theirs written
+  private void write(long seq, boolean fsync) {
+    synchronized (writeLock) {
+      if (writtenSeq >= seq) {
+        return; // already written
+      }
+      String records;
+      long lastSeq;
+      synchronized (this) {
+        records = pending.toString();
+        pending.setLength(0);
+        lastSeq = pendingSeq;
+      }
+      long offset = -1;
+      try {
+        if (journalOutput == null) {
+          journalOutput = new FileOutputStream(journalFile, true);
+        }
+        offset = journalOutput.getChannel().size();
+        journalOutput.write(records.getBytes(Charsets.UTF_8));
+        journalOutput.flush();
+        if (fsync) {
+          journalOutput.getFD().sync();
+        }
+      } catch (Exception e) {
+        onWriteError(offset, records);
+        throw new RuntimeException("Unable to write file " + journalFile.getAbsolutePath(), e);
+      }
+      nbJournalRecords += lastSeq - writtenSeq;
+      writtenSeq = lastSeq;
+
+      if (nbJournalRecords >= COMPACT_RECORDS && !compacting) {
+        compactAsync();
+      }
+    }
+  }
+
+  private void onWriteError(long offset, String records) {
+    if (offset >= 0) {
+      try {
+        // remove torn records, so that next records are not appended to them
+        journalOutput.getChannel().truncate(offset);
+      } catch (Exception ee) {
+        log.error("Unable to truncate file " + journalFile.getAbsolutePath(), ee);
+      }
+    }
+    closeJournal();
+    synchronized (this) {
+      // retry on next write
+      pending.insert(0, records);
+    }
+  }
+
+  // new records go to a new journal while snapshot is written in background
+  private void compactAsync() {
+    if (journalCompactingFile.exists()) {
+      // previous compaction failed, don't overwrite its journal
+      compact();
+      return;
+    }
+    closeJournal();
+    if (!journalFile.renameTo(journalCompactingFile)) {
+      log.error("Unable to rename file " + journalFile.getAbsolutePath());
+      return;
+    }
+    final Map<String, Integer> snapshot;
+    synchronized (this) {
+      snapshot = new HashMap<String, Integer>(indexes);
+    }
+    nbJournalRecords = 0;
+    compacting = true;
+    getAsyncFlushExecutor()
+        .execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  ClientUtils.safeWriteValue(mapper, snapshot, file);
+                  // compacted journal is now useless, but harmless to replay if still there
+                  journalCompactingFile.delete();
+                } catch (Exception e) {
+                  log.error("Unable to write file " + file.getAbsolutePath(), e);
+                }
+                synchronized (writeLock) {
+                  compacting = false;
+                  writeLock.notifyAll();
+                }
+              }
+            });
+  }
+
+  private void compact() {
+    synchronized (writeLock) {
+      // don't let a background compaction overwrite this snapshot
+      while (compacting) {
+        try {
+          writeLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      Map<String, Integer> snapshot;
+      synchronized (this) {
+        // records still pending are written to new journal
+        snapshot = new HashMap<String, Integer>(indexes);
+      }
+      try {
+        ClientUtils.safeWriteValue(mapper, snapshot, file);
+      } catch (Exception e) {
+        log.error("Unable to write file " + file.getAbsolutePath(), e);
+        return; // keep journal
+      }
+      journalCompactingFile.delete();
+      try {
+        closeJournal();
+        new FileOutputStream(journalFile, false).close(); // truncate
+        nbJournalRecords = 0;
+      } catch (Exception e) {
+        log.error("Unable to truncate file " + journalFile.getAbsolutePath(), e);
+      }
+    }
+  }
+
+  private void closeJournal() {
+    if (journalOutput != null) {
+      try {
+        journalOutput.close();
+      } catch (Exception e) {
+        log.error("", e);
+      }
+      journalOutput = null;
+    }
+  }
+
+  private synchronized void scheduleFlush() {
+    if (flushScheduled) {
+      return;
+    }
+    flushScheduled = true;
+    getAsyncFlushExecutor()
+        .schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                synchronized (FileIndexHandler.this) {
+                  flushScheduled = false;
+                }
+                try {
+                  flush();
+                } catch (Throwable e) {
+                  log.error("", e);
+                  scheduleFlush(); // retry later
+                }
+              }
+            },
+            ASYNC_FLUSH_DELAY,
+            TimeUnit.MILLISECONDS);
+  }
+
+  private static synchronized ScheduledExecutorService getAsyncFlushExecutor() {
+    if (asyncFlushExecutor == null) {
+      asyncFlushExecutor =
+          new ScheduledThreadPoolExecutor(
+              1,
+              new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, "indexJournal");
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+    }
+    return asyncFlushExecutor;
+  }
+
   private void load() {
+    indexes.clear();
     try {
-      indexes.clear();
       Map<String, Integer> readValue =
           mapper.readValue(file, new TypeReference<Map<String, Integer>>() {});
       indexes.putAll(readValue);
     } catch (Exception e) {
       log.warn("Unable to read " + file.getAbsolutePath() + ", resetting indexes");
     }
+
+    // replay journal (including journal of an interrupted compaction)
+    int nbReplayed = replay(journalCompactingFile) + replay(journalFile);
+    if (nbReplayed > 0) {
+      if (log.isDebugEnabled()) {
+        log.debug("Replayed " + nbReplayed + " index changes from journal");
+      }
+      compact();
+    }
   }
 
-  private synchronized void write() {
+  private int replay(File replayFile) {
+    if (!replayFile.exists()) {
+      return 0;
+    }
+    int nbReplayed = 0;
     try {
-      ClientUtils.safeWriteValue(mapper, indexes, file);
+      String journal = Files.toString(replayFile, Charsets.UTF_8);
+      // ignore last record when not terminated (torn write)
+      String[] lines = journal.substring(0, journal.lastIndexOf('\n') + 1).split("\n");
+      for (String line : lines) {
+        int separatorIndex = line.lastIndexOf(SEPARATOR);
+        if (separatorIndex <= 0) {
+          continue;
+        }
+        try {
+          int value = Integer.parseInt(line.substring(separatorIndex + 1));
+          indexes.put(line.substring(0, separatorIndex), value);
+          nbReplayed++;
+        } catch (NumberFormatException e) {
+          log.warn("Ignoring invalid journal record: " + line);
+        }
+      }
     } catch (Exception e) {
-      log.error("Unable to write file " + file.getAbsolutePath());
+      log.error("Unable to read " + replayFile.getAbsolutePath(), e);
     }
+    return nbReplayed;
   }
 }
@@ -0,0 +1,10 @@
+package com.samourai.wallet.client.indexHandler;
+
+public enum JournalDurability {
+  // index changes are synced to disk before returning
+  FSYNC,
+  // index changes are written to OS before returning
+  WRITE,
+  // index changes are written in background
+  ASYNC
+}
@@ -8,6 +8,7 @@ import com.samourai.whirlpool.client.mix.dialog.MixSession;
 import com.samourai.whirlpool.client.mix.listener.MixClientListener;
 import com.samourai.whirlpool.client.mix.listener.MixFailReason;
 import com.samourai.whirlpool.client.mix.listener.MixStep;
+import com.samourai.whirlpool.client.mix.metrics.MixMetrics;
 import com.samourai.whirlpool.client.utils.ClientCryptoService;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.whirlpool.WhirlpoolClientConfig;
@@ -35,6 +36,7 @@ public class MixClient {
   // mix settings
   private MixParams mixParams;
   private MixClientListener listener;
+  private MixMetrics.MixTimer mixTimer;
 
   private ClientCryptoService clientCryptoService;
   private WhirlpoolProtocol whirlpoolProtocol;
@@ -43,7 +45,7 @@ public class MixClient {
   private MixSession mixSession;
 
   public MixClient(WhirlpoolClientConfig config, String logPrefix) {
-    this(config, logPrefix, new ClientCryptoService(), new WhirlpoolProtocol());
+    this(config, logPrefix, ClientCryptoService.getInstance(), new WhirlpoolProtocol());
   }
 
   public MixClient(
@@ -61,10 +63,12 @@ public class MixClient {
   public void whirlpool(MixParams mixParams, MixClientListener listener) {
     this.mixParams = mixParams;
     this.listener = listener;
+    this.mixTimer = config.getMixMetrics().newMixTimer(mixParams.getPoolId());
     connect();
   }
 
   private void listenerProgress(MixStep mixStep) {
+    mixTimer.onStep(mixStep);
     this.listener.progress(mixStep);
   }
 
@@ -104,6 +108,9 @@ public class MixClient {
   }
 
   private void failAndExit(MixFailReason reason, String notifiableError) {
+    if (mixTimer != null) {
+      mixTimer.onStep(MixStep.FAIL);
+    }
     mixParams.getPostmixHandler().cancelReceiveAddress();
     this.listener.fail(reason, notifiableError);
     disconnect();
@@ -239,7 +246,7 @@ public class MixClient {
       public void onMixSuccess() {
         disconnect(); // disconnect before notifying listener to avoid reconnecting before
         // disconnect
-        listener.progress(MixStep.SUCCESS);
+        listenerProgress(MixStep.SUCCESS);
         listener.success(mixProcess.computeMixSuccess());
       }
 
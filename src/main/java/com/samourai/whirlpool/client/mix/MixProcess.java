@@ -131,6 +131,9 @@ public class MixProcess {
     long mustMixBalanceMax = subscribePoolResponse.mustMixBalanceMax;
     checkUtxoBalance(mustMixBalanceMin, mustMixBalanceMax);
 
+    // blinding factor will be ready on CONFIRM_INPUT
+    clientCryptoService.prefetchBlindingFactors(poolId);
+
     String signature = premixHandler.signMessage(poolId);
     RegisterInputRequest registerInputRequest =
         new RegisterInputRequest(
@@ -157,7 +160,7 @@ public class MixProcess {
     // clear receiveAddress will be provided with unblindedSignedBordereau by connecting with
     // another identity for REGISTER_OUTPUT
     byte[] publicKey = WhirlpoolProtocol.decodeBytes(confirmInputMixStatusNotification.publicKey64);
-    RSAKeyParameters serverPublicKey = ClientUtils.publicKeyUnserialize(publicKey);
+    RSAKeyParameters serverPublicKey = clientCryptoService.getPublicKey(poolId, publicKey);
     this.blindingParams = clientCryptoService.computeBlindingParams(serverPublicKey);
     this.receiveAddress = postmixHandler.computeReceiveAddress(networkParameters);
 
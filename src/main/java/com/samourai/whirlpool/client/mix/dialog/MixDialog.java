@@ -20,6 +20,7 @@ import com.samourai.whirlpool.protocol.websocket.notifications.RevealOutputMixSt
 import com.samourai.whirlpool.protocol.websocket.notifications.SigningMixStatusNotification;
 import io.reactivex.CompletableObserver;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import java.util.HashSet;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -226,8 +227,12 @@ public class MixDialog {
       RegisterOutputMixStatusNotification registerOutputMixStatusNotification) throws Exception {
     try {
       String registerOutputUrl = WhirlpoolProtocol.getUrlRegisterOutput(clientConfig.getServer());
+      // POST on client executor, as message handling must not block, then handle result in order
+      // with session messages
       listener
           .postRegisterOutput(registerOutputMixStatusNotification, registerOutputUrl)
+          .subscribeOn(Schedulers.from(clientConfig.getClientExecutor()))
+          .observeOn(Schedulers.from(mixSession.getMessageExecutor()))
           .subscribe(
               new CompletableObserver() {
                 @Override
@@ -243,6 +248,10 @@ public class MixDialog {
                 @Override
                 public void onError(Throwable throwable) {
                   // registerOutput failed
+                  if (done) {
+                    log.info("Ignoring registerOutput error (done): " + throwable.getMessage());
+                    return;
+                  }
                   try {
                     if (throwable instanceof HttpException) {
                       String restErrorResponseMessage =
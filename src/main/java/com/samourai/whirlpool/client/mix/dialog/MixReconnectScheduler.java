@@ -0,0 +1,346 @@
+package com.samourai.whirlpool.client.mix.dialog;
+
+import com.samourai.whirlpool.client.mix.metrics.LatencyHistogram;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared scheduler for MixSession reconnections. Delays use exponential backoff with full jitter,
+ * so that clients disconnected together (server restart) don't reconnect in lockstep, and
+ * handshakes in flight are capped by server: extra reconnections wait for a handshake to end.
+ * Handshakes run on their own executor, the scheduler thread is only used for timing.
+ */
+public class MixReconnectScheduler {
+  private static final Logger log = LoggerFactory.getLogger(MixReconnectScheduler.class);
+  private static final int MAX_HANDSHAKES_DEFAULT = 3;
+  private static final long HANDSHAKE_TIMEOUT_DEFAULT = 60000;
+  private static final int HANDSHAKE_THREADS = 2;
+
+  private static MixReconnectScheduler instance;
+
+  private final ScheduledThreadPoolExecutor timer;
+  private final Executor handshakeExecutor;
+  private final Random random; // jitter only
+  private int maxHandshakes; // by server
+  private volatile long handshakeTimeout;
+
+  // by server, guarded by this
+  private final Map<String, Integer> nbHandshakes;
+  private final Map<String, LinkedList<Handshake>> deferredHandshakes;
+
+  private final AtomicLong nbScheduled;
+  private final AtomicLong nbStarted;
+  private final AtomicLong nbDeferred;
+  private final AtomicLong nbTimeouts;
+  private final LatencyHistogram reconnectDelay;
+
+  public static synchronized MixReconnectScheduler getInstance() {
+    if (instance == null) {
+      instance = new MixReconnectScheduler(MAX_HANDSHAKES_DEFAULT);
+    }
+    return instance;
+  }
+
+  /** @param maxHandshakes max handshakes in flight by server */
+  public MixReconnectScheduler(int maxHandshakes) {
+    this(maxHandshakes, HANDSHAKE_TIMEOUT_DEFAULT);
+  }
+
+  /**
+   * @param maxHandshakes max handshakes in flight by server
+   * @param handshakeTimeout (ms) slot of a handshake not released meanwhile is released anyway
+   */
+  public MixReconnectScheduler(int maxHandshakes, long handshakeTimeout) {
+    this.timer = new ScheduledThreadPoolExecutor(1, computeThreadFactory("mixSession-reconnect-"));
+    ThreadPoolExecutor threadPoolExecutor =
+        new ThreadPoolExecutor(
+            HANDSHAKE_THREADS,
+            HANDSHAKE_THREADS,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            computeThreadFactory("mixSession-handshake-"));
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    this.handshakeExecutor = threadPoolExecutor;
+    this.random = new Random();
+    this.maxHandshakes = maxHandshakes;
+    this.handshakeTimeout = handshakeTimeout;
+    this.nbHandshakes = new HashMap<String, Integer>();
+    this.deferredHandshakes = new HashMap<String, LinkedList<Handshake>>();
+    this.nbScheduled = new AtomicLong(0);
+    this.nbStarted = new AtomicLong(0);
+    this.nbDeferred = new AtomicLong(0);
+    this.nbTimeouts = new AtomicLong(0);
+    this.reconnectDelay = new LatencyHistogram();
+  }
+
+  private static ThreadFactory computeThreadFactory(final String namePrefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, namePrefix + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Full jitter backoff.
+   *
+   * @return random delay (ms) between 0 and min(maxDelayMs, baseDelayMs * 2^attempt)
+   */
+  public long computeDelay(int attempt, long baseDelayMs, long maxDelayMs) {
+    long ceiling = maxDelayMs;
+    if (attempt < 30) {
+      ceiling = Math.min(maxDelayMs, baseDelayMs << attempt);
+    }
+    synchronized (random) {
+      return (long) (random.nextDouble() * ceiling);
+    }
+  }
+
+  /**
+   * Run handshake after delay, as soon as a handshake slot is available for its server. Caller must
+   * release() the handshake once it ends (connected, failed or aborted). The slot is also released
+   * when handshake throws or times out.
+   */
+  public void schedule(final Handshake handshake, long delayMs) {
+    nbScheduled.incrementAndGet();
+    handshake.onSchedule(this);
+    timer.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            startOrDefer(handshake);
+          }
+        },
+        Math.max(delayMs, 0),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void startOrDefer(Handshake handshake) {
+    String server = handshake.server;
+    synchronized (this) {
+      if (handshake.isReleased()) {
+        return; // aborted meanwhile
+      }
+      int nbHandshakesForServer = getNbHandshakes(server);
+      if (nbHandshakesForServer >= maxHandshakes) {
+        // wait for a handshake to end
+        LinkedList<Handshake> deferred = deferredHandshakes.get(server);
+        if (deferred == null) {
+          deferred = new LinkedList<Handshake>();
+          deferredHandshakes.put(server, deferred);
+        }
+        deferred.addLast(handshake);
+        nbDeferred.incrementAndGet();
+        if (log.isDebugEnabled()) {
+          log.debug("reconnection deferred: " + nbHandshakesForServer + " handshakes in flight");
+        }
+        return;
+      }
+      if (!handshake.tryStart()) {
+        return;
+      }
+      nbHandshakes.put(server, nbHandshakesForServer + 1);
+    }
+    start(handshake);
+  }
+
+  private void start(final Handshake handshake) {
+    handshake.timeout =
+        timer.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                if (!handshake.isReleased()) {
+                  nbTimeouts.incrementAndGet();
+                  log.warn("handshake timeout: releasing slot for " + handshake.server);
+                  handshake.release();
+                }
+              }
+            },
+            handshakeTimeout,
+            TimeUnit.MILLISECONDS);
+    // not inline, as caller may be the timer or a handshake ending
+    handshakeExecutor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (handshake.isReleased()) {
+              return; // aborted while waiting for executor, slot already released
+            }
+            reconnectDelay.record(System.currentTimeMillis() - handshake.scheduledAt);
+            nbStarted.incrementAndGet();
+            try {
+              handshake.runnable.run();
+            } catch (Throwable e) {
+              // executor would silently swallow it
+              log.error("", e);
+              handshake.release();
+            }
+          }
+        });
+  }
+
+  private void onRelease(Handshake handshake, boolean hadSlot) {
+    String server = handshake.server;
+    ScheduledFuture<?> timeout = handshake.timeout;
+    if (timeout != null) {
+      timeout.cancel(false);
+    }
+    Handshake next = null;
+    synchronized (this) {
+      LinkedList<Handshake> deferred = deferredHandshakes.get(server);
+      if (!hadSlot) {
+        // not started yet
+        if (deferred != null) {
+          deferred.remove(handshake);
+        }
+        return;
+      }
+      // slot goes to next handshake not aborted meanwhile
+      while (deferred != null && next == null && !deferred.isEmpty()) {
+        Handshake candidate = deferred.poll();
+        if (candidate.tryStart()) {
+          next = candidate;
+        }
+      }
+      if (next == null) {
+        nbHandshakes.put(server, Math.max(getNbHandshakes(server) - 1, 0));
+        return;
+      }
+    }
+    start(next);
+  }
+
+  private int getNbHandshakes(String server) {
+    Integer nb = nbHandshakes.get(server);
+    return nb != null ? nb : 0;
+  }
+
+  /** @return handshakes in flight for server, started from this scheduler */
+  public synchronized int getNbHandshakesInFlight(String server) {
+    return getNbHandshakes(server);
+  }
+
+  /** @return reconnections waiting for a handshake slot */
+  public synchronized int getNbHandshakesDeferred(String server) {
+    LinkedList<Handshake> deferred = deferredHandshakes.get(server);
+    return deferred != null ? deferred.size() : 0;
+  }
+
+  public long getNbScheduled() {
+    return nbScheduled.get();
+  }
+
+  public long getNbStarted() {
+    return nbStarted.get();
+  }
+
+  /** @return reconnections which waited for a handshake slot */
+  public long getNbDeferred() {
+    return nbDeferred.get();
+  }
+
+  /** @return handshakes released by timeout */
+  public long getNbTimeouts() {
+    return nbTimeouts.get();
+  }
+
+  /** @return time between schedule() and handshake start (ms) */
+  public LatencyHistogram getReconnectDelay() {
+    return reconnectDelay;
+  }
+
+  public synchronized int getMaxHandshakes() {
+    return maxHandshakes;
+  }
+
+  public synchronized void setMaxHandshakes(int maxHandshakes) {
+    this.maxHandshakes = maxHandshakes;
+  }
+
+  public long getHandshakeTimeout() {
+    return handshakeTimeout;
+  }
+
+  public void setHandshakeTimeout(long handshakeTimeout) {
+    this.handshakeTimeout = handshakeTimeout;
+  }
+
+  /** Reconnection to a server, holding a handshake slot from start until release(). */
+  public static class Handshake {
+    private static final int SCHEDULED = 0;
+    private static final int STARTED = 1;
+    private static final int RELEASED = 2;
+
+    private final String server;
+    private final Runnable runnable;
+    private volatile MixReconnectScheduler scheduler;
+    private volatile long scheduledAt;
+    private volatile ScheduledFuture<?> timeout;
+    private int state; // guarded by this
+
+    public Handshake(String server, Runnable runnable) {
+      this.server = server;
+      this.runnable = runnable;
+      this.scheduler = null;
+      this.scheduledAt = 0;
+      this.timeout = null;
+      this.state = SCHEDULED;
+    }
+
+    private void onSchedule(MixReconnectScheduler scheduler) {
+      this.scheduler = scheduler;
+      this.scheduledAt = System.currentTimeMillis();
+    }
+
+    private synchronized boolean tryStart() {
+      if (state != SCHEDULED) {
+        return false;
+      }
+      state = STARTED;
+      return true;
+    }
+
+    /** Release handshake slot, or abort handshake not started yet. Can be called many times. */
+    public void release() {
+      boolean hadSlot;
+      synchronized (this) {
+        if (state == RELEASED) {
+          return;
+        }
+        hadSlot = (state == STARTED);
+        state = RELEASED;
+      }
+      if (scheduler != null) {
+        scheduler.onRelease(this, hadSlot);
+      }
+    }
+
+    public synchronized boolean isReleased() {
+      return state == RELEASED;
+    }
+
+    public String getServer() {
+      return server;
+    }
+  }
+}
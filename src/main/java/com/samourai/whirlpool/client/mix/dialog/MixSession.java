@@ -3,18 +3,24 @@ package com.samourai.whirlpool.client.mix.dialog;
 import com.samourai.stomp.client.IStompClient;
 import com.samourai.stomp.client.IStompTransportListener;
 import com.samourai.stomp.client.StompTransport;
+import com.samourai.stomp.client.StompTransportPool;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.utils.MessageErrorListener;
 import com.samourai.whirlpool.client.utils.MessageListener;
+import com.samourai.whirlpool.client.utils.SerialExecutor;
 import com.samourai.whirlpool.client.whirlpool.WhirlpoolClientConfig;
 import com.samourai.whirlpool.protocol.WhirlpoolEndpoint;
 import com.samourai.whirlpool.protocol.WhirlpoolProtocol;
 import com.samourai.whirlpool.protocol.websocket.MixMessage;
 import com.samourai.whirlpool.protocol.websocket.messages.RegisterInputRequest;
 import com.samourai.whirlpool.protocol.websocket.messages.SubscribePoolResponse;
+import com.samourai.whirlpool.protocol.websocket.notifications.MixStatus;
+import com.samourai.whirlpool.protocol.websocket.notifications.MixStatusNotification;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,14 +32,20 @@ public class MixSession {
   private WhirlpoolProtocol whirlpoolProtocol;
   private WhirlpoolClientConfig config;
   private String poolId;
-  private StompTransport transport;
+  private volatile StompTransport transport;
   private String logPrefix;
-  private boolean done;
+  private volatile boolean done;
 
   // connect data
   private Long connectBeginTime;
+  private int reconnectAttempts; // since last connection, for backoff
+  // reconnection scheduled by reconnectScheduler, until connected or failed
+  private final AtomicReference<MixReconnectScheduler.Handshake> handshake;
 
-  // session data
+  // inbound messages, handled in order on config.messageExecutor
+  private final SerialExecutor messageExecutor;
+
+  // session data, only accessed from messageExecutor once constructed
   private MixDialog dialog;
   private SubscribePoolResponse subscribePoolResponse;
 
@@ -50,6 +62,9 @@ public class MixSession {
     this.poolId = poolId;
     this.transport = null;
     this.logPrefix = logPrefix;
+    this.reconnectAttempts = 0;
+    this.handshake = new AtomicReference<MixReconnectScheduler.Handshake>(null);
+    this.messageExecutor = new SerialExecutor(config.getMessageExecutor());
     resetDialog();
   }
 
@@ -61,79 +76,105 @@ public class MixSession {
     listener.onResetMix();
   }
 
-  public synchronized void connect() {
-    if (connectBeginTime == null) {
-      connectBeginTime = System.currentTimeMillis();
-    }
+  public void connect() {
+    StompTransportPool.PooledTransport pooledTransport;
+    synchronized (this) {
+      if (connectBeginTime == null) {
+        connectBeginTime = System.currentTimeMillis();
+      }
 
-    String wsUrl = WhirlpoolProtocol.getUrlConnect(config.getServer());
-    if (log.isDebugEnabled()) {
-      log.debug("connecting to server: " + wsUrl);
-    }
+      String wsUrl = WhirlpoolProtocol.getUrlConnect(config.getServer());
+      Map<String, String> connectHeaders = computeStompHeaders(null);
 
-    // connect with a new transport
-    Map<String, String> connectHeaders = computeStompHeaders(null);
-    IStompClient stompClient = config.getStompClientService().newStompClient();
-    transport = new StompTransport(stompClient, computeTransportListener(), logPrefix);
-    transport.connect(wsUrl, connectHeaders);
+      // use a spare transport when available
+      StompTransportPool stompTransportPool = config.getStompTransportPool();
+      pooledTransport =
+          (stompTransportPool != null ? stompTransportPool.take(wsUrl, connectHeaders) : null);
+      if (pooledTransport == null) {
+        if (log.isDebugEnabled()) {
+          log.debug("connecting to server: " + wsUrl);
+        }
+
+        // connect with a new transport
+        IStompClient stompClient = config.getStompClientService().newStompClient();
+        transport = new StompTransport(stompClient, computeTransportListener(), logPrefix);
+        transport.connect(wsUrl, connectHeaders);
+        return;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("using spare transport: " + wsUrl);
+      }
+      transport = pooledTransport.getTransport();
+    }
+    // already connected: subscribe now (outside of lock, as transport events)
+    pooledTransport.attach(computeTransportListener());
   }
 
   private void subscribe() {
-    // reset session
-    subscribePoolResponse = null;
+    // reset session, before handling messages of this subscription
+    messageExecutor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            subscribePoolResponse = null;
+          }
+        });
 
     // subscribe to private queue
     final String privateQueue =
         whirlpoolProtocol.WS_PREFIX_USER_PRIVATE + whirlpoolProtocol.WS_PREFIX_USER_REPLY;
+    final StompTransport subscribedTransport = transport;
     transport.subscribe(
         computeStompHeaders(privateQueue),
         new MessageErrorListener<Object, String>() {
           @Override
-          public void onMessage(Object payload) {
-            if (subscribePoolResponse == null) {
-              if (SubscribePoolResponse.class.isAssignableFrom(payload.getClass())) {
-                // 1) input not registered yet => should be a SubscribePoolResponse
-                subscribePoolResponse = (SubscribePoolResponse) payload;
-
-                // REGISTER_INPUT
-                try {
-                  registerInput(subscribePoolResponse);
-                } catch (Exception e) {
-                  log.error("Unable to register input", e);
-                  Exception notifiableException = NotifiableException.computeNotifiableException(e);
-                  listener.exitOnProtocolError(notifiableException.getMessage());
-                }
-              } else {
-                String notifiableError =
-                    "not a SubscribePoolResponse: " + ClientUtils.toJsonString(payload);
-                log.error("--> " + privateQueue + ": " + notifiableError);
-                listener.exitOnProtocolError(notifiableError);
-              }
-            } else {
-              // 2) input already registered => should be a MixMessage
-              MixMessage mixMessage = checkMixMessage(payload);
-              if (mixMessage != null) {
-                dialog.onPrivateReceived(mixMessage);
-              } else {
-                String notifiableError = "not a MixMessage: " + ClientUtils.toJsonString(payload);
-                log.error("--> " + privateQueue + ": " + notifiableError);
-                listener.exitOnProtocolError(notifiableError);
-              }
-            }
+          public void onMessage(final Object payload) {
+            // handle off transport thread, in order
+            final long receivedAt = System.currentTimeMillis();
+            messageExecutor.execute(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    if (done || transport != subscribedTransport) {
+                      return; // disconnected meanwhile
+                    }
+                    MixStatus mixStatus =
+                        payload instanceof MixStatusNotification
+                            ? ((MixStatusNotification) payload).status
+                            : null;
+                    config
+                        .getMixMetrics()
+                        .recordMessageQueueTime(
+                            poolId, mixStatus, System.currentTimeMillis() - receivedAt);
+                    onPrivateReceived(privateQueue, payload);
+                  }
+                });
           }
 
           @Override
-          public void onError(String errorMessage) {
-            String notifiableException = "subscribe error: " + errorMessage;
-            log.error("--> " + privateQueue + ": " + notifiableException);
-            listener.exitOnProtocolError(errorMessage); // subscribe error
+          public void onError(final String errorMessage) {
+            messageExecutor.execute(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    String notifiableException = "subscribe error: " + errorMessage;
+                    log.error("--> " + privateQueue + ": " + notifiableException);
+                    listener.exitOnProtocolError(errorMessage); // subscribe error
+                  }
+                });
           }
         },
         new MessageListener<String>() {
           @Override
-          public void onMessage(String serverProtocolVersion) {
-            // server version mismatch
-            listener.exitOnProtocolVersionMismatch(serverProtocolVersion);
+          public void onMessage(final String serverProtocolVersion) {
+            messageExecutor.execute(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    // server version mismatch
+                    listener.exitOnProtocolVersionMismatch(serverProtocolVersion);
+                  }
+                });
           }
         });
 
@@ -143,9 +184,42 @@ public class MixSession {
     }
   }
 
+  private void onPrivateReceived(String privateQueue, Object payload) {
+    if (subscribePoolResponse == null) {
+      if (SubscribePoolResponse.class.isAssignableFrom(payload.getClass())) {
+        // 1) input not registered yet => should be a SubscribePoolResponse
+        subscribePoolResponse = (SubscribePoolResponse) payload;
+
+        // REGISTER_INPUT
+        try {
+          registerInput(subscribePoolResponse);
+        } catch (Exception e) {
+          log.error("Unable to register input", e);
+          Exception notifiableException = NotifiableException.computeNotifiableException(e);
+          listener.exitOnProtocolError(notifiableException.getMessage());
+        }
+      } else {
+        String notifiableError =
+            "not a SubscribePoolResponse: " + ClientUtils.toJsonString(payload);
+        log.error("--> " + privateQueue + ": " + notifiableError);
+        listener.exitOnProtocolError(notifiableError);
+      }
+    } else {
+      // 2) input already registered => should be a MixMessage
+      MixMessage mixMessage = checkMixMessage(payload);
+      if (mixMessage != null) {
+        dialog.onPrivateReceived(mixMessage);
+      } else {
+        String notifiableError = "not a MixMessage: " + ClientUtils.toJsonString(payload);
+        log.error("--> " + privateQueue + ": " + notifiableError);
+        listener.exitOnProtocolError(notifiableError);
+      }
+    }
+  }
+
   private void registerInput(SubscribePoolResponse subscribePoolResponse) throws Exception {
     RegisterInputRequest registerInputRequest = listener.registerInput(subscribePoolResponse);
-    transport.send(WhirlpoolEndpoint.WS_REGISTER_INPUT, registerInputRequest);
+    send(WhirlpoolEndpoint.WS_REGISTER_INPUT, registerInputRequest);
   }
 
   private MixMessage checkMixMessage(Object payload) {
@@ -185,16 +259,100 @@ public class MixSession {
     if (transport != null) {
       transport.disconnect();
     }
+    endHandshake();
     if (log.isDebugEnabled()) {
       log.debug("Disconnected.");
     }
   }
 
+  private void endHandshake() {
+    // release handshake slot of reconnectScheduler
+    MixReconnectScheduler.Handshake previous = handshake.getAndSet(null);
+    if (previous != null) {
+      previous.release();
+    }
+  }
+
+  private synchronized void onDisconnected(Throwable exception) {
+    // transport cannot be used
+    transport = null;
+
+    if (done) {
+      if (log.isDebugEnabled()) {
+        log.debug("onTransportDisconnected: done");
+      }
+      return;
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("onTransportDisconnected", exception);
+    }
+    endHandshake();
+    long reconnectDelay =
+        config
+            .getReconnectScheduler()
+            .computeDelay(
+                reconnectAttempts,
+                config.getReconnectDelay() * 1000L,
+                config.getReconnectDelayMax() * 1000L);
+    if (connectBeginTime != null) {
+      // we were trying connect
+      long elapsedTime = System.currentTimeMillis() - connectBeginTime;
+      if (elapsedTime > config.getReconnectUntil() * 1000) {
+        // retry time exceeded, aborting
+        log.info(
+            " ! Failed to connect to server. Please check your connectivity or retry later.");
+        connectBeginTime = null;
+        listener.exitOnDisconnected();
+        return;
+      }
+
+      // wait delay before retrying
+      int reconnectDelaySeconds = (int) ((reconnectDelay + 999) / 1000);
+      log.info(" ! connexion failed, retrying in " + reconnectDelaySeconds + "s");
+      listener.onConnectionFailWillRetry(reconnectDelaySeconds);
+    } else {
+      // we just got disconnected
+      log.error(" ! connexion lost, reconnecting for a new mix...");
+      resetDialog();
+      listener.onConnectionLostWillRetry();
+    }
+
+    if (done) {
+      if (log.isDebugEnabled()) {
+        log.debug("onTransportDisconnected: done");
+      }
+      return;
+    }
+
+    // reconnect from shared scheduler (even without delay, to avoid waiting on android's
+    // mainThread)
+    reconnectAttempts++;
+    MixReconnectScheduler.Handshake reconnect =
+        new MixReconnectScheduler.Handshake(
+            config.getServer(),
+            new Runnable() {
+              @Override
+              public void run() {
+                if (done) {
+                  endHandshake();
+                  return;
+                }
+                connect();
+              }
+            });
+    // set before scheduling, so that it's released even when connecting immediately
+    handshake.set(reconnect);
+    config.getReconnectScheduler().schedule(reconnect, reconnectDelay);
+  }
+
   public void send(String destination, Object message) {
-    if (transport != null) {
+    // transport may be lost before its disconnection is handled
+    StompTransport transport = this.transport;
+    if (transport != null && !transport.isDone()) {
       transport.send(destination, message);
     } else {
-      log.warn("send: ignoring (transport = null)");
+      log.warn("send: ignoring (transport lost)");
     }
   }
 
@@ -219,6 +377,8 @@ public class MixSession {
           log.debug("Connected in " + elapsedTime + "s");
         }
         connectBeginTime = null;
+        reconnectAttempts = 0;
+        endHandshake();
 
         // will get SubscribePoolResponse and start dialog
         subscribe();
@@ -227,78 +387,25 @@ public class MixSession {
       }
 
       @Override
-      public synchronized void onTransportDisconnected(Throwable exception) {
-        // transport cannot be used
-        transport = null;
-
-        if (done) {
-          if (log.isDebugEnabled()) {
-            log.debug("onTransportDisconnected: done");
-          }
-          return;
-        }
-
-        if (log.isDebugEnabled()) {
-          log.debug("onTransportDisconnected", exception);
-        }
-        long reconnectDelay = 0;
-        if (connectBeginTime != null) {
-          // we were trying connect
-          long elapsedTime = System.currentTimeMillis() - connectBeginTime;
-          if (elapsedTime > config.getReconnectUntil() * 1000) {
-            // retry time exceeded, aborting
-            log.info(
-                " ! Failed to connect to server. Please check your connectivity or retry later.");
-            connectBeginTime = null;
-            listener.exitOnDisconnected();
-            return;
-          }
-
-          // wait delay before retrying
-          log.info(" ! connexion failed, retrying in " + config.getReconnectDelay() + "s");
-          listener.onConnectionFailWillRetry(config.getReconnectDelay());
-          reconnectDelay = config.getReconnectDelay() * 1000L;
-        } else {
-          // we just got disconnected
-          log.error(" ! connexion lost, reconnecting for a new mix...");
-          resetDialog();
-          listener.onConnectionLostWillRetry();
-        }
-
-        if (done) {
-          if (log.isDebugEnabled()) {
-            log.debug("onTransportDisconnected: done");
-          }
-          return;
-        }
-
-        if (reconnectDelay > 0) {
-          // reconnect after delay. use a new thread to avoid waiting on android's mainThread
-          final long waitDelay = reconnectDelay;
-          Thread reconnectThread =
-              new Thread(
-                  new Runnable() {
-                    @Override
-                    public synchronized void run() {
-                      try {
-                        wait(waitDelay);
-                      } catch (Exception e) {
-                        log.error("", e);
-                      }
-                      connect();
-                    }
-                  },
-                  "mixSession-reconnect-" + logPrefix);
-          reconnectThread.setDaemon(true);
-          reconnectThread.start();
-        } else {
-          // reconnect now
-          connect();
-        }
+      public void onTransportDisconnected(final Throwable exception) {
+        // after messages already received: a final ErrorResponse ends the mix instead of
+        // reconnecting
+        messageExecutor.execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                onDisconnected(exception);
+              }
+            });
       }
     };
   }
 
+  /** @return executor handling session messages in order */
+  protected Executor getMessageExecutor() {
+    return messageExecutor;
+  }
+
   //
   protected StompTransport __getTransport() {
     return transport;
@@ -2,6 +2,8 @@ package com.samourai.whirlpool.client.mix.handler;
 
 import com.samourai.wallet.util.TxUtil;
 import com.samourai.whirlpool.client.utils.ClientUtils;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.Transaction;
@@ -10,11 +12,13 @@ public class PremixHandler implements IPremixHandler {
   private UtxoWithBalance utxo;
   private ECKey utxoKey;
   private String userPreHash;
+  private Map<String, String> signatures; // signatures are deterministic
 
   public PremixHandler(UtxoWithBalance utxo, ECKey utxoKey, String userPreHash) {
     this.utxo = utxo;
     this.utxoKey = utxoKey;
     this.userPreHash = userPreHash;
+    this.signatures = new ConcurrentHashMap<String, String>();
   }
 
   @Override
@@ -31,7 +35,12 @@ public class PremixHandler implements IPremixHandler {
 
   @Override
   public String signMessage(String message) {
-    return utxoKey.signMessage(message);
+    String signature = signatures.get(message);
+    if (signature == null) {
+      signature = utxoKey.signMessage(message);
+      signatures.put(message, signature);
+    }
+    return signature;
   }
 
   @Override
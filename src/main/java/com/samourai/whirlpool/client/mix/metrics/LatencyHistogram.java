@@ -0,0 +1,106 @@
+package com.samourai.whirlpool.client.mix.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations (ms), HDR-style: buckets are linear within each power of 2,
+ * which gives ~3% precision from 1ms to ~24 days with a fixed footprint. Recording is wait-free
+ * except for max.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_VALUE = Integer.MAX_VALUE; // larger values are clamped
+  private static final int NB_BUCKETS = computeIndex(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong count;
+  private final AtomicLong sum;
+  private final AtomicLong max;
+
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(NB_BUCKETS);
+    this.count = new AtomicLong(0);
+    this.sum = new AtomicLong(0);
+    this.max = new AtomicLong(0);
+  }
+
+  public void record(long value) {
+    value = Math.min(Math.max(value, 0), MAX_VALUE);
+    counts.incrementAndGet(computeIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) {
+        break;
+      }
+    }
+  }
+
+  private static int computeIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> exponent) - SUB_BUCKET_COUNT;
+    return (exponent + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  // highest value recorded in bucket
+  private static long computeHighestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKET_COUNT - 1;
+    long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << exponent) - 1;
+  }
+
+  /** @return value (ms) at quantile [0-1], within bucket precision. 0 when empty. */
+  public long getValueAtQuantile(double quantile) {
+    long totalCount = count.get();
+    if (totalCount == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(Math.min(quantile, 1) * totalCount));
+    long cumulated = 0;
+    for (int i = 0; i < NB_BUCKETS; i++) {
+      cumulated += counts.get(i);
+      if (cumulated >= target) {
+        return Math.min(computeHighestValue(i), getMax());
+      }
+    }
+    // concurrent recording
+    return getMax();
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public double getMean() {
+    long totalCount = count.get();
+    return totalCount > 0 ? (double) sum.get() / totalCount : 0;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  @Override
+  public String toString() {
+    return "count="
+        + getCount()
+        + ", p50="
+        + getValueAtQuantile(0.5)
+        + "ms, p90="
+        + getValueAtQuantile(0.9)
+        + "ms, p99="
+        + getValueAtQuantile(0.99)
+        + "ms, max="
+        + getMax()
+        + "ms";
+  }
+}
@@ -0,0 +1,149 @@
+package com.samourai.whirlpool.client.mix.metrics;
+
+import com.samourai.whirlpool.client.mix.listener.MixStep;
+import com.samourai.whirlpool.protocol.websocket.notifications.MixStatus;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency of mix steps, by pool. For each step: time spent in step (until next step), and time
+ * between each pair of consecutive steps. Also total duration of successful mixs, and time
+ * messages from server wait before being handled.
+ */
+public class MixMetrics {
+  private static final MixStep[] STEPS = MixStep.values();
+  private static final int NB_MIX_STATUS = MixStatus.values().length;
+
+  private final ConcurrentHashMap<String, PoolMixMetrics> pools;
+
+  public MixMetrics() {
+    this.pools = new ConcurrentHashMap<String, PoolMixMetrics>();
+  }
+
+  /** @return timer for a new mix, to be notified of each step. */
+  public MixTimer newMixTimer(String poolId) {
+    return new MixTimer(getPoolMetrics(poolId));
+  }
+
+  public Collection<String> getPoolIds() {
+    return pools.keySet();
+  }
+
+  /** @return time spent in step (ms), or null when not recorded yet */
+  public LatencyHistogram getStepDuration(String poolId, MixStep step) {
+    PoolMixMetrics poolMetrics = pools.get(poolId);
+    return poolMetrics != null ? poolMetrics.stepDurations.get(step.ordinal()) : null;
+  }
+
+  /** @return time between step and nextStep (ms), or null when not recorded yet */
+  public LatencyHistogram getStepTransition(String poolId, MixStep step, MixStep nextStep) {
+    PoolMixMetrics poolMetrics = pools.get(poolId);
+    return poolMetrics != null
+        ? poolMetrics.stepTransitions.get(computeTransitionIndex(step, nextStep))
+        : null;
+  }
+
+  /** @return duration of successful mixs (ms), or null when not recorded yet */
+  public LatencyHistogram getMixDuration(String poolId) {
+    PoolMixMetrics poolMetrics = pools.get(poolId);
+    return poolMetrics != null ? poolMetrics.mixDurations : null;
+  }
+
+  /**
+   * Record time a message waited before being handled.
+   *
+   * @param mixStatus status of MixStatusNotification, null for other messages
+   */
+  public void recordMessageQueueTime(String poolId, MixStatus mixStatus, long elapsedMs) {
+    getOrCreate(getPoolMetrics(poolId).messageQueueTimes, computeMessageIndex(mixStatus))
+        .record(elapsedMs);
+  }
+
+  /**
+   * @param mixStatus status of MixStatusNotification, null for other messages
+   * @return time messages waited before being handled (ms), or null when not recorded yet
+   */
+  public LatencyHistogram getMessageQueueTime(String poolId, MixStatus mixStatus) {
+    PoolMixMetrics poolMetrics = pools.get(poolId);
+    return poolMetrics != null
+        ? poolMetrics.messageQueueTimes.get(computeMessageIndex(mixStatus))
+        : null;
+  }
+
+  private PoolMixMetrics getPoolMetrics(String poolId) {
+    PoolMixMetrics poolMetrics = pools.get(poolId);
+    if (poolMetrics == null) {
+      pools.putIfAbsent(poolId, new PoolMixMetrics());
+      poolMetrics = pools.get(poolId);
+    }
+    return poolMetrics;
+  }
+
+  private static int computeTransitionIndex(MixStep step, MixStep nextStep) {
+    return step.ordinal() * STEPS.length + nextStep.ordinal();
+  }
+
+  private static int computeMessageIndex(MixStatus mixStatus) {
+    return mixStatus != null ? mixStatus.ordinal() : NB_MIX_STATUS;
+  }
+
+  private static LatencyHistogram getOrCreate(
+      AtomicReferenceArray<LatencyHistogram> histograms, int index) {
+    LatencyHistogram histogram = histograms.get(index);
+    if (histogram == null) {
+      histograms.compareAndSet(index, null, new LatencyHistogram());
+      histogram = histograms.get(index);
+    }
+    return histogram;
+  }
+
+  private static class PoolMixMetrics {
+    // histograms are created on first record
+    private final AtomicReferenceArray<LatencyHistogram> stepDurations;
+    private final AtomicReferenceArray<LatencyHistogram> stepTransitions;
+    private final LatencyHistogram mixDurations;
+    private final AtomicReferenceArray<LatencyHistogram> messageQueueTimes; // by MixStatus
+
+    PoolMixMetrics() {
+      this.stepDurations = new AtomicReferenceArray<LatencyHistogram>(STEPS.length);
+      this.stepTransitions =
+          new AtomicReferenceArray<LatencyHistogram>(STEPS.length * STEPS.length);
+      this.mixDurations = new LatencyHistogram();
+      this.messageQueueTimes = new AtomicReferenceArray<LatencyHistogram>(NB_MIX_STATUS + 1);
+    }
+  }
+
+  /** Records steps of a single mix. */
+  public static class MixTimer {
+    private final PoolMixMetrics poolMetrics;
+    private final long startTime;
+    private MixStep lastStep;
+    private long lastStepTime;
+
+    private MixTimer(PoolMixMetrics poolMetrics) {
+      this.poolMetrics = poolMetrics;
+      this.startTime = System.nanoTime();
+      this.lastStep = null;
+      this.lastStepTime = startTime;
+    }
+
+    public synchronized void onStep(MixStep step) {
+      if (lastStep == MixStep.SUCCESS || lastStep == MixStep.FAIL) {
+        return; // mix is over
+      }
+      long now = System.nanoTime();
+      if (lastStep != null) {
+        long elapsedMs = (now - lastStepTime) / 1000000;
+        getOrCreate(poolMetrics.stepDurations, lastStep.ordinal()).record(elapsedMs);
+        getOrCreate(poolMetrics.stepTransitions, computeTransitionIndex(lastStep, step))
+            .record(elapsedMs);
+      }
+      if (step == MixStep.SUCCESS) {
+        poolMetrics.mixDurations.record((now - startTime) / 1000000);
+      }
+      lastStep = step;
+      lastStepTime = now;
+    }
+  }
+}
@@ -44,7 +44,7 @@ public class Tx0Service {
     whirlpoolFee = WhirlpoolFee.getInstance(config.getSecretPointFactory());
   }
 
-  private int computeNbPremixMax(
+  int computeNbPremixMax(
       long premixValue,
       Collection<? extends UnspentResponse.UnspentOutput> spendFrom,
       long feeValueOrFeeChange,
@@ -55,36 +55,32 @@ public class Tx0Service {
     int nbPremixInitial = (int) Math.ceil(spendFromBalance / premixValue);
 
     // compute nbPremix with TX0 fee
-    int nbPremix = nbPremixInitial;
-    while (true) {
-      // estimate TX0 fee for nbPremix
-      long tx0MinerFee = computeTx0MinerFee(nbPremix, feeTx0, spendFrom);
+    // spendValue strictly increases with nbPremix, so binary search the highest affordable
+    // nbPremix in [1, nbPremixInitial] (or 0 when none is affordable)
+    int nbPremix = 0; // highest nbPremix known to be affordable (or 0)
+    int nbPremixTooHigh = nbPremixInitial + 1; // lowest nbPremix known to be unaffordable
+    while (nbPremixTooHigh - nbPremix > 1) {
+      int nbPremixTry = (nbPremix + nbPremixTooHigh) >>> 1;
+      // estimate TX0 fee for nbPremixTry
+      long tx0MinerFee = computeTx0MinerFee(nbPremixTry, feeTx0, spendFrom);
       long spendValue =
-          computeTx0SpendValue(premixValue, nbPremix, feeValueOrFeeChange, tx0MinerFee);
-      if (log.isDebugEnabled()) {
-        log.debug(
-            "computeNbPremixMax: nbPremix="
-                + nbPremix
-                + " => spendValue="
-                + spendValue
-                + ", tx0MinerFee="
-                + tx0MinerFee
-                + ", spendFromBalance="
-                + spendFromBalance
-                + ", nbPremixInitial="
-                + nbPremixInitial);
-      }
+          computeTx0SpendValue(premixValue, nbPremixTry, feeValueOrFeeChange, tx0MinerFee);
       if (spendFromBalance < spendValue) {
         // if UTXO balance is insufficient, try with less nbPremix
-        nbPremix--;
+        nbPremixTooHigh = nbPremixTry;
       } else {
-        // nbPremix found
-        break;
+        // try with more nbPremix
+        nbPremix = nbPremixTry;
       }
     }
-    // no negative value
-    if (nbPremix < 0) {
-      nbPremix = 0;
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "computeNbPremixMax: nbPremix="
+              + nbPremix
+              + ", spendFromBalance="
+              + spendFromBalance
+              + ", nbPremixInitial="
+              + nbPremixInitial);
     }
     return nbPremix;
   }
@@ -454,6 +450,7 @@ public class Tx0Service {
     // premix outputs
     //
     List<TransactionOutput> premixOutputs = new ArrayList<TransactionOutput>();
+    premixWallet.prefetchNextAddresses(nbPremix); // derive in parallel
     for (int j = 0; j < nbPremix; j++) {
       // send to PREMIX
       HD_Address toAddress = premixWallet.getNextAddress();
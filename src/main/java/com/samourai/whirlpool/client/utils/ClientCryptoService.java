@@ -1,25 +1,157 @@
 package com.samourai.whirlpool.client.utils;
 
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.engines.RSABlindingEngine;
 import org.bouncycastle.crypto.generators.RSABlindingFactorGenerator;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.params.RSABlindingParameters;
 import org.bouncycastle.crypto.params.RSAKeyParameters;
 import org.bouncycastle.crypto.signers.PSSSigner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Blinding of output bordereau. Coordinator public keys are parsed once per pool, blinding factors
+ * for known keys are generated ahead of time in background, and signer/engine instances are reused
+ * per thread.
+ */
 public class ClientCryptoService {
+  private static final Logger log = LoggerFactory.getLogger(ClientCryptoService.class);
+  private static final int PSS_SALT_LENGTH = 32;
+  private static final int BLINDING_FACTORS_PREFETCH = 4; // per key
+  private static ClientCryptoService instance;
 
-  public ClientCryptoService() {}
+  private final Executor executor;
+  private final ConcurrentHashMap<String, PoolPublicKey> publicKeys; // by poolId
+  // by modulus, while used by a pool. Writes guarded by this
+  private final ConcurrentHashMap<BigInteger, BlindingFactors> blindingFactors;
+
+  private final ThreadLocal<Blinder> blinders =
+      new ThreadLocal<Blinder>() {
+        @Override
+        protected Blinder initialValue() {
+          return new Blinder();
+        }
+      };
+
+  public static synchronized ClientCryptoService getInstance() {
+    if (instance == null) {
+      instance = new ClientCryptoService();
+    }
+    return instance;
+  }
+
+  public ClientCryptoService() {
+    this(computeExecutor());
+  }
+
+  public ClientCryptoService(Executor executor) {
+    this.executor = executor;
+    this.publicKeys = new ConcurrentHashMap<String, PoolPublicKey>();
+    this.blindingFactors = new ConcurrentHashMap<BigInteger, BlindingFactors>();
+  }
+
+  /** @return coordinator public key of pool, parsed once until pool key changes */
+  public RSAKeyParameters getPublicKey(String poolId, byte[] publicKeySerialized)
+      throws Exception {
+    PoolPublicKey poolPublicKey = publicKeys.get(poolId);
+    if (poolPublicKey != null && poolPublicKey.matches(publicKeySerialized)) {
+      return poolPublicKey.publicKey;
+    }
+
+    // new pool or key rotated
+    RSAKeyParameters publicKey = ClientUtils.publicKeyUnserialize(publicKeySerialized);
+    synchronized (this) {
+      poolPublicKey = publicKeys.put(poolId, new PoolPublicKey(publicKeySerialized, publicKey));
+      if (poolPublicKey != null) {
+        BigInteger oldModulus = poolPublicKey.publicKey.getModulus();
+        if (!isModulusInUse(oldModulus)) {
+          blindingFactors.remove(oldModulus);
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("publicKey changed for pool " + poolId);
+        }
+      }
+      blindingFactors.putIfAbsent(publicKey.getModulus(), new BlindingFactors(publicKey));
+    }
+    prefetchBlindingFactors(publicKey);
+    return publicKey;
+  }
+
+  // blinding factors are shared by pools with same key
+  private boolean isModulusInUse(BigInteger modulus) {
+    for (PoolPublicKey poolPublicKey : publicKeys.values()) {
+      if (poolPublicKey.publicKey.getModulus().equals(modulus)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Generate blinding factors in background for known public key of pool, if any. */
+  public void prefetchBlindingFactors(String poolId) {
+    PoolPublicKey poolPublicKey = publicKeys.get(poolId);
+    if (poolPublicKey != null) {
+      prefetchBlindingFactors(poolPublicKey.publicKey);
+    }
+  }
+
+  private void prefetchBlindingFactors(RSAKeyParameters publicKey) {
+    final BlindingFactors factors = blindingFactors.get(publicKey.getModulus());
+    if (factors == null
+        || factors.queue.size() >= BLINDING_FACTORS_PREFETCH
+        || !factors.prefetching.compareAndSet(false, true)) {
+      return;
+    }
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              while (factors.queue.size() < BLINDING_FACTORS_PREFETCH) {
+                factors.queue.add(generateBlindingFactor(factors.publicKey));
+              }
+            } catch (Throwable e) {
+              log.error("", e);
+            } finally {
+              factors.prefetching.set(false);
+            }
+          }
+        });
+  }
 
   public RSABlindingParameters computeBlindingParams(RSAKeyParameters publicKey) {
+    // use a blinding factor generated ahead of time when available (each one is used once)
+    BigInteger blindingFactor = null;
+    BlindingFactors factors = blindingFactors.get(publicKey.getModulus());
+    if (factors != null) {
+      blindingFactor = factors.queue.poll();
+      prefetchBlindingFactors(publicKey);
+    }
+    if (blindingFactor == null) {
+      blindingFactor = generateBlindingFactor(publicKey);
+    }
+    return new RSABlindingParameters(publicKey, blindingFactor);
+  }
+
+  private BigInteger generateBlindingFactor(RSAKeyParameters publicKey) {
     // Generate a blinding factor using the notary's public key.
     RSABlindingFactorGenerator blindingFactorGenerator = new RSABlindingFactorGenerator();
-    blindingFactorGenerator.init(publicKey);
-
-    BigInteger blindingFactor = blindingFactorGenerator.generateBlindingFactor();
-    return new RSABlindingParameters(publicKey, blindingFactor);
+    blindingFactorGenerator.init(new ParametersWithRandom(publicKey, blinders.get().random));
+    return blindingFactorGenerator.generateBlindingFactor();
   }
 
   public byte[] blind(String toBlind, RSABlindingParameters blindingParams) throws CryptoException {
@@ -27,20 +159,80 @@ public class ClientCryptoService {
   }
 
   public byte[] blind(byte[] toBlind, RSABlindingParameters blindingParams) throws CryptoException {
-    PSSSigner blinder = new PSSSigner(new RSABlindingEngine(), new SHA256Digest(), 32);
-    blinder.init(true, blindingParams);
-    blinder.update(toBlind, 0, toBlind.length);
+    Blinder blinder = blinders.get();
+    // init() resets signer state
+    blinder.signer.init(true, new ParametersWithRandom(blindingParams, blinder.random));
+    blinder.signer.update(toBlind, 0, toBlind.length);
 
-    byte[] blindedData = blinder.generateSignature();
+    byte[] blindedData = blinder.signer.generateSignature();
     return blindedData;
   }
 
   public byte[] unblind(byte[] signedBlindedOutput, RSABlindingParameters blindingParams) {
-    RSABlindingEngine unblinder = new RSABlindingEngine();
+    RSABlindingEngine unblinder = blinders.get().unblinder;
     unblinder.init(false, blindingParams);
 
     byte[] unblindedData =
         unblinder.processBlock(signedBlindedOutput, 0, signedBlindedOutput.length);
     return unblindedData;
   }
+
+  private static Executor computeExecutor() {
+    ThreadPoolExecutor threadPoolExecutor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "blindingFactors");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    return threadPoolExecutor;
+  }
+
+  private static class PoolPublicKey {
+    private final byte[] publicKeySerialized;
+    private final RSAKeyParameters publicKey;
+
+    PoolPublicKey(byte[] publicKeySerialized, RSAKeyParameters publicKey) {
+      this.publicKeySerialized = publicKeySerialized.clone();
+      this.publicKey = publicKey;
+    }
+
+    boolean matches(byte[] otherPublicKeySerialized) {
+      return Arrays.equals(publicKeySerialized, otherPublicKeySerialized);
+    }
+  }
+
+  private static class BlindingFactors {
+    private final RSAKeyParameters publicKey;
+    private final Queue<BigInteger> queue;
+    private final AtomicBoolean prefetching;
+
+    BlindingFactors(RSAKeyParameters publicKey) {
+      this.publicKey = publicKey;
+      this.queue = new ConcurrentLinkedQueue<BigInteger>();
+      this.prefetching = new AtomicBoolean(false);
+    }
+  }
+
+  // not thread-safe, one per thread
+  private static class Blinder {
+    private final SecureRandom random;
+    private final PSSSigner signer;
+    private final RSABlindingEngine unblinder;
+
+    Blinder() {
+      this.random = new SecureRandom();
+      this.signer = new PSSSigner(new RSABlindingEngine(), new SHA256Digest(), PSS_SALT_LENGTH);
+      this.unblinder = new RSABlindingEngine();
+    }
+  }
 }
@@ -0,0 +1,170 @@
+package com.samourai.whirlpool.client.utils;
+
+import com.google.common.base.Supplier;
+import com.zeroleak.throwingsupplier.Throwing;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memoizing supplier with expiration, running at most one fetch at a time: concurrent callers
+ * waiting for a value share the in-flight fetch. When staleWhileRevalidate is enabled, an expired
+ * value is still served immediately while a refresh runs in background on executor. Only the very
+ * first get() waits for the network, or the first get() after invalidate(). A fetch running when
+ * invalidate() is called is followed by a new fetch from the same task, never run alongside it.
+ */
+public class ExpiringSupplier<T> implements Supplier<Throwing<T, Exception>> {
+  private final Logger log = LoggerFactory.getLogger(ExpiringSupplier.class);
+
+  private final Supplier<Throwing<T, Exception>> delegate;
+  private final long expirationMs;
+  private final boolean staleWhileRevalidate;
+  private final Executor executor;
+
+  private Throwing<T, Exception> value;
+  private long lastRefresh;
+  private boolean expired;
+  private FutureTask<Throwing<T, Exception>> inFlight;
+
+  // incremented by invalidate(): values and fetchs started before are obsolete
+  private int generation;
+  private int valueGeneration;
+
+  public ExpiringSupplier(
+      Supplier<Throwing<T, Exception>> delegate,
+      long expirationMs,
+      boolean staleWhileRevalidate,
+      Executor executor) {
+    this.delegate = delegate;
+    this.expirationMs = expirationMs;
+    this.staleWhileRevalidate = staleWhileRevalidate;
+    this.executor = executor;
+    this.value = null;
+    this.lastRefresh = 0;
+    this.expired = false;
+    this.inFlight = null;
+    this.generation = 0;
+    this.valueGeneration = 0;
+  }
+
+  @Override
+  public Throwing<T, Exception> get() {
+    FutureTask<Throwing<T, Exception>> task;
+    synchronized (this) {
+      boolean valid = (value != null && valueGeneration == generation);
+      if (valid && !isExpired()) {
+        return value;
+      }
+      if (valid && staleWhileRevalidate) {
+        // serve stale value, refresh in background
+        refreshAsync();
+        return value;
+      }
+      task = inFlight;
+      if (task == null) {
+        task = newRefreshTask();
+        inFlight = task;
+      }
+    }
+    // run here when not started yet on executor
+    task.run();
+    return await(task);
+  }
+
+  /** Refresh in background, unless a refresh is already in flight. */
+  public synchronized void refreshAsync() {
+    if (inFlight != null) {
+      return;
+    }
+    inFlight = newRefreshTask();
+    executor.execute(inFlight);
+  }
+
+  /**
+   * Expire current value: next get() will refresh it (in background when staleWhileRevalidate).
+   */
+  public synchronized void expire() {
+    this.expired = true;
+    if (staleWhileRevalidate && value != null) {
+      refreshAsync();
+    }
+  }
+
+  /**
+   * Discard current value: next get() waits for a value fetched after this call, even when
+   * staleWhileRevalidate.
+   */
+  public synchronized void invalidate() {
+    this.generation++;
+  }
+
+  /** @return age of current value in ms, or null when not fetched yet */
+  public synchronized Long getAge() {
+    if (value == null) {
+      return null;
+    }
+    return System.currentTimeMillis() - lastRefresh;
+  }
+
+  private boolean isExpired() {
+    return expired || System.currentTimeMillis() - lastRefresh >= expirationMs;
+  }
+
+  private FutureTask<Throwing<T, Exception>> newRefreshTask() {
+    return new FutureTask<Throwing<T, Exception>>(
+        new Callable<Throwing<T, Exception>>() {
+          @Override
+          public Throwing<T, Exception> call() throws Exception {
+            return refresh();
+          }
+        });
+  }
+
+  private Throwing<T, Exception> refresh() {
+    boolean ended = false;
+    try {
+      while (true) {
+        int fetchGeneration;
+        synchronized (this) {
+          fetchGeneration = generation;
+        }
+        Throwing<T, Exception> result = delegate.get();
+        synchronized (this) {
+          if (result != null && fetchGeneration >= valueGeneration) {
+            value = result;
+            valueGeneration = fetchGeneration;
+            lastRefresh = System.currentTimeMillis();
+            expired = false;
+          }
+          if (fetchGeneration == generation) {
+            inFlight = null;
+            ended = true;
+            return result;
+          }
+        }
+        // invalidated while fetching: fetch again, waiters get the fresh value
+      }
+    } finally {
+      if (!ended) {
+        synchronized (this) {
+          inFlight = null;
+        }
+      }
+    }
+  }
+
+  private Throwing<T, Exception> await(FutureTask<Throwing<T, Exception>> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      log.error("", e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
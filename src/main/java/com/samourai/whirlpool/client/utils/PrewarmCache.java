@@ -0,0 +1,106 @@
+package com.samourai.whirlpool.client.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Values computed ahead of use on executor, by group and key. Each prewarm() replaces the keys of a
+ * group, reusing tasks of keys already prewarmed. take() computes inline a value not started yet,
+ * and only counts a hit when the value was ready.
+ */
+public class PrewarmCache<K, V> {
+  private static final Logger log = LoggerFactory.getLogger(PrewarmCache.class);
+
+  private final Executor executor;
+
+  // guarded by itself
+  private final Map<String, Map<K, FutureTask<V>>> tasks;
+  private long nbHits;
+  private long nbMisses;
+
+  public PrewarmCache(Executor executor) {
+    this.executor = executor;
+    this.tasks = new HashMap<String, Map<K, FutureTask<V>>>();
+    this.nbHits = 0;
+    this.nbMisses = 0;
+  }
+
+  /** Prewarm values for keys, forgetting values of group not in keys anymore. */
+  public void prewarm(String group, Map<K, Callable<V>> computes) {
+    synchronized (tasks) {
+      Map<K, FutureTask<V>> previous = tasks.get(group);
+      Map<K, FutureTask<V>> groupTasks = new HashMap<K, FutureTask<V>>();
+      for (Entry<K, Callable<V>> entry : computes.entrySet()) {
+        FutureTask<V> task = previous != null ? previous.get(entry.getKey()) : null;
+        if (task == null) {
+          task = new FutureTask<V>(entry.getValue());
+          executor.execute(task);
+        }
+        groupTasks.put(entry.getKey(), task);
+      }
+      tasks.put(group, groupTasks);
+    }
+  }
+
+  /** @return prewarmed value, or null when not prewarmed or failed */
+  public V take(String group, K key) {
+    FutureTask<V> task;
+    synchronized (tasks) {
+      Map<K, FutureTask<V>> groupTasks = tasks.get(group);
+      task = groupTasks != null ? groupTasks.remove(key) : null;
+    }
+    if (task == null) {
+      onTake(false);
+      return null;
+    }
+    boolean ready = task.isDone();
+    // compute now if not started yet
+    task.run();
+    try {
+      V value = task.get();
+      onTake(ready);
+      return value;
+    } catch (ExecutionException e) {
+      log.error("prewarm failed for " + key, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    onTake(false);
+    return null;
+  }
+
+  private void onTake(boolean hit) {
+    synchronized (tasks) {
+      if (hit) {
+        nbHits++;
+      } else {
+        nbMisses++;
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (tasks) {
+      tasks.clear();
+    }
+  }
+
+  public long getNbHits() {
+    synchronized (tasks) {
+      return nbHits;
+    }
+  }
+
+  public long getNbMisses() {
+    synchronized (tasks) {
+      return nbMisses;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.samourai.whirlpool.client.utils;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks one at a time in submission order, on a shared executor. Each task is submitted
+ * separately to the shared executor, so a busy SerialExecutor doesn't hold a thread from others.
+ */
+public class SerialExecutor implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(SerialExecutor.class);
+
+  private final Executor executor;
+  private final LinkedList<Runnable> tasks; // guarded by this
+  private boolean running;
+
+  public SerialExecutor(Executor executor) {
+    this.executor = executor;
+    this.tasks = new LinkedList<Runnable>();
+    this.running = false;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    synchronized (this) {
+      tasks.addLast(task);
+      if (running) {
+        return; // will run after current task
+      }
+      running = true;
+    }
+    scheduleNext();
+  }
+
+  private void scheduleNext() {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            runNext();
+          }
+        });
+  }
+
+  private void runNext() {
+    Runnable task;
+    synchronized (this) {
+      task = tasks.poll();
+      if (task == null) {
+        running = false;
+        return;
+      }
+    }
+    try {
+      task.run();
+    } catch (Throwable e) {
+      log.error("", e);
+    }
+    synchronized (this) {
+      if (tasks.isEmpty()) {
+        running = false;
+        return;
+      }
+    }
+    scheduleNext();
+  }
+
+  public synchronized int getNbQueued() {
+    return tasks.size();
+  }
+}
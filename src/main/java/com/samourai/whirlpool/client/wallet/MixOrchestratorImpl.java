@@ -1,6 +1,7 @@
 package com.samourai.whirlpool.client.wallet;
 
 import com.samourai.wallet.api.backend.beans.UnspentResponse;
+import com.samourai.wallet.client.Bip84AddressCache;
 import com.samourai.wallet.hd.HD_Address;
 import com.samourai.wallet.segwit.bech32.Bech32UtilGeneric;
 import com.samourai.whirlpool.client.WhirlpoolClient;
@@ -10,15 +11,15 @@ import com.samourai.whirlpool.client.mix.handler.*;
 import com.samourai.whirlpool.client.mix.listener.MixFailReason;
 import com.samourai.whirlpool.client.mix.listener.MixSuccess;
 import com.samourai.whirlpool.client.utils.ClientUtils;
+import com.samourai.whirlpool.client.utils.PrewarmCache;
 import com.samourai.whirlpool.client.wallet.beans.*;
 import com.samourai.whirlpool.client.wallet.orchestrator.MixOrchestrator;
 import com.samourai.whirlpool.client.whirlpool.beans.Pool;
 import com.samourai.whirlpool.client.whirlpool.listener.WhirlpoolClientListener;
-import java.util.ArrayList;
 import java.util.Collection;
-import java8.util.function.Predicate;
-import java8.util.stream.Stream;
-import java8.util.stream.StreamSupport;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.slf4j.Logger;
@@ -28,6 +29,10 @@ public class MixOrchestratorImpl extends MixOrchestrator {
   private final Logger log = LoggerFactory.getLogger(MixOrchestratorImpl.class);
 
   private WhirlpoolWallet whirlpoolWallet;
+  private volatile String userPreHash; // computed on first mix (deterministic)
+
+  // premixHandlers prepared for next queued utxos, by pool
+  private PrewarmCache<UtxoKey, IPremixHandler> prewarmed;
 
   public MixOrchestratorImpl(
       MixingStateEditable mixingState, int loopDelay, WhirlpoolWallet whirlpoolWallet) {
@@ -38,33 +43,17 @@ public class MixOrchestratorImpl extends MixOrchestrator {
         whirlpoolWallet.getConfig().getMaxClients(),
         whirlpoolWallet.getConfig().getMaxClientsPerPool(),
         whirlpoolWallet.getConfig().isAutoMix(),
-        whirlpoolWallet.getConfig().getMixsTarget());
+        whirlpoolWallet.getConfig().getMixsTarget(),
+        whirlpoolWallet.getConfig().getOrchestratorScheduler());
     this.whirlpoolWallet = whirlpoolWallet;
+    // CPU-bound derivation and signing: not on orchestrator threads
+    this.prewarmed =
+        new PrewarmCache<UtxoKey, IPremixHandler>(Bip84AddressCache.getSharedExecutor());
   }
 
   private static MixOrchestratorData computeData(
       MixingStateEditable mixingState, final WhirlpoolWallet whirlpoolWallet) {
     return new MixOrchestratorData(mixingState) {
-      @Override
-      public Stream<WhirlpoolUtxo> getQueue() {
-        try {
-          return StreamSupport.stream(
-                  whirlpoolWallet.getUtxos(
-                      false, WhirlpoolAccount.PREMIX, WhirlpoolAccount.POSTMIX))
-              .filter(
-                  new Predicate<WhirlpoolUtxo>() {
-                    @Override
-                    public boolean test(WhirlpoolUtxo whirlpoolUtxo) {
-                      // queued
-                      return WhirlpoolUtxoStatus.MIX_QUEUE.equals(
-                          whirlpoolUtxo.getUtxoState().getStatus());
-                    }
-                  });
-        } catch (Exception e) {
-          return StreamSupport.stream(new ArrayList());
-        }
-      }
-
       @Override
       public Collection<Pool> getPools() throws Exception {
         return whirlpoolWallet.getPools();
@@ -112,15 +101,59 @@ public class MixOrchestratorImpl extends MixOrchestrator {
       throw new NotifiableException("Pool not found: " + poolId);
     }
 
-    // start mixing (whirlpoolClient will start a new thread)
+    // start mixing (whirlpoolClient connects as a task on the shared client executor)
     MixParams mixParams = computeMixParams(whirlpoolUtxo, pool);
     WhirlpoolClient whirlpoolClient = whirlpoolWallet.getConfig().newClient();
     whirlpoolClient.whirlpool(mixParams, listener);
     return whirlpoolClient;
   }
 
+  @Override
+  public synchronized void stop() {
+    super.stop();
+    prewarmed.clear();
+  }
+
+  @Override
+  protected int getPrewarmSize() {
+    return whirlpoolWallet.getConfig().getMixPrewarmSize();
+  }
+
+  @Override
+  protected void prewarm(final String poolId, Collection<WhirlpoolUtxo> nextQueued) {
+    Map<UtxoKey, Callable<IPremixHandler>> computes =
+        new HashMap<UtxoKey, Callable<IPremixHandler>>();
+    for (final WhirlpoolUtxo whirlpoolUtxo : nextQueued) {
+      computes.put(
+          whirlpoolUtxo.getUtxoKey(),
+          new Callable<IPremixHandler>() {
+            @Override
+            public IPremixHandler call() throws Exception {
+              IPremixHandler premixHandler = computePremixHandler(whirlpoolUtxo);
+              premixHandler.signMessage(poolId); // for RegisterInputRequest
+              return premixHandler;
+            }
+          });
+    }
+    prewarmed.prewarm(poolId, computes);
+
+    // derive receive addresses (odd or even indexs)
+    whirlpoolWallet.getWalletPostmix().prefetchNextAddresses(nextQueued.size() * 2);
+  }
+
+  public long getNbPrewarmHits() {
+    return prewarmed.getNbHits();
+  }
+
+  public long getNbPrewarmMisses() {
+    return prewarmed.getNbMisses();
+  }
+
   private MixParams computeMixParams(WhirlpoolUtxo whirlpoolUtxo, Pool pool) {
-    IPremixHandler premixHandler = computePremixHandler(whirlpoolUtxo);
+    IPremixHandler premixHandler = prewarmed.take(pool.getPoolId(), whirlpoolUtxo.getUtxoKey());
+    if (premixHandler == null) {
+      premixHandler = computePremixHandler(whirlpoolUtxo);
+    }
     IPostmixHandler postmixHandler = computePostmixHandler();
     return new MixParams(pool.getPoolId(), pool.getDenomination(), premixHandler, postmixHandler);
   }
@@ -130,8 +163,11 @@ public class MixOrchestratorImpl extends MixOrchestrator {
       final Mixing mixing, final boolean cancel, final boolean reQueue) {
     super.stopWhirlpoolClient(mixing, cancel, reQueue);
 
-    // stop in new thread for faster response
-    new Thread(
+    // stop as a task for faster response
+    whirlpoolWallet
+        .getConfig()
+        .getClientExecutor()
+        .execute(
             new Runnable() {
               @Override
               public void run() {
@@ -145,9 +181,7 @@ public class MixOrchestratorImpl extends MixOrchestrator {
                   }
                 }
               }
-            },
-            "stop-whirlpoolClient")
-        .start();
+            });
   }
 
   private IPremixHandler computePremixHandler(WhirlpoolUtxo whirlpoolUtxo) {
@@ -162,13 +196,18 @@ public class MixOrchestratorImpl extends MixOrchestrator {
             premixOrPostmixUtxo.tx_output_n,
             premixOrPostmixUtxo.value);
 
-    // use PREMIX(0,0) as userPreHash (not transmitted to server but rehashed with another salt)
-    HD_Address premix00 = whirlpoolWallet.getWallet(WhirlpoolAccount.PREMIX).getAddressAt(0, 0);
-    NetworkParameters params = whirlpoolWallet.getConfig().getNetworkParameters();
-    String premix00Bech32 = Bech32UtilGeneric.getInstance().toBech32(premix00, params);
-    String userPreHash = ClientUtils.sha256Hash(premix00Bech32);
+    return new PremixHandler(utxoWithBalance, premixKey, computeUserPreHash());
+  }
 
-    return new PremixHandler(utxoWithBalance, premixKey, userPreHash);
+  private String computeUserPreHash() {
+    if (userPreHash == null) {
+      // use PREMIX(0,0) as userPreHash (not transmitted to server but rehashed with another salt)
+      HD_Address premix00 = whirlpoolWallet.getWallet(WhirlpoolAccount.PREMIX).getAddressAt(0, 0);
+      NetworkParameters params = whirlpoolWallet.getConfig().getNetworkParameters();
+      String premix00Bech32 = Bech32UtilGeneric.getInstance().toBech32(premix00, params);
+      userPreHash = ClientUtils.sha256Hash(premix00Bech32);
+    }
+    return userPreHash;
   }
 
   private IPostmixHandler computePostmixHandler() {
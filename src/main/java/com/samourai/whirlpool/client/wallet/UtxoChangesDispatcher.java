@@ -0,0 +1,190 @@
+package com.samourai.whirlpool.client.wallet;
+
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolAccount;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoChanges;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers utxo changes one set at a time and in order, as a single task on executor. Change sets
+ * waiting for delivery are merged by account (never across first fetch), so backlog stays bounded
+ * by the number of accounts whatever the refresh rate.
+ */
+public abstract class UtxoChangesDispatcher {
+  private final Logger log = LoggerFactory.getLogger(UtxoChangesDispatcher.class);
+
+  private final Executor executor;
+  private final Runnable dispatchTask;
+
+  private LinkedList<PendingChanges> pending;
+  private boolean dispatching;
+
+  // metrics
+  private long nbDispatched;
+  private long nbCoalesced;
+  private long lastDispatchLatency;
+  private long maxDispatchLatency;
+
+  public UtxoChangesDispatcher(Executor executor) {
+    this.executor = executor;
+    this.dispatchTask =
+        new Runnable() {
+          @Override
+          public void run() {
+            runDispatch();
+          }
+        };
+    this.pending = new LinkedList<PendingChanges>();
+    this.dispatching = false;
+    this.nbDispatched = 0;
+    this.nbCoalesced = 0;
+    this.lastDispatchLatency = 0;
+    this.maxDispatchLatency = 0;
+  }
+
+  protected abstract void dispatch(WhirlpoolUtxoChanges whirlpoolUtxoChanges);
+
+  public synchronized void post(
+      WhirlpoolAccount whirlpoolAccount, WhirlpoolUtxoChanges whirlpoolUtxoChanges) {
+    if (whirlpoolUtxoChanges.isEmpty()) {
+      return;
+    }
+    PendingChanges last = findLastPending(whirlpoolAccount);
+    if (last != null && last.isFirstFetch == whirlpoolUtxoChanges.isFirstFetch()) {
+      // coalesce with pending changes of same account
+      last.merge(whirlpoolUtxoChanges);
+      nbCoalesced++;
+    } else {
+      pending.add(new PendingChanges(whirlpoolAccount, whirlpoolUtxoChanges));
+    }
+    if (!dispatching) {
+      dispatching = true;
+      executor.execute(dispatchTask);
+    }
+  }
+
+  private PendingChanges findLastPending(WhirlpoolAccount whirlpoolAccount) {
+    Iterator<PendingChanges> it = pending.descendingIterator();
+    while (it.hasNext()) {
+      PendingChanges pendingChanges = it.next();
+      if (pendingChanges.whirlpoolAccount == whirlpoolAccount) {
+        return pendingChanges;
+      }
+    }
+    return null;
+  }
+
+  private void runDispatch() {
+    while (true) {
+      PendingChanges next;
+      synchronized (this) {
+        next = pending.poll();
+        if (next == null) {
+          dispatching = false;
+          return;
+        }
+      }
+      try {
+        WhirlpoolUtxoChanges whirlpoolUtxoChanges = next.toChanges();
+        if (!whirlpoolUtxoChanges.isEmpty()) { // may be emptied by merge
+          dispatch(whirlpoolUtxoChanges);
+        }
+      } catch (Exception e) {
+        log.error("", e);
+      }
+      long latency = System.currentTimeMillis() - next.since;
+      synchronized (this) {
+        nbDispatched++;
+        lastDispatchLatency = latency;
+        maxDispatchLatency = Math.max(maxDispatchLatency, latency);
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    pending.clear();
+  }
+
+  public synchronized int getNbPending() {
+    return pending.size();
+  }
+
+  public synchronized int getNbPendingUtxos() {
+    int nbPendingUtxos = 0;
+    for (PendingChanges pendingChanges : pending) {
+      nbPendingUtxos += pendingChanges.size();
+    }
+    return nbPendingUtxos;
+  }
+
+  public synchronized long getNbDispatched() {
+    return nbDispatched;
+  }
+
+  public synchronized long getNbCoalesced() {
+    return nbCoalesced;
+  }
+
+  /** @return time in ms from first change posted to end of dispatch, for last dispatch */
+  public synchronized long getLastDispatchLatency() {
+    return lastDispatchLatency;
+  }
+
+  public synchronized long getMaxDispatchLatency() {
+    return maxDispatchLatency;
+  }
+
+  private static class PendingChanges {
+    private final WhirlpoolAccount whirlpoolAccount;
+    private final boolean isFirstFetch;
+    private final long since;
+    private final Set<WhirlpoolUtxo> utxosDetected;
+    private final Set<WhirlpoolUtxo> utxosUpdated;
+    private final Set<WhirlpoolUtxo> utxosRemoved;
+
+    PendingChanges(WhirlpoolAccount whirlpoolAccount, WhirlpoolUtxoChanges whirlpoolUtxoChanges) {
+      this.whirlpoolAccount = whirlpoolAccount;
+      this.isFirstFetch = whirlpoolUtxoChanges.isFirstFetch();
+      this.since = System.currentTimeMillis();
+      this.utxosDetected = new LinkedHashSet<WhirlpoolUtxo>();
+      this.utxosUpdated = new LinkedHashSet<WhirlpoolUtxo>();
+      this.utxosRemoved = new LinkedHashSet<WhirlpoolUtxo>();
+      merge(whirlpoolUtxoChanges);
+    }
+
+    void merge(WhirlpoolUtxoChanges whirlpoolUtxoChanges) {
+      utxosDetected.addAll(whirlpoolUtxoChanges.getUtxosDetected());
+      for (WhirlpoolUtxo whirlpoolUtxo : whirlpoolUtxoChanges.getUtxosUpdated()) {
+        // updates of pending detected utxos are seen on detection
+        if (!utxosDetected.contains(whirlpoolUtxo)) {
+          utxosUpdated.add(whirlpoolUtxo);
+        }
+      }
+      for (WhirlpoolUtxo whirlpoolUtxo : whirlpoolUtxoChanges.getUtxosRemoved()) {
+        utxosUpdated.remove(whirlpoolUtxo);
+        if (!utxosDetected.remove(whirlpoolUtxo)) {
+          // detection was already dispatched
+          utxosRemoved.add(whirlpoolUtxo);
+        }
+      }
+    }
+
+    int size() {
+      return utxosDetected.size() + utxosUpdated.size() + utxosRemoved.size();
+    }
+
+    WhirlpoolUtxoChanges toChanges() {
+      WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(isFirstFetch);
+      whirlpoolUtxoChanges.getUtxosDetected().addAll(utxosDetected);
+      whirlpoolUtxoChanges.getUtxosUpdated().addAll(utxosUpdated);
+      whirlpoolUtxoChanges.getUtxosRemoved().addAll(utxosRemoved);
+      return whirlpoolUtxoChanges;
+    }
+  }
+}
@@ -4,13 +4,16 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.samourai.http.client.HttpUsage;
 import com.samourai.http.client.IHttpClient;
+import com.samourai.wallet.api.backend.BackendApi;
 import com.samourai.wallet.api.backend.MinerFee;
 import com.samourai.wallet.api.backend.MinerFeeTarget;
 import com.samourai.wallet.api.backend.beans.HttpException;
+import com.samourai.wallet.api.backend.beans.MultiAddrResponse;
 import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
 import com.samourai.wallet.client.Bip84ApiWallet;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.utils.ClientUtils;
+import com.samourai.whirlpool.client.utils.ExpiringSupplier;
 import com.samourai.whirlpool.client.wallet.beans.*;
 import com.samourai.whirlpool.client.whirlpool.beans.Pool;
 import com.samourai.whirlpool.client.whirlpool.beans.Pools;
@@ -43,10 +46,16 @@ public class WhirlpoolDataService {
   // pools
   private Supplier<Throwing<Pools, Exception>> poolsResponse;
   private Supplier<Throwing<Collection<Pool>, Exception>> pools;
+  private PoolsResponse lastPoolsResponse; // guarded by this
+  private Pools lastPools;
 
   // utxos
-  private Map<WhirlpoolAccount, Supplier<Throwing<Map<String, WhirlpoolUtxo>, Exception>>> utxos;
-  private Map<WhirlpoolAccount, Map<String, WhirlpoolUtxo>> previousUtxos;
+  private ExpiringSupplier<Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>> utxos;
+  private Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> previousUtxos;
+  private volatile Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> lastUtxos; // last snapshot
+  private Map<WhirlpoolAccount, Long> lastUtxosFetchs; // by account
+  private Set<WhirlpoolAccount> clearedAccounts; // guarded by itself
+  private UtxoChangesDispatcher utxoChangesDispatcher;
 
   private static final int ATTEMPTS = 2;
 
@@ -54,9 +63,7 @@ public class WhirlpoolDataService {
       WhirlpoolWalletConfig config, WhirlpoolWalletService whirlpoolWalletService) {
     this.config = config;
     this.whirlpoolWalletService = whirlpoolWalletService;
-    this.utxos =
-        new ConcurrentHashMap<
-            WhirlpoolAccount, Supplier<Throwing<Map<String, WhirlpoolUtxo>, Exception>>>();
+    this.utxoChangesDispatcher = computeUtxoChangesDispatcher();
 
     clear();
   }
@@ -148,7 +155,13 @@ public class WhirlpoolDataService {
     try {
       IHttpClient httpClient = config.getHttpClient(HttpUsage.COORDINATOR_REST);
       PoolsResponse poolsResponse = httpClient.getJson(url, PoolsResponse.class, null);
-      return computePools(poolsResponse);
+      synchronized (this) {
+        if (poolsResponse != lastPoolsResponse) {
+          lastPools = computePools(poolsResponse);
+          lastPoolsResponse = poolsResponse;
+        } // else: same response (HTTP 304), pools unchanged
+        return lastPools;
+      }
     } catch (HttpException e) {
       String restErrorResponseMessage = ClientUtils.parseRestErrorMessage(e);
       if (restErrorResponseMessage != null) {
@@ -211,22 +224,66 @@ public class WhirlpoolDataService {
   // UTXOS
 
   public void clearUtxos() {
-    this.previousUtxos = new ConcurrentHashMap<WhirlpoolAccount, Map<String, WhirlpoolUtxo>>();
-    for (WhirlpoolAccount whirlpoolAccount : WhirlpoolAccount.values()) {
-      clearUtxos(whirlpoolAccount);
-    }
+    this.previousUtxos = new ConcurrentHashMap<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>();
+    this.lastUtxos = null;
+    this.lastUtxosFetchs = new ConcurrentHashMap<WhirlpoolAccount, Long>();
+    this.clearedAccounts = new HashSet<WhirlpoolAccount>();
+    this.utxoChangesDispatcher.clear(); // changes of obsolete utxos
+    this.utxos =
+        new ExpiringSupplier<Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>>(
+            initUtxos().attempts(ATTEMPTS),
+            config.getRefreshUtxoDelay() * 1000L,
+            config.isRefreshUtxoStaleWhileRevalidate(),
+            config.getOrchestratorScheduler());
   }
 
   public void clearUtxos(WhirlpoolAccount whirlpoolAccount) {
     if (log.isDebugEnabled()) {
       log.debug("clearing utxos for " + whirlpoolAccount);
     }
-    this.utxos.put(
-        whirlpoolAccount,
-        Suppliers.memoizeWithExpiration(
-            initUtxos(whirlpoolAccount).attempts(ATTEMPTS),
-            config.getRefreshUtxoDelay(),
-            TimeUnit.SECONDS));
+    // next fetch only refreshes cleared accounts
+    synchronized (clearedAccounts) {
+      clearedAccounts.add(whirlpoolAccount);
+    }
+    // explicit clear: wait for fresh utxos, even when staleWhileRevalidate
+    this.utxos.invalidate();
+  }
+
+  /** @return age of account utxos in ms, or null when not fetched yet */
+  public Long getUtxosAge(WhirlpoolAccount whirlpoolAccount) {
+    Long lastFetch = lastUtxosFetchs.get(whirlpoolAccount);
+    return lastFetch != null ? System.currentTimeMillis() - lastFetch : null;
+  }
+
+  private Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> getUtxosByAccount()
+      throws Exception {
+    if (isUtxosExpired()) {
+      // accounts not refreshed by last fetch (cleared separately) are expired
+      utxos.expire();
+    }
+    return utxos.get().getOrThrow();
+  }
+
+  private boolean isUtxosExpired() {
+    if (lastUtxosFetchs.isEmpty()) {
+      return false;
+    }
+    long oldestFetch = Collections.min(lastUtxosFetchs.values());
+    return System.currentTimeMillis() - oldestFetch >= config.getRefreshUtxoDelay() * 1000L;
+  }
+
+  /** @return cleared accounts, or all accounts when utxos expired */
+  private WhirlpoolAccount[] computeAccountsToFetch() {
+    Set<WhirlpoolAccount> accounts;
+    synchronized (clearedAccounts) {
+      accounts = new LinkedHashSet<WhirlpoolAccount>(clearedAccounts);
+      clearedAccounts.clear();
+    }
+    if (lastUtxos == null || accounts.isEmpty() || isUtxosExpired()) {
+      // all accounts at once
+      return WhirlpoolAccount.values();
+    }
+    return accounts.toArray(new WhirlpoolAccount[] {});
   }
 
   public Collection<WhirlpoolUtxo> getUtxos(boolean clearCache, WhirlpoolAccount... accounts)
@@ -241,9 +298,10 @@ public class WhirlpoolDataService {
 
   public WhirlpoolUtxo findUtxo(
       String utxoHash, int utxoIndex, WhirlpoolAccount... whirlpoolAccounts) throws Exception {
-    String utxoKey = ClientUtils.utxoToKey(utxoHash, utxoIndex);
+    UtxoKey utxoKey = new UtxoKey(utxoHash, utxoIndex);
+    Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> utxosByAccount = getUtxosByAccount();
     for (WhirlpoolAccount whirlpoolAccount : whirlpoolAccounts) {
-      WhirlpoolUtxo whirlpoolUtxo = utxos.get(whirlpoolAccount).get().getOrThrow().get(utxoKey);
+      WhirlpoolUtxo whirlpoolUtxo = utxosByAccount.get(whirlpoolAccount).get(utxoKey);
       if (whirlpoolUtxo != null) {
         return whirlpoolUtxo;
       }
@@ -254,88 +312,184 @@ public class WhirlpoolDataService {
     return null;
   }
 
-  private ThrowingSupplier<Map<String, WhirlpoolUtxo>, Exception> initUtxos(
-      final WhirlpoolAccount whirlpoolAccount) {
-    return new LastValueFallbackSupplier<Map<String, WhirlpoolUtxo>, Exception>() {
+  private ThrowingSupplier<Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>, Exception>
+      initUtxos() {
+    return new LastValueFallbackSupplier<
+        Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>, Exception>() {
       @Override
-      public Map<String, WhirlpoolUtxo> getOrThrow() throws Exception {
+      public Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> getOrThrow() throws Exception {
         Optional<WhirlpoolWallet> whirlpoolWalletOpt = whirlpoolWalletService.getWhirlpoolWallet();
         if (!whirlpoolWalletOpt.isPresent()) {
           throw new Exception("no WhirlpoolWallet opened");
         }
         WhirlpoolWallet whirlpoolWallet = whirlpoolWalletOpt.get();
+        WhirlpoolAccount[] whirlpoolAccounts = computeAccountsToFetch();
+        long fetchTime = System.currentTimeMillis();
+        Map<WhirlpoolAccount, List<UnspentOutput>> fetchedUtxos;
         try {
-          List<UnspentOutput> fetchedUtxos = fetchUtxos(whirlpoolAccount, whirlpoolWallet);
-          if (log.isDebugEnabled()) {
-            log.debug(
-                "Fetching utxos from "
-                    + whirlpoolAccount
-                    + "... "
-                    + fetchedUtxos.size()
-                    + " utxos found");
-            // ClientUtils.logUtxos(fetchedUtxos);
-          }
-          final Map<String, UnspentOutput> freshUtxos =
-              new ConcurrentHashMap<String, UnspentOutput>();
-          for (UnspentOutput utxo : fetchedUtxos) {
-            freshUtxos.put(ClientUtils.utxoToKey(utxo), utxo);
-          }
-
-          // replace utxos
-          boolean isFirstFetch = false;
-          if (previousUtxos.get(whirlpoolAccount) == null) {
-            previousUtxos.put(whirlpoolAccount, new ConcurrentHashMap<String, WhirlpoolUtxo>());
-            isFirstFetch = true;
-          }
-          Map<String, WhirlpoolUtxo> oldUtxos = previousUtxos.get(whirlpoolAccount);
-          Map<String, WhirlpoolUtxo> result =
-              replaceUtxos(whirlpoolAccount, whirlpoolWallet, oldUtxos, freshUtxos, isFirstFetch);
-
-          previousUtxos.get(whirlpoolAccount).clear();
-          previousUtxos.get(whirlpoolAccount).putAll(result);
-          return result;
+          fetchedUtxos = fetchUtxos(whirlpoolAccounts, whirlpoolWallet);
         } catch (Exception e) {
           // exception
-          log.error("Failed to fetch utxos for " + whirlpoolAccount, e);
-          return new ConcurrentHashMap();
+          log.error("Failed to fetch utxos", e);
+          fetchedUtxos = null;
+        }
+
+        Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> result =
+            new ConcurrentHashMap<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>>();
+        if (lastUtxos != null) {
+          // accounts not fetched
+          result.putAll(lastUtxos);
         }
+        for (WhirlpoolAccount whirlpoolAccount : whirlpoolAccounts) {
+          Map<UtxoKey, WhirlpoolUtxo> accountUtxos;
+          if (fetchedUtxos != null) {
+            accountUtxos =
+                replaceUtxos(whirlpoolAccount, whirlpoolWallet, fetchedUtxos.get(whirlpoolAccount));
+          } else {
+            accountUtxos = new ConcurrentHashMap<UtxoKey, WhirlpoolUtxo>();
+          }
+          result.put(whirlpoolAccount, accountUtxos);
+          lastUtxosFetchs.put(whirlpoolAccount, fetchTime);
+        }
+        lastUtxos = result;
+        return result;
       }
     };
   }
 
-  protected List<UnspentOutput> fetchUtxos(
-      WhirlpoolAccount whirlpoolAccount, WhirlpoolWallet whirlpoolWallet) throws Exception {
-    Bip84ApiWallet wallet = whirlpoolWallet.getWallet(whirlpoolAccount);
-    List<UnspentOutput> utxos = wallet.fetchUtxos();
+  private Map<UtxoKey, WhirlpoolUtxo> replaceUtxos(
+      WhirlpoolAccount whirlpoolAccount,
+      WhirlpoolWallet whirlpoolWallet,
+      List<UnspentOutput> fetchedUtxos) {
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Fetching utxos from "
+              + whirlpoolAccount
+              + "... "
+              + fetchedUtxos.size()
+              + " utxos found");
+      // ClientUtils.logUtxos(fetchedUtxos);
+    }
+    final Map<UtxoKey, UnspentOutput> freshUtxos = new ConcurrentHashMap<UtxoKey, UnspentOutput>();
+    for (UnspentOutput utxo : fetchedUtxos) {
+      freshUtxos.put(UtxoKey.of(utxo), utxo);
+    }
+
+    // replace utxos
+    boolean isFirstFetch = false;
+    if (previousUtxos.get(whirlpoolAccount) == null) {
+      previousUtxos.put(whirlpoolAccount, new ConcurrentHashMap<UtxoKey, WhirlpoolUtxo>());
+      isFirstFetch = true;
+    }
+    Map<UtxoKey, WhirlpoolUtxo> oldUtxos = previousUtxos.get(whirlpoolAccount);
+    Map<UtxoKey, WhirlpoolUtxo> result =
+        replaceUtxos(whirlpoolAccount, whirlpoolWallet, oldUtxos, freshUtxos, isFirstFetch);
+
+    previousUtxos.get(whirlpoolAccount).clear();
+    previousUtxos.get(whirlpoolAccount).putAll(result);
+    return result;
+  }
+
+  /** Fetch utxos and indexs of accounts at once, in 2 backend requests. */
+  protected Map<WhirlpoolAccount, List<UnspentOutput>> fetchUtxos(
+      WhirlpoolAccount[] whirlpoolAccounts, WhirlpoolWallet whirlpoolWallet) throws Exception {
+    BackendApi backendApi = config.getBackendApi();
+    Map<String, WhirlpoolAccount> accountsByZpub = new LinkedHashMap<String, WhirlpoolAccount>();
+    Map<WhirlpoolAccount, List<UnspentOutput>> utxosByAccount =
+        new LinkedHashMap<WhirlpoolAccount, List<UnspentOutput>>();
+    for (WhirlpoolAccount whirlpoolAccount : whirlpoolAccounts) {
+      String zpub = whirlpoolWallet.getWallet(whirlpoolAccount).getZpub();
+      accountsByZpub.put(zpub, whirlpoolAccount);
+      utxosByAccount.put(whirlpoolAccount, new ArrayList<UnspentOutput>());
+    }
+    String[] zpubs = accountsByZpub.keySet().toArray(new String[] {});
+
+    // split utxos by account
+    for (UnspentOutput utxo : backendApi.fetchUtxos(zpubs)) {
+      WhirlpoolAccount whirlpoolAccount =
+          utxo.xpub != null ? accountsByZpub.get(utxo.xpub.m) : null;
+      if (whirlpoolAccount == null) {
+        // should never happen...
+        log.warn(
+            "Cannot find account for utxo "
+                + ClientUtils.utxoToKey(utxo)
+                + " => fetching accounts separately");
+        return fetchUtxosByAccount(whirlpoolAccounts, whirlpoolWallet);
+      }
+      utxosByAccount.get(whirlpoolAccount).add(utxo);
+    }
 
     // refresh wallet indexs (to avoid address reuse while using mobile wallet)
     try {
-      wallet.refreshIndexs();
+      Map<String, MultiAddrResponse.Address> addresses = backendApi.fetchAddresses(zpubs);
+      for (Map.Entry<String, WhirlpoolAccount> entry : accountsByZpub.entrySet()) {
+        MultiAddrResponse.Address address = addresses.get(entry.getKey());
+        if (address != null) {
+          whirlpoolWallet.getWallet(entry.getValue()).refreshIndexs(address);
+        } else {
+          log.error("refreshIndexs failed: address not found for " + entry.getValue());
+        }
+      }
     } catch (Exception e) {
       log.error("refreshIndexs failed", e);
     }
+    return utxosByAccount;
+  }
 
-    return utxos;
+  private Map<WhirlpoolAccount, List<UnspentOutput>> fetchUtxosByAccount(
+      WhirlpoolAccount[] whirlpoolAccounts, WhirlpoolWallet whirlpoolWallet) throws Exception {
+    Map<WhirlpoolAccount, List<UnspentOutput>> utxosByAccount =
+        new LinkedHashMap<WhirlpoolAccount, List<UnspentOutput>>();
+    for (WhirlpoolAccount whirlpoolAccount : whirlpoolAccounts) {
+      Bip84ApiWallet wallet = whirlpoolWallet.getWallet(whirlpoolAccount);
+      utxosByAccount.put(whirlpoolAccount, wallet.fetchUtxos());
+
+      // refresh wallet indexs (to avoid address reuse while using mobile wallet)
+      try {
+        wallet.refreshIndexs();
+      } catch (Exception e) {
+        log.error("refreshIndexs failed", e);
+      }
+    }
+    return utxosByAccount;
+  }
+
+  private UtxoChangesDispatcher computeUtxoChangesDispatcher() {
+    return new UtxoChangesDispatcher(config.getOrchestratorScheduler()) {
+      @Override
+      protected void dispatch(WhirlpoolUtxoChanges whirlpoolUtxoChanges) {
+        Optional<WhirlpoolWallet> whirlpoolWalletOpt = whirlpoolWalletService.getWhirlpoolWallet();
+        if (!whirlpoolWalletOpt.isPresent()) {
+          log.warn("Ignoring utxo changes: no WhirlpoolWallet opened");
+          return;
+        }
+        whirlpoolWalletOpt.get().onUtxoChanges(whirlpoolUtxoChanges);
+      }
+    };
+  }
+
+  public UtxoChangesDispatcher getUtxoChangesDispatcher() {
+    return utxoChangesDispatcher;
   }
 
   private Collection<WhirlpoolUtxo> findUtxos(final WhirlpoolAccount... whirlpoolAccounts)
       throws Exception {
+    Map<WhirlpoolAccount, Map<UtxoKey, WhirlpoolUtxo>> utxosByAccount = getUtxosByAccount();
     List<WhirlpoolUtxo> result = new ArrayList<WhirlpoolUtxo>();
     for (WhirlpoolAccount whirlpoolAccount : whirlpoolAccounts) {
-      Collection<WhirlpoolUtxo> accountUtxos =
-          utxos.get(whirlpoolAccount).get().getOrThrow().values();
+      Collection<WhirlpoolUtxo> accountUtxos = utxosByAccount.get(whirlpoolAccount).values();
       result.addAll(accountUtxos);
     }
     return result;
   }
 
-  private Map<String, WhirlpoolUtxo> replaceUtxos(
+  private Map<UtxoKey, WhirlpoolUtxo> replaceUtxos(
       final WhirlpoolAccount account,
       final WhirlpoolWallet whirlpoolWallet,
-      final Map<String, WhirlpoolUtxo> currentUtxos,
-      final Map<String, UnspentOutput> freshUtxos,
+      final Map<UtxoKey, WhirlpoolUtxo> currentUtxos,
+      final Map<UtxoKey, UnspentOutput> freshUtxos,
       final boolean isFirstFetch) {
-    final Map<String, WhirlpoolUtxo> result = new ConcurrentHashMap<String, WhirlpoolUtxo>();
+    final Map<UtxoKey, WhirlpoolUtxo> result = new ConcurrentHashMap<UtxoKey, WhirlpoolUtxo>();
 
     final WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(isFirstFetch);
 
@@ -345,7 +499,7 @@ public class WhirlpoolDataService {
             new Consumer<WhirlpoolUtxo>() {
               @Override
               public void accept(WhirlpoolUtxo whirlpoolUtxo) {
-                String key = ClientUtils.utxoToKey(whirlpoolUtxo.getUtxo());
+                UtxoKey key = whirlpoolUtxo.getUtxoKey();
 
                 UnspentOutput freshUtxo = freshUtxos.get(key);
                 if (freshUtxo != null) {
@@ -371,7 +525,7 @@ public class WhirlpoolDataService {
             new Consumer<UnspentOutput>() {
               @Override
               public void accept(UnspentOutput utxo) {
-                String key = ClientUtils.utxoToKey(utxo);
+                UtxoKey key = UtxoKey.of(utxo);
                 if (!currentUtxos.containsKey(key)) {
                   // add missing
                   WhirlpoolUtxoConfig utxoConfig = whirlpoolWallet.computeUtxoConfig(utxo, account);
@@ -398,16 +552,9 @@ public class WhirlpoolDataService {
 
     // notify changes
     if (!whirlpoolUtxoChanges.isEmpty()) {
-      // use a new thread to avoid deadlock on whirlpoolData -> whirlpoolWallet -> orchestrators
-      new Thread(
-              new Runnable() {
-                @Override
-                public void run() {
-                  whirlpoolWallet.onUtxoChanges(whirlpoolUtxoChanges);
-                }
-              },
-              "onUtxoChanges")
-          .start();
+      // dispatch from another thread to avoid deadlock on whirlpoolData -> whirlpoolWallet ->
+      // orchestrators
+      utxoChangesDispatcher.post(account, whirlpoolUtxoChanges);
     }
 
     return result;
@@ -1,5 +1,6 @@
 package com.samourai.whirlpool.client.wallet;
 
+import com.samourai.stomp.client.StompTransportPool;
 import com.samourai.wallet.api.backend.MinerFeeTarget;
 import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
 import com.samourai.wallet.client.Bip84ApiWallet;
@@ -9,7 +10,10 @@ import com.samourai.whirlpool.client.exception.EmptyWalletException;
 import com.samourai.whirlpool.client.exception.NotifiableException;
 import com.samourai.whirlpool.client.exception.UnconfirmedUtxoException;
 import com.samourai.whirlpool.client.mix.listener.MixFailReason;
+import com.samourai.whirlpool.client.mix.listener.MixStep;
 import com.samourai.whirlpool.client.mix.listener.MixSuccess;
+import com.samourai.whirlpool.client.mix.metrics.LatencyHistogram;
+import com.samourai.whirlpool.client.mix.metrics.MixMetrics;
 import com.samourai.whirlpool.client.tx0.*;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.wallet.beans.*;
@@ -18,6 +22,7 @@ import com.samourai.whirlpool.client.wallet.orchestrator.PersistOrchestrator;
 import com.samourai.whirlpool.client.whirlpool.beans.Pool;
 import com.samourai.whirlpool.client.whirlpool.beans.Pools;
 import com.samourai.whirlpool.protocol.beans.Utxo;
+import com.samourai.whirlpool.protocol.websocket.notifications.MixStatus;
 import io.reactivex.Observable;
 import java.util.*;
 import java8.util.Lists;
@@ -83,7 +88,10 @@ public class WhirlpoolWallet {
 
     this.persistOrchestrator =
         new PersistOrchestrator(
-            config.getPersistDelay() * 1000, this, config.getPersistCleanDelay() * 1000);
+            config.getPersistDelay() * 1000,
+            this,
+            config.getPersistCleanDelay() * 1000,
+            config.getOrchestratorScheduler());
     int loopDelay = config.getRefreshUtxoDelay() * 1000;
     this.mixOrchestrator = new MixOrchestratorImpl(mixingState, loopDelay, this);
 
@@ -91,7 +99,11 @@ public class WhirlpoolWallet {
       this.autoTx0Orchestrator =
           Optional.of(
               new AutoTx0Orchestrator(
-                  loopDelay, this, config.getTx0Delay(), config.getAutoTx0PoolId()));
+                  loopDelay,
+                  this,
+                  config.getTx0Delay(),
+                  config.getAutoTx0PoolId(),
+                  config.getOrchestratorScheduler()));
     } else {
       this.autoTx0Orchestrator = Optional.empty();
     }
@@ -393,6 +405,12 @@ public class WhirlpoolWallet {
     }
     log.info(" • Starting WhirlpoolWallet");
 
+    // derive next addresses in background
+    depositWallet.prefetchLookahead();
+    premixWallet.prefetchLookahead();
+    postmixWallet.prefetchLookahead();
+    badbankWallet.prefetchLookahead();
+
     // reset utxos
     clearCache();
 
@@ -404,10 +422,10 @@ public class WhirlpoolWallet {
       log.error("", e);
     }
 
-    persistOrchestrator.start(true);
-    this.mixOrchestrator.start(true);
+    persistOrchestrator.start();
+    this.mixOrchestrator.start();
     if (this.autoTx0Orchestrator.isPresent()) {
-      this.autoTx0Orchestrator.get().start(true);
+      this.autoTx0Orchestrator.get().start();
     }
     mixingState.setStarted(true);
   }
@@ -424,6 +442,13 @@ public class WhirlpoolWallet {
     }
     persistOrchestrator.stop();
 
+    // disconnect spare transports, reconnected on demand after restart
+    StompTransportPool stompTransportPool = config.getStompTransportPool();
+    if (stompTransportPool != null) {
+      stompTransportPool.close();
+      config.setStompTransportPool(null);
+    }
+
     mixingState.setStarted(false);
 
     // reset utxos
@@ -579,7 +604,8 @@ public class WhirlpoolWallet {
     // preserve utxo config
     Utxo receiveUtxo = mixSuccess.getReceiveUtxo();
     addUtxoConfig(
-        whirlpoolUtxo.getUtxoConfig().copy(), receiveUtxo.getHash(), (int) receiveUtxo.getIndex());
+        whirlpoolUtxo.getUtxoConfig().copy(),
+        new UtxoKey(receiveUtxo.getHash(), (int) receiveUtxo.getIndex()));
 
     // refresh utxos
     clearCache(whirlpoolUtxo.getAccount());
@@ -669,6 +695,11 @@ public class WhirlpoolWallet {
     return dataService.getUtxos(clearCache, accounts);
   }
 
+  /** @return age of utxos snapshot in ms, or null when not fetched yet */
+  public Long getUtxosAge(WhirlpoolAccount account) {
+    return dataService.getUtxosAge(account);
+  }
+
   public void refreshUtxos(boolean clearCache) throws Exception {
     getUtxosDeposit(clearCache);
     getUtxosPremix(clearCache);
@@ -679,6 +710,40 @@ public class WhirlpoolWallet {
     return mixingState;
   }
 
+  /** @return mixs started with premix key & signature prepared in advance */
+  public long getNbMixPrewarmHits() {
+    return mixOrchestrator.getNbPrewarmHits();
+  }
+
+  public long getNbMixPrewarmMisses() {
+    return mixOrchestrator.getNbPrewarmMisses();
+  }
+
+  public MixMetrics getMixMetrics() {
+    return config.getMixMetrics();
+  }
+
+  /** @return time spent in mix step (ms) at quantile [0-1] for pool, 0 when not recorded yet */
+  public long getMixStepLatency(String poolId, MixStep step, double quantile) {
+    LatencyHistogram histogram = getMixMetrics().getStepDuration(poolId, step);
+    return histogram != null ? histogram.getValueAtQuantile(quantile) : 0;
+  }
+
+  /** @return time between mix steps (ms) at quantile [0-1] for pool, 0 when not recorded yet */
+  public long getMixStepLatency(String poolId, MixStep step, MixStep nextStep, double quantile) {
+    LatencyHistogram histogram = getMixMetrics().getStepTransition(poolId, step, nextStep);
+    return histogram != null ? histogram.getValueAtQuantile(quantile) : 0;
+  }
+
+  /**
+   * @return time server messages waited before being handled (ms) at quantile [0-1] for pool and
+   *     mixStatus (null for other messages), 0 when not recorded yet
+   */
+  public long getMixMessageQueueTime(String poolId, MixStatus mixStatus, double quantile) {
+    LatencyHistogram histogram = getMixMetrics().getMessageQueueTime(poolId, mixStatus);
+    return histogram != null ? histogram.getValueAtQuantile(quantile) : 0;
+  }
+
   public String getDepositAddress(boolean increment) {
     return bech32Util.toBech32(
         depositWallet.getNextAddress(increment), config.getNetworkParameters());
@@ -688,15 +753,13 @@ public class WhirlpoolWallet {
     config.getPersistHandler().addUtxoConfig(txid, utxoConfig);
   }
 
-  private void addUtxoConfig(WhirlpoolUtxoConfig utxoConfig, String utxoHash, int utxoIndex) {
-    config.getPersistHandler().addUtxoConfig(utxoHash, utxoIndex, utxoConfig);
+  private void addUtxoConfig(WhirlpoolUtxoConfig utxoConfig, UtxoKey utxoKey) {
+    config.getPersistHandler().addUtxoConfig(utxoKey, utxoConfig);
   }
 
-  private WhirlpoolUtxoConfig getUtxoConfigOrNull(UnspentOutput utxo) {
+  private WhirlpoolUtxoConfig getUtxoConfigOrNull(UtxoKey utxoKey) {
     // search by utxo
-    return config
-        .getPersistHandler()
-        .getUtxoConfig(utxo.tx_hash, utxo.tx_output_n); // null if not found
+    return config.getPersistHandler().getUtxoConfig(utxoKey); // null if not found
   }
 
   private WhirlpoolUtxoConfig getUtxoConfigOrNull(String txid) {
@@ -707,7 +770,8 @@ public class WhirlpoolWallet {
   public WhirlpoolUtxoConfig computeUtxoConfig(
       UnspentOutput utxo, WhirlpoolAccount whirlpoolAccount) {
     // search by utxo
-    WhirlpoolUtxoConfig utxoConfig = getUtxoConfigOrNull(utxo);
+    UtxoKey utxoKey = UtxoKey.of(utxo);
+    WhirlpoolUtxoConfig utxoConfig = getUtxoConfigOrNull(utxoKey);
     if (utxoConfig != null) {
       return utxoConfig;
     }
@@ -719,7 +783,7 @@ public class WhirlpoolWallet {
       mixsDone++;
     }
     utxoConfig = new WhirlpoolUtxoConfig(mixsDone);
-    addUtxoConfig(utxoConfig, utxo.tx_hash, utxo.tx_output_n);
+    addUtxoConfig(utxoConfig, utxoKey);
 
     if (log.isDebugEnabled()) {
       log.debug(
@@ -759,7 +823,7 @@ public class WhirlpoolWallet {
     UnspentOutput utxo = whirlpoolUtxo.getUtxo();
 
     // find by utxo (new POSTMIX from mix or CLI restart)
-    WhirlpoolUtxoConfig utxoConfig = getUtxoConfigOrNull(utxo);
+    WhirlpoolUtxoConfig utxoConfig = getUtxoConfigOrNull(whirlpoolUtxo.getUtxoKey());
     if (utxoConfig != null) {
       // utxoConfig found (from previous mix)
       logInfo += "(existing utxoConfig)";
@@ -767,7 +831,7 @@ public class WhirlpoolWallet {
       // find by tx hash (new PREMIX from TX0)
       WhirlpoolUtxoConfig utxoConfigByHash = getUtxoConfigOrNull(utxo.tx_hash);
       if (utxoConfigByHash != null) {
-        addUtxoConfig(utxoConfigByHash.copy(), utxo.tx_hash, utxo.tx_output_n);
+        addUtxoConfig(utxoConfigByHash.copy(), whirlpoolUtxo.getUtxoKey());
         logInfo += "(from TX0)";
       } else {
         logInfo += "(no utxoConfig)";
@@ -888,6 +952,10 @@ public class WhirlpoolWallet {
     return config;
   }
 
+  public UtxoChangesDispatcher getUtxoChangesDispatcher() {
+    return dataService.getUtxoChangesDispatcher();
+  }
+
   protected WhirlpoolDataService getDataService() {
     return dataService;
   }
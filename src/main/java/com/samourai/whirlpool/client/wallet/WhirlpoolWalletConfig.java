@@ -6,8 +6,10 @@ import com.samourai.wallet.api.backend.BackendApi;
 import com.samourai.wallet.api.backend.MinerFeeTarget;
 import com.samourai.wallet.bip47.rpc.java.SecretPointFactoryJava;
 import com.samourai.wallet.bip47.rpc.secretPoint.ISecretPointFactory;
+import com.samourai.wallet.client.Bip84Wallet;
 import com.samourai.whirlpool.client.tx0.Tx0Service;
 import com.samourai.whirlpool.client.wallet.beans.Tx0FeeTarget;
+import com.samourai.whirlpool.client.wallet.orchestrator.OrchestratorScheduler;
 import com.samourai.whirlpool.client.wallet.persist.WhirlpoolWalletPersistHandler;
 import com.samourai.whirlpool.client.whirlpool.WhirlpoolClientConfig;
 import com.samourai.whirlpool.protocol.WhirlpoolProtocol;
@@ -23,6 +25,7 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
 
   private int maxClients;
   private int maxClientsPerPool;
+  private int mixPrewarmSize;
   private int clientDelay;
   private String autoTx0PoolId;
   private Tx0FeeTarget autoTx0FeeTarget;
@@ -32,11 +35,15 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
   private int tx0Delay;
   private int tx0MinConfirmations;
   private int refreshUtxoDelay;
+  private boolean refreshUtxoStaleWhileRevalidate;
   private int refreshFeeDelay;
   private int refreshPoolsDelay;
   private int mixsTarget;
   private int persistDelay;
   private int persistCleanDelay;
+  private int addressCacheSize;
+  private int addressLookahead;
+  private OrchestratorScheduler orchestratorScheduler;
 
   private int feeMin;
   private int feeMax;
@@ -59,6 +66,7 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
     // default settings
     this.maxClients = 5;
     this.maxClientsPerPool = 1;
+    this.mixPrewarmSize = 2; // per pool, prepared while mixing slots are busy
     this.clientDelay = 30;
     this.autoTx0PoolId = null;
     this.autoTx0FeeTarget = Tx0FeeTarget.BLOCKS_4;
@@ -69,11 +77,15 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
     this.tx0Delay = 30;
     this.tx0MinConfirmations = 0;
     this.refreshUtxoDelay = 60; // 1min
+    this.refreshUtxoStaleWhileRevalidate = false; // serve last utxos while refreshing
     this.refreshFeeDelay = 300; // 5min
     this.refreshPoolsDelay = 300; // 5min
     this.mixsTarget = 1;
     this.persistDelay = 4; // 4s
     this.persistCleanDelay = 300; // 5min
+    this.addressCacheSize = Bip84Wallet.ADDRESS_CACHE_SIZE_DEFAULT; // per account
+    this.addressLookahead = Bip84Wallet.ADDRESS_LOOKAHEAD_DEFAULT; // derived in background
+    this.orchestratorScheduler = OrchestratorScheduler.getInstance(); // shared by all wallets
 
     this.feeMin = 1;
     this.feeMax = 510;
@@ -92,6 +104,14 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
     this.maxClients = maxClients;
   }
 
+  public int getMixPrewarmSize() {
+    return mixPrewarmSize;
+  }
+
+  public void setMixPrewarmSize(int mixPrewarmSize) {
+    this.mixPrewarmSize = mixPrewarmSize;
+  }
+
   public int getMaxClientsPerPool() {
     return maxClientsPerPool;
   }
@@ -164,6 +184,30 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
     this.refreshUtxoDelay = refreshUtxoDelay;
   }
 
+  public boolean isRefreshUtxoStaleWhileRevalidate() {
+    return refreshUtxoStaleWhileRevalidate;
+  }
+
+  public void setRefreshUtxoStaleWhileRevalidate(boolean refreshUtxoStaleWhileRevalidate) {
+    this.refreshUtxoStaleWhileRevalidate = refreshUtxoStaleWhileRevalidate;
+  }
+
+  public int getAddressCacheSize() {
+    return addressCacheSize;
+  }
+
+  public void setAddressCacheSize(int addressCacheSize) {
+    this.addressCacheSize = addressCacheSize;
+  }
+
+  public int getAddressLookahead() {
+    return addressLookahead;
+  }
+
+  public void setAddressLookahead(int addressLookahead) {
+    this.addressLookahead = addressLookahead;
+  }
+
   public int getRefreshFeeDelay() {
     return refreshFeeDelay;
   }
@@ -204,6 +248,14 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
     this.persistCleanDelay = persistCleanDelay;
   }
 
+  public OrchestratorScheduler getOrchestratorScheduler() {
+    return orchestratorScheduler;
+  }
+
+  public void setOrchestratorScheduler(OrchestratorScheduler orchestratorScheduler) {
+    this.orchestratorScheduler = orchestratorScheduler;
+  }
+
   public int getFeeMin() {
     return feeMin;
   }
@@ -264,10 +316,15 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
             + Integer.toString(getPersistDelay())
             + ", persistCleanDelay="
             + Integer.toString(getPersistCleanDelay()));
+    configInfo.put(
+        "addressCache",
+        "addressCacheSize=" + addressCacheSize + ", addressLookahead=" + addressLookahead);
     configInfo.put(
         "refreshDelay",
         "refreshUtxoDelay="
             + refreshUtxoDelay
+            + ", refreshUtxoStaleWhileRevalidate="
+            + refreshUtxoStaleWhileRevalidate
             + ", refreshFeeDelay"
             + refreshFeeDelay
             + ", refreshPoolsDelay="
@@ -280,6 +337,10 @@ public class WhirlpoolWalletConfig extends WhirlpoolClientConfig {
             + getMaxClients()
             + ", maxClientsPerPool="
             + getMaxClientsPerPool()
+            + ", mixPrewarmSize="
+            + getMixPrewarmSize()
+            + ", stompTransportSpares="
+            + getStompTransportSpares()
             + ", clientDelay="
             + getClientDelay()
             + ", tx0Delay="
@@ -44,6 +44,11 @@ public class WhirlpoolWalletService {
       }
       WhirlpoolWallet wp = whirlpoolWallet.get();
       wp.stop();
+      try {
+        wp.getConfig().getPersistHandler().close();
+      } catch (Exception e) {
+        log.error("Unable to close persistHandler", e);
+      }
       whirlpoolWallet = Optional.empty();
     } else {
       log.warn("closeWallet skipped: no wallet opened");
@@ -183,6 +188,12 @@ public class WhirlpoolWalletService {
       walletPersistHandler.setInitialized(true);
     }
 
+    for (Bip84ApiWallet wallet :
+        new Bip84ApiWallet[] {depositWallet, premixWallet, postmixWallet, badbankWallet}) {
+      wallet.getAddressCache().setCacheSize(config.getAddressCacheSize());
+      wallet.getAddressCache().setLookahead(config.getAddressLookahead());
+    }
+
     return computeWhirlpoolWallet(
         config, dataService, depositWallet, premixWallet, postmixWallet, badbankWallet);
   }
@@ -1,31 +1,48 @@
 package com.samourai.whirlpool.client.wallet.beans;
 
 import com.samourai.wallet.api.backend.beans.UnspentResponse;
-import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.whirlpool.beans.Pool;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java8.lang.Longs;
+import java8.util.Objects;
 import java8.util.function.Function;
 import java8.util.stream.Collectors;
-import java8.util.stream.Stream;
 import java8.util.stream.StreamSupport;
 
 public abstract class MixOrchestratorData {
-  private ConcurrentHashMap<String, Mixing> mixing;
+  private ConcurrentHashMap<UtxoKey, Mixing> mixing;
   private Set<String> mixingHashs;
   private Map<String, Integer> mixingPerPool;
 
   private MixingStateEditable mixingState;
 
-  public abstract Stream<WhirlpoolUtxo> getQueue();
+  // MIX_QUEUE index, updated on utxo state changes
+  private Map<WhirlpoolUtxo, CompositeDisposable> trackedUtxos;
+  private Map<WhirlpoolUtxo, QueueEntry> queued;
+  private ConcurrentHashMap<String, ConcurrentSkipListSet<QueueEntry>> queueMixableByPool;
+  private int nbQueuedMustMix;
+  private int nbQueuedLiquidity;
+  private int nbQueuedMixableOrUnconfirmed;
+  private long queueSequence;
+  private Random random;
 
   public abstract Collection<Pool> getPools() throws Exception;
 
   public MixOrchestratorData(MixingStateEditable mixingState) {
-    this.mixing = new ConcurrentHashMap<String, Mixing>();
+    this.mixing = new ConcurrentHashMap<UtxoKey, Mixing>();
     this.mixingHashs = new HashSet<String>();
     this.mixingPerPool = new HashMap<String, Integer>();
     this.mixingState = mixingState;
+
+    this.trackedUtxos = new HashMap<WhirlpoolUtxo, CompositeDisposable>();
+    this.queued = new HashMap<WhirlpoolUtxo, QueueEntry>();
+    this.queueMixableByPool = new ConcurrentHashMap<String, ConcurrentSkipListSet<QueueEntry>>();
+    this.random = new Random();
+    doClearQueue();
   }
 
   public void clear() {
@@ -36,8 +53,7 @@ public abstract class MixOrchestratorData {
   }
 
   public synchronized void removeMixing(WhirlpoolUtxo whirlpoolUtxo) {
-    String key = ClientUtils.utxoToKey(whirlpoolUtxo.getUtxo());
-    mixing.remove(key);
+    mixing.remove(whirlpoolUtxo.getUtxoKey());
     mixingHashs.remove(whirlpoolUtxo.getUtxo().tx_hash);
     mixingPerPool = computeMixingPerPool();
     mixingState.setUtxosMixing(computeUtxosMixing());
@@ -45,13 +61,11 @@ public abstract class MixOrchestratorData {
 
   public synchronized void addMixing(Mixing mixingToAdd) {
     WhirlpoolUtxo whirlpoolUtxo = mixingToAdd.getUtxo();
-    String key = ClientUtils.utxoToKey(whirlpoolUtxo.getUtxo());
-    mixing.put(key, mixingToAdd);
+    mixing.put(whirlpoolUtxo.getUtxoKey(), mixingToAdd);
     mixingHashs.add(whirlpoolUtxo.getUtxo().tx_hash);
     mixingPerPool = computeMixingPerPool();
     mixingState.set(
-        computeUtxosMixing(),
-        getQueue().collect(Collectors.<WhirlpoolUtxo>toList())); // recount nbQueued too
+        computeUtxosMixing(), nbQueuedMustMix, nbQueuedLiquidity); // recount nbQueued too
   }
 
   private Collection<WhirlpoolUtxo> computeUtxosMixing() {
@@ -81,8 +95,11 @@ public abstract class MixOrchestratorData {
   }
 
   public Mixing getMixing(UnspentResponse.UnspentOutput utxo) {
-    final String key = ClientUtils.utxoToKey(utxo);
-    return mixing.get(key);
+    return mixing.get(UtxoKey.of(utxo));
+  }
+
+  public Mixing getMixing(WhirlpoolUtxo whirlpoolUtxo) {
+    return mixing.get(whirlpoolUtxo.getUtxoKey());
   }
 
   public boolean isHashMixing(String txid) {
@@ -98,7 +115,220 @@ public abstract class MixOrchestratorData {
     return mixingState;
   }
 
-  public void recountQueued() {
-    mixingState.setUtxosQueued(getQueue().collect(Collectors.<WhirlpoolUtxo>toList()));
+  public synchronized void recountQueued() {
+    mixingState.setNbQueued(nbQueuedMustMix, nbQueuedLiquidity);
+  }
+
+  /** Start indexing utxo in MIX_QUEUE, following its status and pool changes. */
+  public synchronized void trackUtxo(final WhirlpoolUtxo whirlpoolUtxo) {
+    if (trackedUtxos.containsKey(whirlpoolUtxo)) {
+      refreshQueue(whirlpoolUtxo);
+      return;
+    }
+    CompositeDisposable subscriptions = new CompositeDisposable();
+    subscriptions.add(
+        whirlpoolUtxo
+            .getUtxoState()
+            .getObservable()
+            .subscribe(
+                new Consumer<WhirlpoolUtxoState>() {
+                  @Override
+                  public void accept(WhirlpoolUtxoState utxoState) throws Exception {
+                    refreshQueue(whirlpoolUtxo);
+                  }
+                }));
+    subscriptions.add(
+        whirlpoolUtxo
+            .getUtxoConfig()
+            .getObservable()
+            .subscribe(
+                new Consumer<WhirlpoolUtxoConfig>() {
+                  @Override
+                  public void accept(WhirlpoolUtxoConfig utxoConfig) throws Exception {
+                    refreshQueue(whirlpoolUtxo);
+                  }
+                }));
+    trackedUtxos.put(whirlpoolUtxo, subscriptions);
+    refreshQueue(whirlpoolUtxo);
+  }
+
+  public synchronized void untrackUtxo(WhirlpoolUtxo whirlpoolUtxo) {
+    CompositeDisposable subscriptions = trackedUtxos.remove(whirlpoolUtxo);
+    if (subscriptions != null) {
+      subscriptions.dispose();
+    }
+    QueueEntry entry = queued.remove(whirlpoolUtxo);
+    if (entry != null) {
+      removeQueueEntry(entry);
+    }
+  }
+
+  public synchronized void clearQueue() {
+    for (CompositeDisposable subscriptions : trackedUtxos.values()) {
+      subscriptions.dispose();
+    }
+    trackedUtxos.clear();
+    doClearQueue();
+  }
+
+  private void doClearQueue() {
+    queued.clear();
+    queueMixableByPool.clear();
+    nbQueuedMustMix = 0;
+    nbQueuedLiquidity = 0;
+    nbQueuedMixableOrUnconfirmed = 0;
+  }
+
+  private synchronized void refreshQueue(WhirlpoolUtxo whirlpoolUtxo) {
+    if (!trackedUtxos.containsKey(whirlpoolUtxo)) {
+      return; // untracked in meantime
+    }
+    boolean isQueued =
+        WhirlpoolUtxoStatus.MIX_QUEUE.equals(whirlpoolUtxo.getUtxoState().getStatus());
+    QueueEntry entry = queued.get(whirlpoolUtxo);
+    if (entry != null) {
+      if (isQueued && entry.isUpToDate()) {
+        return; // unchanged
+      }
+      // dequeued or priority changed
+      queued.remove(whirlpoolUtxo);
+      removeQueueEntry(entry);
+    }
+    if (isQueued) {
+      // keep same shuffle when priority changed
+      long shuffle = (entry != null ? entry.shuffle : random.nextLong());
+      QueueEntry newEntry = new QueueEntry(whirlpoolUtxo, shuffle, queueSequence++);
+      queued.put(whirlpoolUtxo, newEntry);
+      addQueueEntry(newEntry);
+    }
+  }
+
+  private void addQueueEntry(QueueEntry entry) {
+    if (WhirlpoolAccount.POSTMIX.equals(entry.whirlpoolUtxo.getAccount())) {
+      nbQueuedLiquidity++;
+    } else {
+      nbQueuedMustMix++;
+    }
+    if (entry.isMixableOrUnconfirmed()) {
+      nbQueuedMixableOrUnconfirmed++;
+    }
+    if (entry.isMixable()) {
+      ConcurrentSkipListSet<QueueEntry> poolQueue = queueMixableByPool.get(entry.poolId);
+      if (poolQueue == null) {
+        poolQueue = new ConcurrentSkipListSet<QueueEntry>();
+        queueMixableByPool.put(entry.poolId, poolQueue);
+      }
+      poolQueue.add(entry);
+    }
+  }
+
+  private void removeQueueEntry(QueueEntry entry) {
+    if (WhirlpoolAccount.POSTMIX.equals(entry.whirlpoolUtxo.getAccount())) {
+      nbQueuedLiquidity--;
+    } else {
+      nbQueuedMustMix--;
+    }
+    if (entry.isMixableOrUnconfirmed()) {
+      nbQueuedMixableOrUnconfirmed--;
+    }
+    if (entry.isMixable()) {
+      ConcurrentSkipListSet<QueueEntry> poolQueue = queueMixableByPool.get(entry.poolId);
+      if (poolQueue != null) {
+        poolQueue.remove(entry);
+      }
+    }
+  }
+
+  /**
+   * MIXABLE utxos queued for pool, by priority. Same-priority utxos come in random order. Iteration
+   * is weakly consistent and doesn't block concurrent updates.
+   */
+  public Iterable<WhirlpoolUtxo> getQueueMixable(String poolId) {
+    final ConcurrentSkipListSet<QueueEntry> poolQueue = queueMixableByPool.get(poolId);
+    if (poolQueue == null) {
+      return new ArrayList<WhirlpoolUtxo>();
+    }
+    return new Iterable<WhirlpoolUtxo>() {
+      @Override
+      public Iterator<WhirlpoolUtxo> iterator() {
+        final Iterator<QueueEntry> entries = poolQueue.iterator();
+        return new Iterator<WhirlpoolUtxo>() {
+          @Override
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          @Override
+          public WhirlpoolUtxo next() {
+            return entries.next().whirlpoolUtxo;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  public synchronized boolean hasQueuedMixableOrUnconfirmed() {
+    return nbQueuedMixableOrUnconfirmed > 0;
+  }
+
+  public synchronized int getNbQueued() {
+    return nbQueuedMustMix + nbQueuedLiquidity;
+  }
+
+  // snapshot of queued utxo priority, as ordering must not change while indexed
+  private static class QueueEntry implements Comparable<QueueEntry> {
+    private final WhirlpoolUtxo whirlpoolUtxo;
+    private final String poolId;
+    private final MixableStatus mixableStatus;
+    private final Long lastError;
+    private final long shuffle;
+    private final long sequence;
+
+    QueueEntry(WhirlpoolUtxo whirlpoolUtxo, long shuffle, long sequence) {
+      this.whirlpoolUtxo = whirlpoolUtxo;
+      this.poolId = whirlpoolUtxo.getUtxoConfig().getPoolId();
+      this.mixableStatus = whirlpoolUtxo.getUtxoState().getMixableStatus();
+      this.lastError = whirlpoolUtxo.getUtxoState().getLastError();
+      this.shuffle = shuffle;
+      this.sequence = sequence;
+    }
+
+    boolean isUpToDate() {
+      WhirlpoolUtxoState utxoState = whirlpoolUtxo.getUtxoState();
+      return Objects.equals(poolId, whirlpoolUtxo.getUtxoConfig().getPoolId())
+          && mixableStatus == utxoState.getMixableStatus()
+          && Objects.equals(lastError, utxoState.getLastError());
+    }
+
+    boolean isMixable() {
+      return MixableStatus.MIXABLE.equals(mixableStatus) && poolId != null;
+    }
+
+    boolean isMixableOrUnconfirmed() {
+      return MixableStatus.MIXABLE.equals(mixableStatus)
+          || MixableStatus.UNCONFIRMED.equals(mixableStatus);
+    }
+
+    @Override
+    public int compareTo(QueueEntry o) {
+      int result =
+          WhirlpoolUtxoPriorityComparator.getInstance()
+              .compare(
+                  whirlpoolUtxo.getAccount(), lastError, o.whirlpoolUtxo.getAccount(), o.lastError);
+      if (result != 0) {
+        return result;
+      }
+      // same priority: random order
+      result = Longs.compare(shuffle, o.shuffle);
+      if (result != 0) {
+        return result;
+      }
+      return Longs.compare(sequence, o.sequence);
+    }
   }
 }
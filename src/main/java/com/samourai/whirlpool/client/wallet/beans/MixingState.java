@@ -68,6 +68,12 @@ public class MixingState {
     this.nbQueuedMustMix = this.nbQueued - this.nbQueuedLiquidity;
   }
 
+  private void doSetNbQueued(int nbQueuedMustMix, int nbQueuedLiquidity) {
+    this.nbQueuedMustMix = nbQueuedMustMix;
+    this.nbQueuedLiquidity = nbQueuedLiquidity;
+    this.nbQueued = nbQueuedMustMix + nbQueuedLiquidity;
+  }
+
   protected void incrementUtxoQueued(WhirlpoolUtxo utxoQueued) {
     if (WhirlpoolAccount.POSTMIX.equals(utxoQueued.getAccount())) {
       nbQueuedLiquidity++;
@@ -84,6 +90,13 @@ public class MixingState {
     emit();
   }
 
+  protected synchronized void set(
+      Collection<WhirlpoolUtxo> utxosMixing, int nbQueuedMustMix, int nbQueuedLiquidity) {
+    doSetUtxosMixing(utxosMixing);
+    doSetNbQueued(nbQueuedMustMix, nbQueuedLiquidity);
+    emit();
+  }
+
   protected synchronized void setUtxosMixing(Collection<WhirlpoolUtxo> utxosMixing) {
     doSetUtxosMixing(utxosMixing);
     emit();
@@ -94,6 +107,11 @@ public class MixingState {
     emit();
   }
 
+  protected synchronized void setNbQueued(int nbQueuedMustMix, int nbQueuedLiquidity) {
+    doSetNbQueued(nbQueuedMustMix, nbQueuedLiquidity);
+    emit();
+  }
+
   protected void emit() {
     // notify observers
     observable.onNext(this);
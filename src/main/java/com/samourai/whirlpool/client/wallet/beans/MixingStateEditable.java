@@ -19,6 +19,12 @@ public class MixingStateEditable extends MixingState {
     super.set(utxosMixing, utxosQueued);
   }
 
+  @Override
+  public synchronized void set(
+      Collection<WhirlpoolUtxo> utxosMixing, int nbQueuedMustMix, int nbQueuedLiquidity) {
+    super.set(utxosMixing, nbQueuedMustMix, nbQueuedLiquidity);
+  }
+
   @Override
   public void setUtxosMixing(Collection<WhirlpoolUtxo> utxosMixing) {
     super.setUtxosMixing(utxosMixing);
@@ -29,6 +35,11 @@ public class MixingStateEditable extends MixingState {
     super.setUtxosQueued(utxosQueued);
   }
 
+  @Override
+  public synchronized void setNbQueued(int nbQueuedMustMix, int nbQueuedLiquidity) {
+    super.setNbQueued(nbQueuedMustMix, nbQueuedLiquidity);
+  }
+
   public synchronized void incrementUtxoQueued(WhirlpoolUtxo utxoQueued) {
     super.incrementUtxoQueued(utxoQueued);
   }
@@ -0,0 +1,86 @@
+package com.samourai.whirlpool.client.wallet.beans;
+
+import com.google.common.base.Charsets;
+import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
+import com.samourai.whirlpool.client.utils.ClientUtils;
+import java.util.Arrays;
+import org.bitcoinj.core.Utils;
+
+/**
+ * Immutable utxo identifier: raw txid bytes + output index, with precomputed hashCode. Cheaper to
+ * hash and compare than "hash:index" strings when used as map key.
+ */
+public final class UtxoKey {
+  private static final int TXID_LENGTH = 32;
+
+  private final byte[] txid; // raw bytes when hex txid, otherwise utf8 string
+  private final boolean hex;
+  private final int vout;
+  private final int hashCode;
+  private String persistKey; // computed on first use
+
+  public UtxoKey(String utxoHash, int utxoIndex) {
+    this.hex = isHexTxid(utxoHash);
+    this.txid = hex ? Utils.HEX.decode(utxoHash) : utxoHash.getBytes(Charsets.UTF_8);
+    this.vout = utxoIndex;
+    this.hashCode = 31 * Arrays.hashCode(txid) + utxoIndex;
+  }
+
+  public static UtxoKey of(UnspentOutput utxo) {
+    return new UtxoKey(utxo.tx_hash, utxo.tx_output_n);
+  }
+
+  private static boolean isHexTxid(String utxoHash) {
+    if (utxoHash.length() != TXID_LENGTH * 2) {
+      return false;
+    }
+    for (int i = 0; i < utxoHash.length(); i++) {
+      char c = utxoHash.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false; // uppercase is not round-tripped
+      }
+    }
+    return true;
+  }
+
+  public String getUtxoHash() {
+    return hex ? Utils.HEX.encode(txid) : new String(txid, Charsets.UTF_8);
+  }
+
+  public int getVout() {
+    return vout;
+  }
+
+  /** @return sha256 of "hash:index", as used to persist utxo configs */
+  public String getPersistKey() {
+    if (persistKey == null) {
+      persistKey = ClientUtils.sha256Hash(toString());
+    }
+    return persistKey;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof UtxoKey)) {
+      return false;
+    }
+    UtxoKey utxoKey = (UtxoKey) o;
+    return hashCode == utxoKey.hashCode
+        && vout == utxoKey.vout
+        && hex == utxoKey.hex
+        && Arrays.equals(txid, utxoKey.txid);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return ClientUtils.utxoToKey(getUtxoHash(), vout);
+  }
+}
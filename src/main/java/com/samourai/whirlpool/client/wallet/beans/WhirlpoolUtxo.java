@@ -4,6 +4,7 @@ import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
 
 public class WhirlpoolUtxo {
   private UnspentOutput utxo;
+  private UtxoKey utxoKey;
   private WhirlpoolAccount account;
   private WhirlpoolUtxoConfig utxoConfig;
   private WhirlpoolUtxoState utxoState;
@@ -14,6 +15,7 @@ public class WhirlpoolUtxo {
       WhirlpoolUtxoConfig utxoConfig,
       WhirlpoolUtxoStatus status) {
     this.utxo = utxo;
+    this.utxoKey = UtxoKey.of(utxo);
     this.account = account;
     this.utxoConfig = utxoConfig;
     this.utxoState = new WhirlpoolUtxoState(status);
@@ -27,6 +29,10 @@ public class WhirlpoolUtxo {
     this.utxo = utxo;
   }
 
+  public UtxoKey getUtxoKey() {
+    return utxoKey;
+  }
+
   public WhirlpoolAccount getAccount() {
     return account;
   }
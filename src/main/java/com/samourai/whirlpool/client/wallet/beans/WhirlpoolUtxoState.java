@@ -58,6 +58,7 @@ public class WhirlpoolUtxoState {
     if (updateLastActivity) {
       setLastActivity();
     }
+    emit();
   }
 
   public void setStatus(
@@ -83,6 +84,7 @@ public class WhirlpoolUtxoState {
 
   public void setMixableStatus(MixableStatus mixableStatus) {
     this.mixableStatus = mixableStatus;
+    emit();
   }
 
   public boolean hasMessage() {
@@ -119,6 +121,7 @@ public class WhirlpoolUtxoState {
 
   public void setLastError(Long lastError) {
     this.lastError = lastError;
+    emit();
   }
 
   public Observable<WhirlpoolUtxoState> getObservable() {
@@ -1,5 +1,6 @@
 package com.samourai.whirlpool.client.wallet.orchestrator;
 
+import java.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,22 +9,29 @@ public abstract class AbstractOrchestrator {
   private final int LOOP_DELAY;
   private final int START_DELAY;
   private final Integer LAST_RUN_DELAY;
+  private final OrchestratorScheduler scheduler;
 
   private boolean started;
-  protected Thread myThread;
+  private ScheduledFuture<?> nextRun;
+  private long nextRunId; // identifies nextRun, so that a replaced run doesn't clear it
+  private boolean running;
+  private boolean runRequested;
   private boolean dontDisturb;
   private long lastRun;
   private boolean lastRunSetInLoop;
 
-  public AbstractOrchestrator(int loopDelay) {
-    this(loopDelay, 0, null);
+  public AbstractOrchestrator(int loopDelay, OrchestratorScheduler scheduler) {
+    this(loopDelay, 0, null, scheduler);
   }
 
-  public AbstractOrchestrator(int loopDelay, int startDelay, Integer lastRunDelay) {
+  public AbstractOrchestrator(
+      int loopDelay, int startDelay, Integer lastRunDelay, OrchestratorScheduler scheduler) {
     this.log = LoggerFactory.getLogger(getClass().getName());
     this.LOOP_DELAY = loopDelay;
     this.START_DELAY = startDelay;
     this.LAST_RUN_DELAY = lastRunDelay;
+    this.scheduler = scheduler;
+    this.nextRunId = 0;
     resetOrchestrator();
   }
 
@@ -32,7 +40,7 @@ public abstract class AbstractOrchestrator {
     this.lastRun = 0;
   }
 
-  public synchronized void start(boolean daemon) {
+  public synchronized void start() {
     if (isStarted()) {
       log.error("Cannot start: already started");
       return;
@@ -41,41 +49,80 @@ public abstract class AbstractOrchestrator {
       log.debug("Starting...");
     }
     this.started = true;
-    this.myThread =
-        new Thread(
+    this.runRequested = false;
+    scheduleRun(START_DELAY);
+  }
+
+  private synchronized void scheduleRun(long delay) {
+    if (!started) {
+      return;
+    }
+    if (nextRun != null) {
+      nextRun.cancel(false);
+    }
+    final long runId = ++nextRunId;
+    nextRun =
+        scheduler.schedule(
             new Runnable() {
               @Override
               public void run() {
-                if (START_DELAY > 0) {
-                  doSleep(START_DELAY);
-                }
-                while (started) {
-                  lastRunSetInLoop = false;
-                  runOrchestrator();
-
-                  // orchestrator may have been stopped in the meantime, as function is not
-                  // synchronized
-                  if (lastRunSetInLoop && LAST_RUN_DELAY != null) {
-                    // wait for lastRunDelay if we did run in this loop
-                    waitForLastRunDelay(LAST_RUN_DELAY);
-                  } else {
-                    doSleep(LOOP_DELAY);
-                  }
-
-                  lastRunSetInLoop = false;
-                }
-
-                // thread exiting
-                myThread = null;
-                if (log.isDebugEnabled()) {
-                  log.debug("Ended. started=" + started);
-                }
-                resetOrchestrator();
+                doRun(runId);
               }
             },
-            getClass().getSimpleName());
-    this.myThread.setDaemon(daemon);
-    this.myThread.start();
+            delay);
+  }
+
+  private void doRun(long runId) {
+    synchronized (this) {
+      if (runId != nextRunId) {
+        // replaced by another run (may already be dispatched when cancelled)
+        return;
+      }
+      nextRun = null;
+      if (!started || running) {
+        return;
+      }
+      running = true;
+      runRequested = false;
+      dontDisturb = false;
+      lastRunSetInLoop = false;
+    }
+
+    try {
+      runOrchestrator();
+    } finally {
+      synchronized (this) {
+        running = false;
+        if (started) {
+          scheduleNextRun();
+        } else {
+          // orchestrator was stopped in the meantime, as runOrchestrator() is not synchronized
+          if (log.isDebugEnabled()) {
+            log.debug("Ended. started=" + started);
+          }
+          resetOrchestrator();
+        }
+        lastRunSetInLoop = false;
+      }
+    }
+  }
+
+  private void scheduleNextRun() {
+    if (lastRunSetInLoop && LAST_RUN_DELAY != null) {
+      // wait for lastRunDelay if we did run in this loop
+      long timeToWait = computeWaitForLastRunDelay(LAST_RUN_DELAY);
+      if (timeToWait > 0) {
+        if (log.isDebugEnabled()) {
+          log.debug("Sleeping for lastRunDelay (" + (timeToWait / 1000) + "s to wait)");
+        }
+        dontDisturb = true;
+        scheduleRun(timeToWait);
+      } else {
+        scheduleRun(0);
+      }
+      return;
+    }
+    scheduleRun(runRequested ? 0 : LOOP_DELAY);
   }
 
   protected abstract void runOrchestrator();
@@ -93,21 +140,26 @@ public abstract class AbstractOrchestrator {
       log.debug("Ending...");
     }
     this.started = false;
-    if (log.isDebugEnabled()) {
-      log.debug("Ended.");
+    if (nextRun != null) {
+      nextRun.cancel(false);
+      nextRun = null;
     }
-    synchronized (myThread) {
-      myThread.notify();
+    if (!running) {
+      // otherwise reset when current run completes
+      resetOrchestrator();
     }
     if (log.isDebugEnabled()) {
-      log.debug("Ended notified.");
+      log.debug("Ended.");
     }
   }
 
   protected synchronized void notifyOrchestrator() {
     if (isStarted() && !isDontDisturb()) {
-      synchronized (myThread) {
-        myThread.notify();
+      if (running) {
+        // run again as soon as current run completes
+        runRequested = true;
+      } else {
+        scheduleRun(0);
       }
     } else {
       if (log.isTraceEnabled()) {
@@ -116,43 +168,12 @@ public abstract class AbstractOrchestrator {
     }
   }
 
-  protected void sleepOrchestrator(long timeToWait, boolean withDontDisturb) {
-    if (withDontDisturb) {
-      dontDisturb = true;
-    }
-    doSleep(timeToWait);
-    if (withDontDisturb) {
-      dontDisturb = false;
-    }
-  }
-
-  private void doSleep(long timeToWait) {
-    try {
-      synchronized (myThread) {
-        myThread.wait(timeToWait);
-      }
-    } catch (InterruptedException e) {
-    }
-  }
-
   private long computeWaitForLastRunDelay(int delay) {
     long elapsedTimeSinceLastRun = System.currentTimeMillis() - lastRun;
     long timeToWait = (delay * 1000) - elapsedTimeSinceLastRun;
     return timeToWait;
   }
 
-  private boolean waitForLastRunDelay(int delay) {
-    long timeToWait = computeWaitForLastRunDelay(delay);
-    if (timeToWait > 0) {
-      if (log.isDebugEnabled()) {
-        log.debug("Sleeping for lastRunDelay (" + (timeToWait / 1000) + "s to wait)");
-      }
-      sleepOrchestrator(timeToWait, true);
-      return true;
-    }
-    return false;
-  }
-
   protected void setLastRun() {
     this.lastRun = System.currentTimeMillis();
     this.lastRunSetInLoop = true;
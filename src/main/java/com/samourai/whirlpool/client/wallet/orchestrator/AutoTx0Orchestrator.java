@@ -18,8 +18,12 @@ public class AutoTx0Orchestrator extends AbstractOrchestrator {
   private String autoTx0PoolId;
 
   public AutoTx0Orchestrator(
-      int loopDelay, WhirlpoolWallet whirlpoolWallet, int tx0Delay, String autoTx0PoolId) {
-    super(loopDelay, START_DELAY, tx0Delay);
+      int loopDelay,
+      WhirlpoolWallet whirlpoolWallet,
+      int tx0Delay,
+      String autoTx0PoolId,
+      OrchestratorScheduler scheduler) {
+    super(loopDelay, START_DELAY, tx0Delay, scheduler);
     this.whirlpoolWallet = whirlpoolWallet;
     this.autoTx0PoolId = autoTx0PoolId;
   }
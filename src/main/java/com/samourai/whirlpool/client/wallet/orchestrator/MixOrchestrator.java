@@ -11,13 +11,12 @@ import com.samourai.whirlpool.client.whirlpool.listener.LoggingWhirlpoolClientLi
 import com.samourai.whirlpool.client.whirlpool.listener.WhirlpoolClientListener;
 import io.reactivex.Observable;
 import io.reactivex.subjects.Subject;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java8.util.Optional;
 import java8.util.function.Predicate;
-import java8.util.stream.Collectors;
-import java8.util.stream.Stream;
 import java8.util.stream.StreamSupport;
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +39,9 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
       int maxClients,
       int maxClientsPerPool,
       boolean autoMix,
-      int mixsTargetMin) {
-    super(loopDelay, 0, clientDelay);
+      int mixsTargetMin,
+      OrchestratorScheduler scheduler) {
+    super(loopDelay, 0, clientDelay, scheduler);
     this.data = data;
 
     this.maxClients = maxClients;
@@ -53,6 +53,16 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
   protected abstract WhirlpoolClient runWhirlpoolClient(
       WhirlpoolUtxo whirlpoolUtxo, WhirlpoolClientListener listener) throws NotifiableException;
 
+  /** @return number of queued utxos to prepare in advance, per pool */
+  protected int getPrewarmSize() {
+    return 0;
+  }
+
+  /** Prepare next queued utxos of pool (by priority) to mix, while mixing slots are busy. */
+  protected void prewarm(String poolId, Collection<WhirlpoolUtxo> nextQueued) {
+    // override here
+  }
+
   protected void stopWhirlpoolClient(Mixing mixing, boolean cancel, boolean reQueue) {
     if (log.isDebugEnabled()) {
       String reQueueStr = reQueue ? "(REQUEUE)" : "";
@@ -104,8 +114,11 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
 
   @Override
   public synchronized void stop() {
-    super.stop();
+    // stop clients first, as stopping resets orchestrator data
     stopMixingClients();
+    // utxos will be detected again on restart
+    data.clearQueue();
+    super.stop();
   }
 
   public synchronized void stopMixingClients() {
@@ -123,6 +136,7 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
     // find mixable for pool
     WhirlpoolUtxo[] mixableUtxos = findMixable(poolId);
     if (mixableUtxos == null) {
+      prewarm(poolId);
       if (log.isDebugEnabled()) {
         log.debug(
             "["
@@ -142,6 +156,25 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
     return true;
   }
 
+  private void prewarm(String poolId) {
+    int prewarmSize = getPrewarmSize();
+    if (prewarmSize <= 0) {
+      return;
+    }
+    List<WhirlpoolUtxo> nextQueued = new ArrayList<WhirlpoolUtxo>(prewarmSize);
+    for (WhirlpoolUtxo whirlpoolUtxo : data.getQueueMixable(poolId)) {
+      if (nextQueued.size() >= prewarmSize) {
+        break;
+      }
+      nextQueued.add(whirlpoolUtxo);
+    }
+    try {
+      prewarm(poolId, nextQueued);
+    } catch (Exception e) {
+      log.error("", e);
+    }
+  }
+
   private Optional<Mixing> findMixingToSwap(
       final WhirlpoolUtxo toMix,
       final String mixingHashCriteria,
@@ -177,9 +210,7 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
   }
 
   public boolean hasMoreMixableOrUnconfirmed() {
-    List<WhirlpoolUtxo> unconfirmedUtxos =
-        getQueueByMixableStatus(false, null, MixableStatus.MIXABLE, MixableStatus.UNCONFIRMED);
-    return !unconfirmedUtxos.isEmpty();
+    return data.hasQueuedMixableOrUnconfirmed();
   }
 
   public boolean hasMoreMixingThreadAvailable(String poolId) {
@@ -211,21 +242,15 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
 
   // returns [mixable,mixingToSwapOrNull]
   private WhirlpoolUtxo[] findMixable(final String poolId) {
-    Predicate<WhirlpoolUtxo> filter =
-        new Predicate<WhirlpoolUtxo>() {
-          @Override
-          public boolean test(WhirlpoolUtxo whirlpoolUtxo) {
-            // filter by poolId
-            if (!poolId.equals(whirlpoolUtxo.getUtxoConfig().getPoolId())) {
-              return false;
-            }
-            return true;
-          }
-        };
-    List<WhirlpoolUtxo> mixableUtxos = getQueueByMixableStatus(true, filter, MixableStatus.MIXABLE);
-
-    // find first mixable utxo, eventually by swapping a lower priority mixing utxo
-    for (WhirlpoolUtxo toMix : mixableUtxos) {
+    final long lastErrorMax = System.currentTimeMillis() - (LAST_ERROR_DELAY * 1000);
+
+    // find first mixable utxo by priority, eventually by swapping a lower priority mixing utxo
+    for (WhirlpoolUtxo toMix : data.getQueueMixable(poolId)) {
+      // don't retry before errorDelay
+      Long lastError = toMix.getUtxoState().getLastError();
+      if (lastError != null && lastError >= lastErrorMax) {
+        continue;
+      }
       WhirlpoolUtxo[] swap = findSwap(toMix, false);
       if (swap != null) {
         return swap;
@@ -262,51 +287,6 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
     return null;
   }
 
-  private List<WhirlpoolUtxo> getQueueByMixableStatus(
-      final boolean filterErrorDelay,
-      Predicate<WhirlpoolUtxo> utxosFilter,
-      final MixableStatus... filterMixableStatuses) {
-    final long lastErrorMax = System.currentTimeMillis() - (LAST_ERROR_DELAY * 1000);
-
-    // find queued
-    Stream<WhirlpoolUtxo> stream =
-        data.getQueue()
-            .filter(
-                new Predicate<WhirlpoolUtxo>() {
-                  @Override
-                  public boolean test(WhirlpoolUtxo whirlpoolUtxo) {
-                    WhirlpoolUtxoState utxoState = whirlpoolUtxo.getUtxoState();
-                    // don't retry before errorDelay
-                    boolean accepted =
-                        (!filterErrorDelay
-                            || utxoState.getLastError() == null
-                            || utxoState.getLastError() < lastErrorMax);
-                    if (!accepted) {
-                      return false;
-                    }
-
-                    // filter by mixableStatus
-                    return ArrayUtils.contains(filterMixableStatuses, utxoState.getMixableStatus());
-                  }
-                });
-    if (utxosFilter != null) {
-      stream = stream.filter(utxosFilter);
-    }
-    List<WhirlpoolUtxo> whirlpoolUtxos = stream.collect(Collectors.<WhirlpoolUtxo>toList());
-
-    // suffle & sort
-    sortShuffled(whirlpoolUtxos);
-    return whirlpoolUtxos;
-  }
-
-  protected void sortShuffled(List<WhirlpoolUtxo> whirlpoolUtxos) {
-    // shuffle
-    Collections.shuffle(whirlpoolUtxos);
-
-    // sort by priority, but keep utxos shuffled when same-priority
-    Collections.sort(whirlpoolUtxos, WhirlpoolUtxoPriorityComparator.getInstance());
-  }
-
   private MixableStatus computeMixableStatus(WhirlpoolUtxo whirlpoolUtxo) {
 
     // check pool
@@ -355,7 +335,7 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
       log.warn("mixQueue ignored: utxo already queued for " + whirlpoolUtxo);
       return;
     }
-    if (data.getMixing(whirlpoolUtxo.getUtxo()) != null
+    if (data.getMixing(whirlpoolUtxo) != null
         || WhirlpoolUtxoStatus.MIX_SUCCESS.equals(utxoStatus)) {
       log.warn("mixQueue ignored: utxo already mixing for " + whirlpoolUtxo);
       return;
@@ -398,7 +378,7 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
   public synchronized void mixStop(WhirlpoolUtxo whirlpoolUtxo, boolean cancel, boolean reQueue) {
     WhirlpoolUtxoState utxoState = whirlpoolUtxo.getUtxoState();
 
-    Mixing myMixing = data.getMixing(whirlpoolUtxo.getUtxo());
+    Mixing myMixing = data.getMixing(whirlpoolUtxo);
     if (myMixing != null) {
       // stop mixing
       stopWhirlpoolClient(myMixing, cancel, reQueue);
@@ -546,6 +526,8 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
 
     // DETECTED
     for (WhirlpoolUtxo whirlpoolUtxo : whirlpoolUtxoChanges.getUtxosDetected()) {
+      // index when queued
+      data.trackUtxo(whirlpoolUtxo);
       // autoQueue
       autoQueue(whirlpoolUtxo, whirlpoolUtxoChanges.isFirstFetch());
       // refresh MIXABLE status
@@ -565,13 +547,15 @@ public abstract class MixOrchestrator extends AbstractOrchestrator {
     // REMOVED
     for (WhirlpoolUtxo whirlpoolUtxo : whirlpoolUtxoChanges.getUtxosRemoved()) {
       // stop mixing it
-      Mixing mixing = data.getMixing(whirlpoolUtxo.getUtxo());
+      Mixing mixing = data.getMixing(whirlpoolUtxo);
       if (mixing != null) {
         if (log.isDebugEnabled()) {
           log.debug("Stopping mixing removed utxo: " + whirlpoolUtxo);
         }
         stopWhirlpoolClient(mixing, true, false);
       }
+      // remove from queue
+      data.untrackUtxo(whirlpoolUtxo);
     }
 
     if (notify) {
@@ -0,0 +1,114 @@
+package com.samourai.whirlpool.client.wallet.orchestrator;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared scheduler running orchestrators and background refreshs as tasks. A single instance can
+ * serve every orchestrator of every wallet in the JVM, so thread count doesn't grow with the number
+ * of wallets.
+ *
+ * <p>The timer thread is only used for timing: tasks (which may block on network or disk) run on a
+ * separate bounded pool of workers, so a slow task never delays the scheduling of others.
+ */
+public class OrchestratorScheduler implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(OrchestratorScheduler.class);
+  private static final int NB_THREADS_DEFAULT = 4;
+  private static final int KEEPALIVE_SECONDS = 60;
+
+  private static OrchestratorScheduler instance;
+
+  private final ScheduledThreadPoolExecutor timer;
+  private final ThreadPoolExecutor workers;
+
+  public static synchronized OrchestratorScheduler getInstance() {
+    if (instance == null) {
+      instance = new OrchestratorScheduler(NB_THREADS_DEFAULT);
+    }
+    return instance;
+  }
+
+  /** @param nbThreads max worker threads running tasks */
+  public OrchestratorScheduler(int nbThreads) {
+    this.timer = new ScheduledThreadPoolExecutor(1, computeThreadFactory("orchestrator-timer-"));
+    this.workers =
+        new ThreadPoolExecutor(
+            nbThreads,
+            nbThreads,
+            KEEPALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            computeThreadFactory("orchestrator-"));
+    this.workers.allowCoreThreadTimeOut(true);
+  }
+
+  private static ThreadFactory computeThreadFactory(final String prefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /** Run task on a worker after delay. Cancelling the future prevents a pending task to run. */
+  protected ScheduledFuture<?> schedule(final Runnable task, long delayMs) {
+    Runnable dispatch =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              execute(task);
+            } catch (RejectedExecutionException e) {
+              // shutdown in the meantime
+              log.warn("task rejected: " + e.getMessage());
+            }
+          }
+        };
+    return timer.schedule(dispatch, Math.max(delayMs, 0), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    Runnable safeTask =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              task.run();
+            } catch (Throwable e) {
+              // executor would silently swallow it
+              log.error("", e);
+            }
+          }
+        };
+    workers.execute(safeTask);
+  }
+
+  public int getNbThreads() {
+    return workers.getMaximumPoolSize();
+  }
+
+  /** @return tasks waiting for a worker */
+  public int getNbQueued() {
+    return workers.getQueue().size();
+  }
+
+  public void shutdown() {
+    timer.shutdownNow();
+    workers.shutdownNow();
+  }
+}
@@ -14,8 +14,12 @@ public class PersistOrchestrator extends AbstractOrchestrator {
 
   private long lastClean;
 
-  public PersistOrchestrator(int loopDelay, WhirlpoolWallet whirlpoolWallet, int cleanDelay) {
-    super(loopDelay, 0, loopDelay);
+  public PersistOrchestrator(
+      int loopDelay,
+      WhirlpoolWallet whirlpoolWallet,
+      int cleanDelay,
+      OrchestratorScheduler scheduler) {
+    super(loopDelay, 0, loopDelay, scheduler);
     this.whirlpoolWallet = whirlpoolWallet;
     this.cleanDelay = cleanDelay;
     this.lastClean = 0;
@@ -0,0 +1,321 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+import com.google.common.base.Charsets;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded key-value store in a single log-structured file. Values stay on disk and are read on
+ * demand, only keys and their file offset are kept in memory: memory use is O(keys), a few dozen
+ * bytes by key instead of the whole value.
+ *
+ * <p>Changes are staged with put()/delete() and written atomically by commit() as a single frame
+ * [length][crc32][records], synced to disk. A torn or corrupted trailing frame is discarded on
+ * open. File is rewritten with live records only when overwritten records make up most of it.
+ */
+public class FileKeyValueStore {
+  private static final Logger log = LoggerFactory.getLogger(FileKeyValueStore.class);
+  private static final String COMPACT_SUFFIX = ".compact";
+  private static final byte RECORD_PUT = 1;
+  private static final byte RECORD_DELETE = 2;
+  private static final int FRAME_HEADER_SIZE = 8;
+  private static final int COMPACT_MIN_SIZE = 1024 * 1024; // 1M
+  private static final double COMPACT_GARBAGE_RATIO = 0.5;
+  private static final int COMPACT_BATCH_SIZE = 1000;
+
+  private File file;
+  private RandomAccessFile raf;
+  private Map<String, ValuePointer> keydir;
+  private long garbageSize;
+
+  // staged changes, null value for delete
+  private Map<String, String> staged;
+
+  public FileKeyValueStore(File file) throws IOException {
+    this.file = file;
+    this.keydir = new HashMap<String, ValuePointer>();
+    this.garbageSize = 0;
+    this.staged = new LinkedHashMap<String, String>();
+    open();
+  }
+
+  public synchronized String get(String key) throws IOException {
+    if (staged.containsKey(key)) {
+      return staged.get(key);
+    }
+    ValuePointer pointer = keydir.get(key);
+    if (pointer == null) {
+      return null;
+    }
+    byte[] value = new byte[pointer.size];
+    raf.seek(pointer.offset);
+    raf.readFully(value);
+    return new String(value, Charsets.UTF_8);
+  }
+
+  public synchronized boolean containsKey(String key) {
+    if (staged.containsKey(key)) {
+      return staged.get(key) != null;
+    }
+    return keydir.containsKey(key);
+  }
+
+  /** @return committed and staged keys */
+  public synchronized Collection<String> keys() {
+    return keys("");
+  }
+
+  /** @return committed and staged keys starting with prefix */
+  public synchronized Collection<String> keys(String prefix) {
+    Set<String> keys = new HashSet<String>();
+    for (String key : keydir.keySet()) {
+      if (key.startsWith(prefix)) {
+        keys.add(key);
+      }
+    }
+    for (Entry<String, String> entry : staged.entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        continue;
+      }
+      if (entry.getValue() != null) {
+        keys.add(entry.getKey());
+      } else {
+        keys.remove(entry.getKey());
+      }
+    }
+    return keys;
+  }
+
+  public synchronized void put(String key, String value) {
+    staged.put(key, value);
+  }
+
+  public synchronized void delete(String key) {
+    staged.put(key, null);
+  }
+
+  public synchronized boolean isEmpty() {
+    return keys().isEmpty();
+  }
+
+  /** Atomically write staged changes to disk. Changes stay staged when commit fails. */
+  public synchronized void commit() throws IOException {
+    if (staged.isEmpty()) {
+      return;
+    }
+    long offset = raf.length();
+    Map<String, ValuePointer> pointers;
+    try {
+      pointers = writeFrame(staged, raf, offset);
+      raf.getFD().sync();
+    } catch (IOException e) {
+      // remove torn frame, otherwise next commits would be appended after it and discarded on open
+      try {
+        raf.setLength(offset);
+      } catch (IOException ee) {
+        log.error("commit: unable to truncate " + file.getAbsolutePath(), ee);
+      }
+      throw e;
+    }
+    // frame written => update keydir
+    setPointers(keydir, pointers);
+    staged.clear();
+
+    if (isCompactNeeded()) {
+      compact();
+    }
+  }
+
+  public synchronized void close() throws IOException {
+    if (!staged.isEmpty()) {
+      log.warn("close: " + staged.size() + " uncommitted changes discarded");
+      staged.clear();
+    }
+    raf.close();
+  }
+
+  private void open() throws IOException {
+    raf = new RandomAccessFile(file, "rw");
+    long offset = 0;
+    long length = raf.length();
+    while (offset + FRAME_HEADER_SIZE <= length) {
+      raf.seek(offset);
+      int frameSize = raf.readInt();
+      long crc = raf.readInt() & 0xffffffffL;
+      if (frameSize < 0 || offset + FRAME_HEADER_SIZE + frameSize > length) {
+        break; // torn frame
+      }
+      byte[] frame = new byte[frameSize];
+      raf.readFully(frame);
+      if (computeCrc(frame) != crc) {
+        break; // corrupted frame
+      }
+      readFrame(frame, offset + FRAME_HEADER_SIZE);
+      offset += FRAME_HEADER_SIZE + frameSize;
+    }
+    if (offset < length) {
+      log.warn(
+          "open: discarding "
+              + (length - offset)
+              + " bytes of uncommitted changes in "
+              + file.getAbsolutePath());
+      raf.setLength(offset);
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("open: " + keydir.size() + " keys, " + garbageSize + "/" + offset + " garbage");
+    }
+  }
+
+  private void readFrame(byte[] frame, long frameOffset) throws IOException {
+    int position = 0;
+    while (position < frame.length) {
+      byte type = frame[position];
+      position++;
+      int keySize = readInt(frame, position);
+      position += 4;
+      String key = new String(frame, position, keySize, Charsets.UTF_8);
+      position += keySize;
+      if (type == RECORD_PUT) {
+        int valueSize = readInt(frame, position);
+        position += 4;
+        setPointer(keydir, key, new ValuePointer(frameOffset + position, valueSize));
+        position += valueSize;
+      } else if (type == RECORD_DELETE) {
+        setPointer(keydir, key, null);
+      } else {
+        throw new IOException("Invalid record type: " + type);
+      }
+    }
+  }
+
+  /** @return pointers to written values (null for deleted keys) */
+  private Map<String, ValuePointer> writeFrame(
+      Map<String, String> records, RandomAccessFile out, long offset) throws IOException {
+    long frameOffset = offset + FRAME_HEADER_SIZE;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+    Map<String, ValuePointer> pointers = new LinkedHashMap<String, ValuePointer>();
+    for (Entry<String, String> entry : records.entrySet()) {
+      byte[] key = entry.getKey().getBytes(Charsets.UTF_8);
+      dos.writeByte(entry.getValue() != null ? RECORD_PUT : RECORD_DELETE);
+      dos.writeInt(key.length);
+      dos.write(key);
+      ValuePointer pointer = null;
+      if (entry.getValue() != null) {
+        byte[] value = entry.getValue().getBytes(Charsets.UTF_8);
+        dos.writeInt(value.length);
+        pointer = new ValuePointer(frameOffset + dos.size(), value.length);
+        dos.write(value);
+      }
+      pointers.put(entry.getKey(), pointer);
+    }
+    dos.flush();
+    byte[] frame = baos.toByteArray();
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream(FRAME_HEADER_SIZE);
+    DataOutputStream headerDos = new DataOutputStream(header);
+    headerDos.writeInt(frame.length);
+    headerDos.writeInt((int) computeCrc(frame));
+    out.seek(offset);
+    out.write(header.toByteArray());
+    out.write(frame);
+    return pointers;
+  }
+
+  private void setPointers(Map<String, ValuePointer> dir, Map<String, ValuePointer> pointers) {
+    for (Entry<String, ValuePointer> entry : pointers.entrySet()) {
+      setPointer(dir, entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void setPointer(Map<String, ValuePointer> dir, String key, ValuePointer pointer) {
+    ValuePointer previous =
+        pointer != null ? dir.put(key, pointer) : dir.remove(key); // delete record is garbage
+    if (previous != null) {
+      garbageSize += previous.size;
+    }
+  }
+
+  private boolean isCompactNeeded() throws IOException {
+    long length = raf.length();
+    return length >= COMPACT_MIN_SIZE && garbageSize > length * COMPACT_GARBAGE_RATIO;
+  }
+
+  private void compact() throws IOException {
+    long lengthBefore = raf.length();
+    File compactFile = new File(file.getParent(), file.getName() + COMPACT_SUFFIX);
+    if (compactFile.exists()) {
+      compactFile.delete();
+    }
+    RandomAccessFile compactRaf = new RandomAccessFile(compactFile, "rw");
+    Map<String, ValuePointer> compactKeydir = new HashMap<String, ValuePointer>();
+    try {
+      // copy live records by batches
+      Map<String, String> batch = new LinkedHashMap<String, String>();
+      for (String key : new ArrayList<String>(keydir.keySet())) {
+        batch.put(key, get(key));
+        if (batch.size() >= COMPACT_BATCH_SIZE) {
+          setPointers(compactKeydir, writeFrame(batch, compactRaf, compactRaf.length()));
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        setPointers(compactKeydir, writeFrame(batch, compactRaf, compactRaf.length()));
+      }
+      compactRaf.getFD().sync();
+    } finally {
+      compactRaf.close();
+    }
+
+    // replace file
+    raf.close();
+    if (!compactFile.renameTo(file)) {
+      log.error("compact: unable to rename " + compactFile.getAbsolutePath());
+      raf = new RandomAccessFile(file, "rw");
+      return;
+    }
+    raf = new RandomAccessFile(file, "rw");
+    keydir = compactKeydir;
+    garbageSize = 0;
+    if (log.isDebugEnabled()) {
+      log.debug("compact: " + lengthBefore + " => " + raf.length() + " bytes");
+    }
+  }
+
+  private static int readInt(byte[] bytes, int position) {
+    return ((bytes[position] & 0xff) << 24)
+        | ((bytes[position + 1] & 0xff) << 16)
+        | ((bytes[position + 2] & 0xff) << 8)
+        | (bytes[position + 3] & 0xff);
+  }
+
+  private static long computeCrc(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  private static class ValuePointer {
+    private final long offset;
+    private final int size;
+
+    ValuePointer(long offset, int size) {
+      this.offset = offset;
+      this.size = size;
+    }
+  }
+}
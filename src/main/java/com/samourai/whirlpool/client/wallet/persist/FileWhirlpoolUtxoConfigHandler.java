@@ -2,49 +2,80 @@ package com.samourai.whirlpool.client.wallet.persist;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.wallet.WhirlpoolWallet;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoConfig;
+import com.samourai.whirlpool.client.wallet.orchestrator.OrchestratorScheduler;
 import io.reactivex.functions.Consumer;
 import io.reactivex.subjects.BehaviorSubject;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java8.util.function.Function;
-import java8.util.stream.Collectors;
+import java.util.concurrent.Executor;
 import java8.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Utxo configs stored as a JSON snapshot plus an append-only log of upserts and deletes. Save only
+ * appends modified keys, log is compacted into snapshot in background when mostly made of
+ * overwritten records, and replayed on load.
+ */
 public class FileWhirlpoolUtxoConfigHandler {
   private static final Logger log = LoggerFactory.getLogger(FileWhirlpoolUtxoConfigHandler.class);
+  private static final String LOG_SUFFIX = ".log";
+  private static final String LOG_COMPACTING_SUFFIX = ".log.compacting";
+  private static final int COMPACT_MIN_RECORDS = 100;
+  private static final double COMPACT_GARBAGE_RATIO = 0.5;
 
   private File file;
+  private File logFile;
+  private File logCompactingFile;
   private final ObjectMapper mapper;
+  private final Executor compactExecutor;
   private ConcurrentHashMap<String, WhirlpoolUtxoConfig> utxoConfigs;
   private Set<String> keysToClean;
-  private long lastSet;
-  private long lastWrite;
-  private Consumer<WhirlpoolUtxoConfig> consumer;
+  private Set<String> keysModified;
+  private FileOutputStream logOutput;
+  private int nbSnapshotRecords;
+  private int nbLogRecords;
+  private boolean compacting;
 
   protected FileWhirlpoolUtxoConfigHandler(File file) {
+    this(file, OrchestratorScheduler.getInstance());
+  }
+
+  protected FileWhirlpoolUtxoConfigHandler(File file, Executor compactExecutor) {
     this.file = file;
+    this.logFile = new File(file.getParent(), file.getName() + LOG_SUFFIX);
+    this.logCompactingFile = new File(file.getParent(), file.getName() + LOG_COMPACTING_SUFFIX);
     this.mapper = new ObjectMapper();
+    this.compactExecutor = compactExecutor;
     this.utxoConfigs = new ConcurrentHashMap<String, WhirlpoolUtxoConfig>();
     this.keysToClean = new HashSet<String>();
-    this.lastSet = 0;
-    this.lastWrite = 0;
-    this.consumer = computeConsumer();
+    this.keysModified = new HashSet<String>();
+    this.logOutput = null;
+    this.nbSnapshotRecords = 0;
+    this.nbLogRecords = 0;
+    this.compacting = false;
   }
 
   protected WhirlpoolUtxoConfig get(String key) {
     return utxoConfigs.get(key);
   }
 
+  protected Map<String, WhirlpoolUtxoConfig> getUtxoConfigs() {
+    return utxoConfigs;
+  }
+
   protected synchronized void add(String key, WhirlpoolUtxoConfig utxoConfig) {
     WhirlpoolUtxoConfig existingUtxoConfig = utxoConfigs.get(key);
     if (existingUtxoConfig != null) {
@@ -53,22 +84,22 @@ public class FileWhirlpoolUtxoConfigHandler {
       WhirlpoolUtxoConfig removed = utxoConfigs.remove(key);
       ((BehaviorSubject<WhirlpoolUtxoConfig>) removed.getObservable()).onComplete();
     }
-    utxoConfig.getObservable().subscribe(consumer);
     utxoConfigs.put(key, utxoConfig);
+    utxoConfig.getObservable().subscribe(computeConsumer(key));
 
-    setLastSet();
+    setModified(key);
   }
 
-  private Consumer<WhirlpoolUtxoConfig> computeConsumer() {
+  private Consumer<WhirlpoolUtxoConfig> computeConsumer(final String key) {
     return new Consumer<WhirlpoolUtxoConfig>() {
       @Override
       public void accept(WhirlpoolUtxoConfig whirlpoolUtxoConfig) throws Exception {
-        setLastSet();
+        setModified(key);
       }
     };
   }
 
-  protected boolean save() throws Exception {
+  protected synchronized boolean save() throws Exception {
     if (!hasModifications()) {
       return false;
     }
@@ -80,37 +111,80 @@ public class FileWhirlpoolUtxoConfigHandler {
 
   private boolean hasModifications() {
     // check for local modifications
-    return (lastSet > lastWrite);
+    return !keysModified.isEmpty();
   }
 
   public synchronized void loadUtxoConfigs(final WhirlpoolWallet whirlpoolWallet) {
     try {
       clearUtxoConfigs();
+      closeLog();
 
+      Map<String, WhirlpoolUtxoConfigPersisted> readValue =
+          new HashMap<String, WhirlpoolUtxoConfigPersisted>();
       if (file.exists() && file.length() > 0) {
-        Map<String, WhirlpoolUtxoConfigPersisted> readValue =
-            mapper.readValue(
-                file, new TypeReference<Map<String, WhirlpoolUtxoConfigPersisted>>() {});
+        readValue.putAll(
+            mapper.<Map<String, WhirlpoolUtxoConfigPersisted>>readValue(
+                file, new TypeReference<Map<String, WhirlpoolUtxoConfigPersisted>>() {}));
         if (log.isDebugEnabled()) {
           log.debug("load: " + readValue.size() + " utxos loaded");
         }
-        // convert to WhirlpoolUtxoConfig
-        for (Entry<String, WhirlpoolUtxoConfigPersisted> entry : readValue.entrySet()) {
-          WhirlpoolUtxoConfig utxoConfig = entry.getValue().toUtxoConfig().copy();
-          add(entry.getKey(), utxoConfig);
-        }
       } else {
         if (log.isDebugEnabled()) {
           log.debug("load: skipping (file empty)");
         }
       }
-      lastSet = 0;
-      lastWrite = 0;
+      nbSnapshotRecords = readValue.size();
+
+      // replay log tail (including log of an interrupted compaction)
+      int nbReplayed = replay(logCompactingFile, readValue) + replay(logFile, readValue);
+
+      // convert to WhirlpoolUtxoConfig
+      for (Entry<String, WhirlpoolUtxoConfigPersisted> entry : readValue.entrySet()) {
+        WhirlpoolUtxoConfig utxoConfig = entry.getValue().toUtxoConfig().copy();
+        add(entry.getKey(), utxoConfig);
+      }
+      keysModified.clear();
+
+      if (nbReplayed > 0) {
+        if (log.isDebugEnabled()) {
+          log.debug("load: " + nbReplayed + " changes replayed from log");
+        }
+        compactNow(readValue);
+      }
     } catch (Exception e) {
       log.warn("load: unable to read " + file.getAbsolutePath(), e);
     }
   }
 
+  private int replay(File replayFile, Map<String, WhirlpoolUtxoConfigPersisted> values)
+      throws Exception {
+    if (!replayFile.exists()) {
+      return 0;
+    }
+    String content = Files.toString(replayFile, Charsets.UTF_8);
+    // ignore last record when not terminated (torn write)
+    String[] lines = content.substring(0, content.lastIndexOf('\n') + 1).split("\n");
+    int nbReplayed = 0;
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      try {
+        WhirlpoolUtxoConfigLogRecord record =
+            mapper.readValue(line, WhirlpoolUtxoConfigLogRecord.class);
+        if (record.getValue() != null) {
+          values.put(record.getKey(), record.getValue());
+        } else {
+          values.remove(record.getKey());
+        }
+        nbReplayed++;
+      } catch (Exception e) {
+        log.warn("load: ignoring invalid log record: " + line);
+      }
+    }
+    return nbReplayed;
+  }
+
   private synchronized void clearUtxoConfigs() {
     StreamSupport.parallelStream(utxoConfigs.values())
         .forEach(
@@ -144,7 +218,7 @@ public class FileWhirlpoolUtxoConfigHandler {
           iter.remove();
           ((BehaviorSubject<WhirlpoolUtxoConfig>) entry.getValue().getObservable()).onComplete();
           knownUtxosKeys.remove(entryKey);
-          setLastSet();
+          setModified(entryKey);
         }
       }
     }
@@ -155,34 +229,109 @@ public class FileWhirlpoolUtxoConfigHandler {
 
   private synchronized void write() throws Exception {
     if (log.isDebugEnabled()) {
-      log.debug("write");
-    }
-    // convert to WhirlpoolUtxoConfigPersisted
-    Map<String, WhirlpoolUtxoConfigPersisted> mapPersisted =
-        StreamSupport.stream(utxoConfigs.entrySet())
-            .collect(
-                Collectors.toMap(
-                    new Function<Entry<String, WhirlpoolUtxoConfig>, String>() {
-                      @Override
-                      public String apply(Entry<String, WhirlpoolUtxoConfig> entry) {
-                        return entry.getKey();
-                      }
-                    },
-                    new Function<
-                        Entry<String, WhirlpoolUtxoConfig>, WhirlpoolUtxoConfigPersisted>() {
-                      @Override
-                      public WhirlpoolUtxoConfigPersisted apply(
-                          Entry<String, WhirlpoolUtxoConfig> entry) {
-                        return new WhirlpoolUtxoConfigPersisted(entry.getValue());
-                      }
-                    }));
-
-    // write
-    ClientUtils.safeWriteValue(mapper, mapPersisted, file);
-    lastWrite = System.currentTimeMillis();
-  }
-
-  public void setLastSet() {
-    lastSet = System.currentTimeMillis();
+      log.debug("write: " + keysModified.size() + " modified");
+    }
+    // append modified keys to log
+    StringBuilder records = new StringBuilder();
+    for (String key : keysModified) {
+      WhirlpoolUtxoConfig utxoConfig = utxoConfigs.get(key);
+      WhirlpoolUtxoConfigPersisted value =
+          utxoConfig != null ? new WhirlpoolUtxoConfigPersisted(utxoConfig) : null;
+      records.append(mapper.writeValueAsString(new WhirlpoolUtxoConfigLogRecord(key, value)));
+      records.append('\n');
+    }
+    try {
+      if (logOutput == null) {
+        logOutput = new FileOutputStream(logFile, true);
+      }
+      logOutput.write(records.toString().getBytes(Charsets.UTF_8));
+      logOutput.flush();
+    } catch (Exception e) {
+      closeLog();
+      throw e;
+    }
+    nbLogRecords += keysModified.size();
+    keysModified.clear();
+
+    if (isCompactNeeded()) {
+      compactAsync();
+    }
+  }
+
+  private boolean isCompactNeeded() {
+    if (compacting || nbLogRecords < COMPACT_MIN_RECORDS) {
+      return false;
+    }
+    // records overwritten by later records
+    int nbRecords = nbSnapshotRecords + nbLogRecords;
+    int nbGarbage = nbRecords - utxoConfigs.size();
+    return nbGarbage > nbRecords * COMPACT_GARBAGE_RATIO;
+  }
+
+  private void compactAsync() throws Exception {
+    if (logCompactingFile.exists()) {
+      // previous compaction failed, don't overwrite its log
+      compactNow(computeSnapshot());
+      return;
+    }
+    // new changes go to a new log while snapshot is written
+    closeLog();
+    if (!logFile.renameTo(logCompactingFile)) {
+      log.error("Unable to rename file " + logFile.getAbsolutePath());
+      return;
+    }
+    final Map<String, WhirlpoolUtxoConfigPersisted> snapshot = computeSnapshot();
+    nbSnapshotRecords = snapshot.size();
+    nbLogRecords = 0;
+    compacting = true;
+    compactExecutor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              ClientUtils.safeWriteValue(mapper, snapshot, file);
+              // compacted log is now useless, but harmless to replay if still there
+              logCompactingFile.delete();
+            } catch (Exception e) {
+              log.error("Unable to write file " + file.getAbsolutePath(), e);
+            }
+            synchronized (FileWhirlpoolUtxoConfigHandler.this) {
+              compacting = false;
+            }
+          }
+        });
+  }
+
+  private void compactNow(Map<String, WhirlpoolUtxoConfigPersisted> snapshot) throws Exception {
+    closeLog();
+    ClientUtils.safeWriteValue(mapper, snapshot, file);
+    logCompactingFile.delete();
+    logFile.delete();
+    nbSnapshotRecords = snapshot.size();
+    nbLogRecords = 0;
+  }
+
+  private Map<String, WhirlpoolUtxoConfigPersisted> computeSnapshot() {
+    Map<String, WhirlpoolUtxoConfigPersisted> snapshot =
+        new HashMap<String, WhirlpoolUtxoConfigPersisted>();
+    for (Entry<String, WhirlpoolUtxoConfig> entry : utxoConfigs.entrySet()) {
+      snapshot.put(entry.getKey(), new WhirlpoolUtxoConfigPersisted(entry.getValue()));
+    }
+    return snapshot;
+  }
+
+  private void closeLog() {
+    if (logOutput != null) {
+      try {
+        logOutput.close();
+      } catch (Exception e) {
+        log.error("", e);
+      }
+      logOutput = null;
+    }
+  }
+
+  private synchronized void setModified(String key) {
+    keysModified.add(key);
   }
 }
@@ -1,10 +1,11 @@
 package com.samourai.whirlpool.client.wallet.persist;
 
-import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
 import com.samourai.wallet.client.indexHandler.FileIndexHandler;
 import com.samourai.wallet.client.indexHandler.IIndexHandler;
+import com.samourai.wallet.client.indexHandler.JournalDurability;
 import com.samourai.whirlpool.client.utils.ClientUtils;
 import com.samourai.whirlpool.client.wallet.WhirlpoolWallet;
+import com.samourai.whirlpool.client.wallet.beans.UtxoKey;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoConfig;
 import java.io.File;
@@ -23,7 +24,12 @@ public class FileWhirlpoolWalletPersistHandler implements WhirlpoolWalletPersist
   private FileWhirlpoolUtxoConfigHandler fileUtxoConfigHandler;
 
   public FileWhirlpoolWalletPersistHandler(File fileIndex, File fileUtxo) {
-    this.fileIndexHandler = new FileIndexHandler(fileIndex);
+    this(fileIndex, fileUtxo, JournalDurability.WRITE);
+  }
+
+  public FileWhirlpoolWalletPersistHandler(
+      File fileIndex, File fileUtxo, JournalDurability indexDurability) {
+    this.fileIndexHandler = new FileIndexHandler(fileIndex, indexDurability);
     this.fileUtxoConfigHandler = new FileWhirlpoolUtxoConfigHandler(fileUtxo);
   }
 
@@ -58,7 +64,12 @@ public class FileWhirlpoolWalletPersistHandler implements WhirlpoolWalletPersist
 
   @Override
   public WhirlpoolUtxoConfig getUtxoConfig(String utxoHash, int utxoIndex) {
-    String persistKey = computeUtxoConfigKey(utxoHash, utxoIndex);
+    return getUtxoConfig(new UtxoKey(utxoHash, utxoIndex));
+  }
+
+  @Override
+  public WhirlpoolUtxoConfig getUtxoConfig(UtxoKey utxoKey) {
+    String persistKey = utxoKey.getPersistKey();
     return fileUtxoConfigHandler.get(persistKey);
   }
 
@@ -70,7 +81,12 @@ public class FileWhirlpoolWalletPersistHandler implements WhirlpoolWalletPersist
 
   @Override
   public void addUtxoConfig(String utxoHash, int utxoIndex, WhirlpoolUtxoConfig value) {
-    String persistKey = computeUtxoConfigKey(utxoHash, utxoIndex);
+    addUtxoConfig(new UtxoKey(utxoHash, utxoIndex), value);
+  }
+
+  @Override
+  public void addUtxoConfig(UtxoKey utxoKey, WhirlpoolUtxoConfig value) {
+    String persistKey = utxoKey.getPersistKey();
     fileUtxoConfigHandler.add(persistKey, value);
   }
 
@@ -84,19 +100,24 @@ public class FileWhirlpoolWalletPersistHandler implements WhirlpoolWalletPersist
   public void cleanUtxoConfig(Collection<WhirlpoolUtxo> knownUtxos) {
     Set<String> knownUtxoKeys = new HashSet<String>();
     for (WhirlpoolUtxo whirlpoolUtxo : knownUtxos) {
-      UnspentOutput utxo = whirlpoolUtxo.getUtxo();
-      knownUtxoKeys.add(computeUtxoConfigKey(utxo.tx_hash, utxo.tx_output_n));
+      knownUtxoKeys.add(whirlpoolUtxo.getUtxoKey().getPersistKey());
     }
     fileUtxoConfigHandler.clean(knownUtxoKeys);
   }
 
   @Override
   public void save() throws Exception {
+    fileIndexHandler.flush();
     fileUtxoConfigHandler.save();
   }
 
-  private String computeUtxoConfigKey(String utxoHash, int utxoIndex) {
-    return ClientUtils.sha256Hash(ClientUtils.utxoToKey(utxoHash, utxoIndex));
+  @Override
+  public void close() throws Exception {
+    try {
+      fileUtxoConfigHandler.save();
+    } finally {
+      fileIndexHandler.close();
+    }
   }
 
   private String computeUtxoConfigKey(String utxoHash) {
@@ -0,0 +1,32 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+import com.samourai.wallet.client.indexHandler.AbstractIndexHandler;
+
+public class KeyValueIndexHandler extends AbstractIndexHandler {
+  private KeyValueWhirlpoolWalletPersistHandler persistHandler;
+  private String key;
+  private int defaultValue;
+
+  public KeyValueIndexHandler(
+      KeyValueWhirlpoolWalletPersistHandler persistHandler, String key, int defaultValue) {
+    super();
+    this.persistHandler = persistHandler;
+    this.key = key;
+    this.defaultValue = defaultValue;
+  }
+
+  @Override
+  public int get() {
+    return persistHandler.getIndex(key, defaultValue);
+  }
+
+  @Override
+  public synchronized int getAndIncrement() {
+    return persistHandler.getAndIncrementIndex(key, defaultValue);
+  }
+
+  @Override
+  public synchronized void set(int value) {
+    persistHandler.setIndex(key, value);
+  }
+}
@@ -0,0 +1,323 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samourai.wallet.client.indexHandler.FileIndexHandler;
+import com.samourai.wallet.client.indexHandler.IIndexHandler;
+import com.samourai.whirlpool.client.utils.ClientUtils;
+import com.samourai.whirlpool.client.wallet.WhirlpoolWallet;
+import com.samourai.whirlpool.client.wallet.beans.UtxoKey;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoConfig;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.BehaviorSubject;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists indexes and utxo configs in a {@link FileKeyValueStore}. Utxo configs are read from
+ * store when requested and only utxo configs in use are kept in memory: configs of unknown utxos
+ * are evicted on cleanup. Memory use still grows with the number of stored utxos, as the store
+ * keeps each key in memory. Index changes are committed immediately, utxo config changes on save().
+ */
+public class KeyValueWhirlpoolWalletPersistHandler implements WhirlpoolWalletPersistHandler {
+  private static final Logger log =
+      LoggerFactory.getLogger(KeyValueWhirlpoolWalletPersistHandler.class);
+  private static final String INDEX_INITIALIZED = "init";
+  private static final String PREFIX_INDEX = "index/";
+  private static final String PREFIX_UTXO = "utxo/";
+  private static final String KEY_MIGRATED = "migrated";
+
+  private FileKeyValueStore store;
+  private final ObjectMapper mapper;
+  private ConcurrentHashMap<String, WhirlpoolUtxoConfig> utxoConfigs;
+  private Set<String> keysToClean;
+  private Set<String> keysModified;
+
+  public KeyValueWhirlpoolWalletPersistHandler(File fileStore) throws IOException {
+    this.store = new FileKeyValueStore(fileStore);
+    this.mapper = new ObjectMapper();
+    this.utxoConfigs = new ConcurrentHashMap<String, WhirlpoolUtxoConfig>();
+    this.keysToClean = new HashSet<String>();
+    this.keysModified = new HashSet<String>();
+  }
+
+  /** Open store, migrating from FileWhirlpoolWalletPersistHandler files when store is new. */
+  public KeyValueWhirlpoolWalletPersistHandler(File fileStore, File fileIndex, File fileUtxo)
+      throws IOException {
+    this(fileStore);
+    if (store.isEmpty()) {
+      migrate(fileIndex, fileUtxo);
+    }
+  }
+
+  private void migrate(File fileIndex, File fileUtxo) throws IOException {
+    int nbIndexes = 0;
+    if (FileIndexHandler.exists(fileIndex)) {
+      FileIndexHandler fileIndexHandler = new FileIndexHandler(fileIndex);
+      for (Entry<String, Integer> entry : fileIndexHandler.getIndexes().entrySet()) {
+        store.put(PREFIX_INDEX + entry.getKey(), Integer.toString(entry.getValue()));
+        nbIndexes++;
+      }
+      fileIndexHandler.close();
+    }
+    // snapshot may not exist yet when changes are only in its log
+    int nbUtxos = 0;
+    FileWhirlpoolUtxoConfigHandler fileUtxoConfigHandler =
+        new FileWhirlpoolUtxoConfigHandler(fileUtxo);
+    fileUtxoConfigHandler.loadUtxoConfigs(null);
+    for (Entry<String, WhirlpoolUtxoConfig> entry :
+        fileUtxoConfigHandler.getUtxoConfigs().entrySet()) {
+      store.put(PREFIX_UTXO + entry.getKey(), writeUtxoConfig(entry.getValue()));
+      nbUtxos++;
+    }
+    store.put(KEY_MIGRATED, Long.toString(System.currentTimeMillis()));
+    store.commit();
+    log.info("migrate: " + nbIndexes + " indexes, " + nbUtxos + " utxos migrated");
+  }
+
+  // --- IndexHandler
+
+  @Override
+  public IIndexHandler getIndexHandler(String key) {
+    return getIndexHandler(key, IIndexHandler.DEFAULT_VALUE);
+  }
+
+  @Override
+  public IIndexHandler getIndexHandler(String key, int defaultValue) {
+    return new KeyValueIndexHandler(this, key, defaultValue);
+  }
+
+  @Override
+  public boolean isInitialized() {
+    return getIndex(INDEX_INITIALIZED, 0) == 1;
+  }
+
+  @Override
+  public void setInitialized(boolean value) {
+    setIndex(INDEX_INITIALIZED, 1);
+  }
+
+  protected synchronized int getIndex(String key, int defaultValue) {
+    try {
+      String value = store.get(PREFIX_INDEX + key);
+      return value != null ? Integer.parseInt(value) : defaultValue;
+    } catch (IOException e) {
+      // don't risk reusing an index
+      throw new RuntimeException("Unable to read index " + key, e);
+    }
+  }
+
+  protected synchronized int getAndIncrementIndex(String key, int defaultValue) {
+    int value = getIndex(key, defaultValue);
+    setIndex(key, value + 1);
+    return value;
+  }
+
+  protected synchronized void setIndex(String key, int value) {
+    store.put(PREFIX_INDEX + key, Integer.toString(value));
+    try {
+      store.commit();
+    } catch (IOException e) {
+      // don't risk reusing an index
+      throw new RuntimeException("Unable to write index " + key, e);
+    }
+  }
+
+  // --- UtxoConfig
+
+  @Override
+  public synchronized void loadUtxoConfigs(WhirlpoolWallet whirlpoolWallet) {
+    // utxo configs are read on demand
+    for (WhirlpoolUtxoConfig utxoConfig : utxoConfigs.values()) {
+      ((BehaviorSubject<WhirlpoolUtxoConfig>) utxoConfig.getObservable()).onComplete();
+    }
+    utxoConfigs.clear();
+    keysModified.clear();
+  }
+
+  @Override
+  public WhirlpoolUtxoConfig getUtxoConfig(String utxoHash, int utxoIndex) {
+    return getUtxoConfig(new UtxoKey(utxoHash, utxoIndex));
+  }
+
+  @Override
+  public WhirlpoolUtxoConfig getUtxoConfig(UtxoKey utxoKey) {
+    String persistKey = utxoKey.getPersistKey();
+    return get(persistKey);
+  }
+
+  @Override
+  public WhirlpoolUtxoConfig getUtxoConfig(String utxoHash) {
+    String persistKey = computeUtxoConfigKey(utxoHash);
+    return get(persistKey);
+  }
+
+  @Override
+  public void addUtxoConfig(String utxoHash, int utxoIndex, WhirlpoolUtxoConfig value) {
+    addUtxoConfig(new UtxoKey(utxoHash, utxoIndex), value);
+  }
+
+  @Override
+  public void addUtxoConfig(UtxoKey utxoKey, WhirlpoolUtxoConfig value) {
+    String persistKey = utxoKey.getPersistKey();
+    add(persistKey, value);
+  }
+
+  @Override
+  public void addUtxoConfig(String utxoHash, WhirlpoolUtxoConfig value) {
+    String persistKey = computeUtxoConfigKey(utxoHash);
+    add(persistKey, value);
+  }
+
+  @Override
+  public synchronized void cleanUtxoConfig(Collection<WhirlpoolUtxo> knownUtxos) {
+    Set<String> knownUtxoKeys = new HashSet<String>();
+    for (WhirlpoolUtxo whirlpoolUtxo : knownUtxos) {
+      knownUtxoKeys.add(whirlpoolUtxo.getUtxoKey().getPersistKey());
+    }
+
+    // utxo configs in memory or on disk
+    Set<String> keys = new HashSet<String>(utxoConfigs.keySet());
+    keys.addAll(getStoredUtxoKeys());
+
+    Set<String> obsoleteKeys = new HashSet<String>();
+    int nbObsoleted = 0;
+    int nbEvicted = 0;
+    int nbRemoved = 0;
+    for (String key : keys) {
+      if (!knownUtxoKeys.contains(key)) {
+        // entry is obsolete
+        if (!keysToClean.contains(key)) {
+          // mark entry to clean next time
+          nbObsoleted++;
+          obsoleteKeys.add(key);
+          if (!keysModified.contains(key) && evict(key)) {
+            // not in use, read again from store if needed
+            nbEvicted++;
+          }
+        } else {
+          // clean now
+          nbRemoved++;
+          evict(key);
+          keysModified.add(key);
+        }
+      }
+    }
+    // entries in use again are not obsolete anymore
+    keysToClean = obsoleteKeys;
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "utxos cleanup: "
+              + nbObsoleted
+              + " obsolete ("
+              + nbEvicted
+              + " evicted), "
+              + nbRemoved
+              + " removed");
+    }
+  }
+
+  private boolean evict(String key) {
+    WhirlpoolUtxoConfig removed = utxoConfigs.remove(key);
+    if (removed == null) {
+      return false;
+    }
+    ((BehaviorSubject<WhirlpoolUtxoConfig>) removed.getObservable()).onComplete();
+    return true;
+  }
+
+  private Set<String> getStoredUtxoKeys() {
+    Set<String> storedUtxoKeys = new HashSet<String>();
+    for (String storeKey : store.keys(PREFIX_UTXO)) {
+      storedUtxoKeys.add(storeKey.substring(PREFIX_UTXO.length()));
+    }
+    return storedUtxoKeys;
+  }
+
+  @Override
+  public synchronized void save() throws Exception {
+    if (keysModified.isEmpty()) {
+      return;
+    }
+    for (String key : keysModified) {
+      WhirlpoolUtxoConfig utxoConfig = utxoConfigs.get(key);
+      if (utxoConfig != null) {
+        store.put(PREFIX_UTXO + key, writeUtxoConfig(utxoConfig));
+      } else {
+        store.delete(PREFIX_UTXO + key);
+      }
+    }
+    store.commit();
+    keysModified.clear();
+  }
+
+  @Override
+  public synchronized void close() throws Exception {
+    save();
+    store.close();
+  }
+
+  private synchronized WhirlpoolUtxoConfig get(String key) {
+    WhirlpoolUtxoConfig utxoConfig = utxoConfigs.get(key);
+    if (utxoConfig != null) {
+      return utxoConfig;
+    }
+    try {
+      String value = store.get(PREFIX_UTXO + key);
+      if (value == null) {
+        return null;
+      }
+      utxoConfig =
+          mapper.readValue(value, WhirlpoolUtxoConfigPersisted.class).toUtxoConfig().copy();
+    } catch (Exception e) {
+      log.error("Unable to read utxoConfig " + key, e);
+      return null;
+    }
+    track(key, utxoConfig);
+    return utxoConfig;
+  }
+
+  private synchronized void add(String key, WhirlpoolUtxoConfig utxoConfig) {
+    WhirlpoolUtxoConfig existingUtxoConfig = utxoConfigs.get(key);
+    if (existingUtxoConfig != null) {
+      // should never happen...
+      log.warn("add(" + key + "): utxoConfig already exists!");
+      WhirlpoolUtxoConfig removed = utxoConfigs.remove(key);
+      ((BehaviorSubject<WhirlpoolUtxoConfig>) removed.getObservable()).onComplete();
+    }
+    track(key, utxoConfig);
+    keysModified.add(key);
+  }
+
+  private void track(final String key, WhirlpoolUtxoConfig utxoConfig) {
+    utxoConfigs.put(key, utxoConfig);
+    utxoConfig
+        .getObservable()
+        .subscribe(
+            new Consumer<WhirlpoolUtxoConfig>() {
+              @Override
+              public void accept(WhirlpoolUtxoConfig whirlpoolUtxoConfig) throws Exception {
+                setModified(key);
+              }
+            });
+  }
+
+  private synchronized void setModified(String key) {
+    keysModified.add(key);
+  }
+
+  private String writeUtxoConfig(WhirlpoolUtxoConfig utxoConfig) throws IOException {
+    return mapper.writeValueAsString(new WhirlpoolUtxoConfigPersisted(utxoConfig));
+  }
+
+  private String computeUtxoConfigKey(String utxoHash) {
+    return ClientUtils.sha256Hash(utxoHash);
+  }
+}
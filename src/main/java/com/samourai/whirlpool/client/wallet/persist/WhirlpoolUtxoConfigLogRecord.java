@@ -0,0 +1,23 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+public class WhirlpoolUtxoConfigLogRecord {
+  private String key;
+  private WhirlpoolUtxoConfigPersisted value; // null when removed
+
+  public WhirlpoolUtxoConfigLogRecord() {
+    this(null, null);
+  }
+
+  public WhirlpoolUtxoConfigLogRecord(String key, WhirlpoolUtxoConfigPersisted value) {
+    this.key = key;
+    this.value = value;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public WhirlpoolUtxoConfigPersisted getValue() {
+    return value;
+  }
+}
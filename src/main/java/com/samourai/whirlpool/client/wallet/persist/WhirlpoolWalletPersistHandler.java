@@ -2,6 +2,7 @@ package com.samourai.whirlpool.client.wallet.persist;
 
 import com.samourai.wallet.client.indexHandler.IIndexHandler;
 import com.samourai.whirlpool.client.wallet.WhirlpoolWallet;
+import com.samourai.whirlpool.client.wallet.beans.UtxoKey;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoConfig;
 import java.util.Collection;
@@ -24,13 +25,20 @@ public interface WhirlpoolWalletPersistHandler {
 
   WhirlpoolUtxoConfig getUtxoConfig(String utxoHash, int utxoIndex);
 
+  WhirlpoolUtxoConfig getUtxoConfig(UtxoKey utxoKey);
+
   WhirlpoolUtxoConfig getUtxoConfig(String utxoHash);
 
   void addUtxoConfig(String utxoHash, int utxoIndex, WhirlpoolUtxoConfig value);
 
+  void addUtxoConfig(UtxoKey utxoKey, WhirlpoolUtxoConfig value);
+
   void addUtxoConfig(String utxoHash, WhirlpoolUtxoConfig value);
 
   void cleanUtxoConfig(Collection<WhirlpoolUtxo> knownUtxos);
 
   void save() throws Exception;
+
+  /** Save and release resources, when wallet is closed. */
+  void close() throws Exception;
 }
@@ -0,0 +1,84 @@
+package com.samourai.whirlpool.client.whirlpool;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared executor handling inbound mix messages (in order for each MixSession). Handling is
+ * CPU-bound (blinding, signing): blocking I/O runs on WhirlpoolClientExecutor instead, so that a
+ * slow connection doesn't delay messages of other mixs.
+ */
+public class MixMessageExecutor implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(MixMessageExecutor.class);
+
+  private static MixMessageExecutor instance;
+
+  private final ThreadPoolExecutor executor;
+
+  public static synchronized MixMessageExecutor getInstance() {
+    if (instance == null) {
+      int nbThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+      instance = new MixMessageExecutor(nbThreads);
+    }
+    return instance;
+  }
+
+  public MixMessageExecutor(int nbThreads) {
+    this.executor =
+        new ThreadPoolExecutor(
+            nbThreads,
+            nbThreads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            computeThreadFactory());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  private static ThreadFactory computeThreadFactory() {
+    return new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "mixMessage-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              task.run();
+            } catch (Throwable e) {
+              // executor would silently swallow it
+              log.error("", e);
+            }
+          }
+        });
+  }
+
+  public int getNbThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public int getNbQueued() {
+    return executor.getQueue().size();
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -4,8 +4,12 @@ import com.samourai.http.client.HttpUsage;
 import com.samourai.http.client.IHttpClient;
 import com.samourai.http.client.IHttpClientService;
 import com.samourai.stomp.client.IStompClientService;
+import com.samourai.stomp.client.StompTransportPool;
 import com.samourai.whirlpool.client.WhirlpoolClient;
+import com.samourai.whirlpool.client.mix.dialog.MixReconnectScheduler;
+import com.samourai.whirlpool.client.mix.metrics.MixMetrics;
 import com.samourai.whirlpool.client.wallet.persist.WhirlpoolWalletPersistHandler;
+import java.util.concurrent.Executor;
 import org.bitcoinj.core.NetworkParameters;
 
 public class WhirlpoolClientConfig {
@@ -17,7 +21,14 @@ public class WhirlpoolClientConfig {
   private boolean mobile;
   private int reconnectDelay;
   private int reconnectUntil;
+  private int reconnectDelayMax;
+  private MixReconnectScheduler reconnectScheduler;
   private String scode;
+  private Executor clientExecutor;
+  private Executor messageExecutor;
+  private MixMetrics mixMetrics;
+  private int stompTransportSpares;
+  private StompTransportPool stompTransportPool; // lazy
 
   public WhirlpoolClientConfig(
       IHttpClientService httpClientService,
@@ -56,7 +67,14 @@ public class WhirlpoolClientConfig {
     this.mobile = mobile;
     this.reconnectDelay = reconnectDelay;
     this.reconnectUntil = reconnectUntil;
+    this.reconnectDelayMax = 120; // backoff ceiling
+    this.reconnectScheduler = MixReconnectScheduler.getInstance(); // shared by all clients
     this.scode = scode;
+    this.clientExecutor = WhirlpoolClientExecutor.getInstance(); // shared by all clients
+    this.messageExecutor = MixMessageExecutor.getInstance(); // shared by all clients
+    this.mixMetrics = new MixMetrics();
+    this.stompTransportSpares = 0; // per pool, connected ahead of mixs (0 to disable)
+    this.stompTransportPool = null;
   }
 
   public WhirlpoolClient newClient() {
@@ -115,6 +133,22 @@ public class WhirlpoolClientConfig {
     this.reconnectUntil = reconnectUntil;
   }
 
+  public int getReconnectDelayMax() {
+    return reconnectDelayMax;
+  }
+
+  public void setReconnectDelayMax(int reconnectDelayMax) {
+    this.reconnectDelayMax = reconnectDelayMax;
+  }
+
+  public MixReconnectScheduler getReconnectScheduler() {
+    return reconnectScheduler;
+  }
+
+  public void setReconnectScheduler(MixReconnectScheduler reconnectScheduler) {
+    this.reconnectScheduler = reconnectScheduler;
+  }
+
   public String getScode() {
     return scode;
   }
@@ -122,4 +156,51 @@ public class WhirlpoolClientConfig {
   public void setScode(String scode) {
     this.scode = scode;
   }
+
+  public Executor getClientExecutor() {
+    return clientExecutor;
+  }
+
+  public void setClientExecutor(Executor clientExecutor) {
+    this.clientExecutor = clientExecutor;
+  }
+
+  public Executor getMessageExecutor() {
+    return messageExecutor;
+  }
+
+  public void setMessageExecutor(Executor messageExecutor) {
+    this.messageExecutor = messageExecutor;
+  }
+
+  public MixMetrics getMixMetrics() {
+    return mixMetrics;
+  }
+
+  public void setMixMetrics(MixMetrics mixMetrics) {
+    this.mixMetrics = mixMetrics;
+  }
+
+  public synchronized int getStompTransportSpares() {
+    return stompTransportSpares;
+  }
+
+  public synchronized void setStompTransportSpares(int stompTransportSpares) {
+    this.stompTransportSpares = stompTransportSpares;
+    if (stompTransportPool != null) {
+      stompTransportPool.setSpares(stompTransportSpares);
+    }
+  }
+
+  /** @return pool of spare transports, or null when disabled */
+  public synchronized StompTransportPool getStompTransportPool() {
+    if (stompTransportPool == null && stompTransportSpares > 0) {
+      stompTransportPool = new StompTransportPool(stompClientService, stompTransportSpares);
+    }
+    return stompTransportPool;
+  }
+
+  public synchronized void setStompTransportPool(StompTransportPool stompTransportPool) {
+    this.stompTransportPool = stompTransportPool;
+  }
 }
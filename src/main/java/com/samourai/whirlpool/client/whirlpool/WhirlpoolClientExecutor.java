@@ -0,0 +1,83 @@
+package com.samourai.whirlpool.client.whirlpool;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared executor running whirlpool clients tasks (connect, stop). Mixes are then driven by
+ * protocol callbacks, so thread count doesn't grow with the number of concurrent mixs.
+ */
+public class WhirlpoolClientExecutor implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(WhirlpoolClientExecutor.class);
+  private static final int NB_THREADS_DEFAULT = 4;
+
+  private static WhirlpoolClientExecutor instance;
+
+  private final ThreadPoolExecutor executor;
+
+  public static synchronized WhirlpoolClientExecutor getInstance() {
+    if (instance == null) {
+      instance = new WhirlpoolClientExecutor(NB_THREADS_DEFAULT);
+    }
+    return instance;
+  }
+
+  public WhirlpoolClientExecutor(int nbThreads) {
+    this.executor =
+        new ThreadPoolExecutor(
+            nbThreads,
+            nbThreads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            computeThreadFactory());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  private static ThreadFactory computeThreadFactory() {
+    return new ThreadFactory() {
+      private final AtomicInteger threadId = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "whirlpoolClient-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              task.run();
+            } catch (Throwable e) {
+              // executor would silently swallow it
+              log.error("", e);
+            }
+          }
+        });
+  }
+
+  public int getNbThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public int getNbQueued() {
+    return executor.getQueue().size();
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
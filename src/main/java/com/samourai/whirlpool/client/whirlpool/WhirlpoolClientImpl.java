@@ -20,7 +20,7 @@ public class WhirlpoolClientImpl implements WhirlpoolClient {
   private String logPrefix;
 
   private MixClient mixClient;
-  private Thread mixThread;
+  private MixFailReason stopReason; // stopped before connecting
   private WhirlpoolClientListener listener;
 
   /**
@@ -47,31 +47,34 @@ public class WhirlpoolClientImpl implements WhirlpoolClient {
   public void whirlpool(final MixParams mixParams, WhirlpoolClientListener listener) {
     this.listener = listener;
 
-    this.mixThread =
-        new Thread(
+    // connect as a task, mix is then driven by protocol callbacks
+    config
+        .getClientExecutor()
+        .execute(
             new Runnable() {
               @Override
-              public synchronized void run() {
+              public void run() {
                 runClient(mixParams);
-                while (!done) {
-                  try {
-                    synchronized (mixThread) {
-                      mixThread.wait();
-                    }
-                  } catch (Exception e) {
-                  }
-                }
               }
-            },
-            "whirlpoolClient-" + logPrefix);
-    this.mixThread.setDaemon(true);
-    this.mixThread.start();
+            });
   }
 
   private void runClient(MixParams mixParams) {
-    MixClientListener mixListener = computeMixListener();
+    MixFailReason stopReason;
+    synchronized (this) {
+      stopReason = this.stopReason;
+      if (stopReason == null) {
+        mixClient = new MixClient(config, logPrefix);
+      }
+    }
+    if (stopReason != null) {
+      // stopped before connecting
+      listener.fail(stopReason, null);
+      disconnect();
+      return;
+    }
 
-    mixClient = new MixClient(config, logPrefix);
+    MixClientListener mixListener = computeMixListener();
     mixClient.whirlpool(mixParams, mixListener);
   }
 
@@ -99,6 +102,13 @@ public class WhirlpoolClientImpl implements WhirlpoolClient {
 
   @Override
   public void stop(boolean cancel) {
+    synchronized (this) {
+      if (mixClient == null) {
+        // not connected yet
+        stopReason = cancel ? MixFailReason.CANCEL : MixFailReason.STOP;
+        return;
+      }
+    }
     mixClient.stop(cancel);
   }
 
@@ -111,11 +121,6 @@ public class WhirlpoolClientImpl implements WhirlpoolClient {
       if (mixClient != null) {
         mixClient.disconnect();
       }
-      if (mixThread != null) {
-        synchronized (mixThread) {
-          mixThread.notify();
-        }
-      }
     }
   }
 
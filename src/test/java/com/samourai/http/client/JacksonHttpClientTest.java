@@ -0,0 +1,258 @@
+package com.samourai.http.client;
+
+import com.samourai.wallet.api.backend.beans.HttpException;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class JacksonHttpClientTest extends AbstractTest {
+  private static final String RESPONSE = "{\"foo\":\"bar\"}";
+
+  private HttpMetrics httpMetrics;
+  private JacksonHttpClient httpClient;
+  private boolean fail;
+  private String response;
+
+  public JacksonHttpClientTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() {
+    httpMetrics = new HttpMetrics();
+    fail = false;
+    response = RESPONSE;
+    httpClient =
+        new JacksonHttpClient(HttpUsage.BACKEND) {
+          @Override
+          protected String requestJsonGet(String urlStr, Map<String, String> headers)
+              throws Exception {
+            if (fail) {
+              throw new IOException("test");
+            }
+            return response;
+          }
+
+          @Override
+          protected String requestJsonPost(
+              String urlStr, Map<String, String> headers, String jsonBody) throws Exception {
+            return RESPONSE;
+          }
+
+          @Override
+          protected String requestJsonPostUrlEncoded(
+              String urlStr, Map<String, String> headers, Map<String, String> body)
+              throws Exception {
+            return RESPONSE;
+          }
+
+          @Override
+          public void connect() throws Exception {}
+        };
+    httpClient.setHttpMetrics(httpMetrics);
+  }
+
+  @Test
+  public void metrics() throws Exception {
+    httpClient.getJson("http://host/v2/unspent?active=vpub5foo", Map.class, null);
+    httpClient.getJson("http://host/v2/unspent?active=vpub5bar", Map.class, null);
+    fail = true;
+    try {
+      httpClient.getJson("http://host/v2/unspent?active=vpub5bar", Map.class, null);
+      Assertions.fail();
+    } catch (HttpException e) {
+      // expected
+    }
+    Map<String, String> body = new HashMap<String, String>();
+    body.put("tx", "0100");
+    httpClient.postUrlEncoded("http://host/v2/pushtx/", Map.class, null, body);
+
+    HttpEndpointMetrics getMetrics =
+        httpMetrics.getEndpointMetrics(HttpUsage.BACKEND, "GET", "/v2/unspent");
+    Assertions.assertEquals(3, getMetrics.getNbRequests());
+    Assertions.assertEquals(1, getMetrics.getNbErrors());
+    Assertions.assertEquals(1, getMetrics.getNbErrorsByClass().get("IOException").longValue());
+    Assertions.assertEquals(3, getMetrics.getLatency().getCount());
+    Assertions.assertEquals(2 * RESPONSE.length(), getMetrics.getResponseBytes());
+
+    HttpEndpointMetrics postMetrics =
+        httpMetrics.getEndpointMetrics(HttpUsage.BACKEND, "POST", "/v2/pushtx/");
+    Assertions.assertEquals(1, postMetrics.getNbRequests());
+    Assertions.assertEquals(6, postMetrics.getRequestBytes());
+
+    // separated by usage
+    Assertions.assertNull(
+        httpMetrics.getEndpointMetrics(HttpUsage.COORDINATOR_REST, "GET", "/v2/unspent"));
+    Assertions.assertNull(httpMetrics.getEndpointMetrics(null, "GET", "/v2/unspent"));
+    Assertions.assertSame(
+        getMetrics,
+        httpMetrics.computeEndpointMetrics(HttpUsage.BACKEND, "GET", "http://host/v2/unspent"));
+  }
+
+  @Test
+  public void stringResponse() throws Exception {
+    // String from subclass is returned as is
+    Assertions.assertSame(
+        RESPONSE, httpClient.getJson("http://host/rest/pools", String.class, null));
+    Map result = httpClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertEquals("bar", result.get("foo"));
+
+    // null body
+    response = null;
+    Assertions.assertNull(httpClient.getJson("http://host/rest/pools", String.class, null));
+  }
+
+  @Test
+  public void streaming() throws Exception {
+    JacksonHttpClient streamingClient =
+        new JacksonHttpClient(HttpUsage.BACKEND) {
+          @Override
+          protected InputStream requestStreamGet(String urlStr, Map<String, String> headers) {
+            return new ByteArrayInputStream(RESPONSE.getBytes());
+          }
+
+          @Override
+          protected String requestJsonGet(String urlStr, Map<String, String> headers) {
+            throw new IllegalStateException("should not be called");
+          }
+
+          @Override
+          protected String requestJsonPost(
+              String urlStr, Map<String, String> headers, String jsonBody) {
+            throw new IllegalStateException("should not be called");
+          }
+
+          @Override
+          protected String requestJsonPostUrlEncoded(
+              String urlStr, Map<String, String> headers, Map<String, String> body) {
+            throw new IllegalStateException("should not be called");
+          }
+
+          @Override
+          public void connect() throws Exception {}
+        };
+    streamingClient.setHttpMetrics(httpMetrics);
+
+    Map result = streamingClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertEquals("bar", result.get("foo"));
+    Assertions.assertEquals(
+        RESPONSE, streamingClient.getJson("http://host/rest/pools", String.class, null));
+    Assertions.assertEquals(
+        2 * RESPONSE.length(),
+        httpMetrics.getEndpointMetrics(HttpUsage.BACKEND, "GET", "/rest/pools").getResponseBytes());
+  }
+
+  @Test
+  public void conditionalGet() throws Exception {
+    final String[] etag = new String[] {"v1"};
+    JacksonHttpClient conditionalClient =
+        newConditionalClient(HttpUsage.COORDINATOR_REST, etag, new ArrayList<String>());
+    HttpResponseCache responseCache = new HttpResponseCache(HttpUsage.COORDINATOR_REST);
+    conditionalClient.setResponseCache(responseCache);
+
+    // full response, then cached response
+    Map first = conditionalClient.getJson("http://host/rest/pools", Map.class, null);
+    Map second = conditionalClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals(1, responseCache.getNbModified());
+    Assertions.assertEquals(1, responseCache.getNbNotModified());
+
+    // modified
+    etag[0] = "v2";
+    Map third = conditionalClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertNotSame(first, third);
+    Assertions.assertEquals("bar", third.get("foo"));
+    Assertions.assertEquals(2, responseCache.getNbModified());
+
+    // cache not enabled for usage
+    Assertions.assertFalse(responseCache.isEnabled(HttpUsage.BACKEND));
+  }
+
+  @Test
+  public void conditionalGetByUsage() throws Exception {
+    String[] etag = new String[] {"v1"};
+    List<String> restValidators = new ArrayList<String>();
+    List<String> backendValidators = new ArrayList<String>();
+    JacksonHttpClient restClient =
+        newConditionalClient(HttpUsage.COORDINATOR_REST, etag, restValidators);
+    JacksonHttpClient backendClient =
+        newConditionalClient(HttpUsage.BACKEND, etag, backendValidators);
+    HttpResponseCache responseCache =
+        new HttpResponseCache(HttpUsage.COORDINATOR_REST, HttpUsage.BACKEND);
+    restClient.setResponseCache(responseCache);
+    backendClient.setResponseCache(responseCache);
+
+    // same url, cached separately for each usage
+    Map rest = restClient.getJson("http://host/rest/pools", Map.class, null);
+    Map backend = backendClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertNotSame(rest, backend);
+    Assertions.assertEquals(Arrays.asList((String) null), backendValidators);
+    Assertions.assertEquals(2, responseCache.getSize());
+
+    Map backendCached = backendClient.getJson("http://host/rest/pools", Map.class, null);
+    Assertions.assertSame(backend, backendCached);
+    Assertions.assertEquals(Arrays.asList(null, "v1"), backendValidators);
+    Assertions.assertEquals(Arrays.asList((String) null), restValidators);
+  }
+
+  private JacksonHttpClient newConditionalClient(
+      HttpUsage httpUsage, final String[] etag, final List<String> validators) {
+    return new JacksonHttpClient(httpUsage) {
+      @Override
+      protected JsonResponse requestJsonGetConditional(
+          String urlStr, Map<String, String> headers) {
+        String ifNoneMatch =
+            (headers != null ? headers.get(HttpResponseCache.HEADER_IF_NONE_MATCH) : null);
+        validators.add(ifNoneMatch);
+        if (etag[0].equals(ifNoneMatch)) {
+          return JsonResponse.notModified();
+        }
+        return new JsonResponse(RESPONSE, etag[0], null);
+      }
+
+      @Override
+      protected String requestJsonGet(String urlStr, Map<String, String> headers) {
+        return RESPONSE;
+      }
+
+      @Override
+      protected String requestJsonPost(
+          String urlStr, Map<String, String> headers, String jsonBody) {
+        return RESPONSE;
+      }
+
+      @Override
+      protected String requestJsonPostUrlEncoded(
+          String urlStr, Map<String, String> headers, Map<String, String> body) {
+        return RESPONSE;
+      }
+
+      @Override
+      public void connect() throws Exception {}
+    };
+  }
+
+  @Test
+  public void computeEndpointTemplate() throws Exception {
+    Assertions.assertEquals(
+        "/rest/pools", HttpMetrics.computeEndpointTemplate("https://h/rest/pools"));
+    Assertions.assertEquals(
+        "/rest/pools", HttpMetrics.computeEndpointTemplate("http://h:8080/rest/pools?scode=foo"));
+    Assertions.assertEquals("/", HttpMetrics.computeEndpointTemplate("http://host"));
+    Assertions.assertEquals(
+        "/v2/tx/*",
+        HttpMetrics.computeEndpointTemplate(
+            "http://h/v2/tx/5369dfb71b36ed2b91ca43f388b869e617558165e4f8306b80857d88bdd624f2"));
+    Assertions.assertEquals(
+        "/v2/header/*", HttpMetrics.computeEndpointTemplate("http://h/v2/header/123"));
+  }
+}
@@ -0,0 +1,230 @@
+package com.samourai.http.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.samourai.wallet.api.backend.beans.HttpException;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java8.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PooledHttpClientTest extends AbstractTest {
+  private static final String RESPONSE = "{\"foo\":\"bar\"}";
+  private static final String ETAG = "\"v1\"";
+
+  private HttpServer server;
+  private String baseUrl;
+  private Set<Integer> clientPorts;
+  private PooledHttpClient httpClient;
+
+  public PooledHttpClientTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/plain",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            respond(exchange, 200, RESPONSE.getBytes(Charsets.UTF_8), false);
+          }
+        });
+    server.createContext(
+        "/gzip",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            Assertions.assertTrue(
+                exchange.getRequestHeaders().getFirst("Accept-Encoding").contains("gzip"));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(RESPONSE.getBytes(Charsets.UTF_8));
+            gzip.close();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            respond(exchange, 200, compressed.toByteArray(), false);
+          }
+        });
+    server.createContext(
+        "/deflate",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            DeflaterOutputStream deflate = new DeflaterOutputStream(compressed);
+            deflate.write(RESPONSE.getBytes(Charsets.UTF_8));
+            deflate.close();
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            respond(exchange, 200, compressed.toByteArray(), true);
+          }
+        });
+    server.createContext(
+        "/etag",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+              exchange.sendResponseHeaders(304, -1);
+              exchange.close();
+              return;
+            }
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            respond(exchange, 200, RESPONSE.getBytes(Charsets.UTF_8), false);
+          }
+        });
+    server.createContext(
+        "/echo",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            respond(exchange, 200, requestBody, true);
+          }
+        });
+    server.createContext(
+        "/error",
+        new TestHandler() {
+          @Override
+          void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+            respond(exchange, 500, "{\"message\":\"failed\"}".getBytes(Charsets.UTF_8), false);
+          }
+        });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    httpClient = new PooledHttpClient(HttpUsage.BACKEND);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    httpClient.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void keepAlive() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      Map result = httpClient.getJson(baseUrl + "/plain", Map.class, null);
+      Assertions.assertEquals("bar", result.get("foo"));
+    }
+    Assertions.assertEquals(1, clientPorts.size());
+    Assertions.assertEquals(1, httpClient.getConnectionPool().getNbOpened());
+    Assertions.assertEquals(4, httpClient.getConnectionPool().getNbReused());
+    Assertions.assertEquals(1, httpClient.getConnectionPool().getNbIdle());
+  }
+
+  @Test
+  public void keepAliveDisabled() throws Exception {
+    httpClient.setKeepAliveTimeout(0);
+    httpClient.getJson(baseUrl + "/plain", Map.class, null);
+    httpClient.getJson(baseUrl + "/plain", Map.class, null);
+    Assertions.assertEquals(2, httpClient.getConnectionPool().getNbOpened());
+    Assertions.assertEquals(0, httpClient.getConnectionPool().getNbIdle());
+  }
+
+  @Test
+  public void contentEncoding() throws Exception {
+    Assertions.assertEquals(RESPONSE, httpClient.getJson(baseUrl + "/gzip", String.class, null));
+    Assertions.assertEquals(
+        "bar", httpClient.getJson(baseUrl + "/deflate", Map.class, null).get("foo"));
+    Assertions.assertEquals(
+        "bar", httpClient.getJson(baseUrl + "/gzip", Map.class, null).get("foo"));
+    Assertions.assertEquals(1, clientPorts.size());
+  }
+
+  @Test
+  public void conditionalGet() throws Exception {
+    HttpResponseCache responseCache = new HttpResponseCache(HttpUsage.BACKEND);
+    httpClient.setResponseCache(responseCache);
+
+    Map first = httpClient.getJson(baseUrl + "/etag", Map.class, null);
+    Map second = httpClient.getJson(baseUrl + "/etag", Map.class, null);
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals(1, responseCache.getNbNotModified());
+
+    // connection still usable after 304
+    httpClient.getJson(baseUrl + "/plain", Map.class, null);
+    Assertions.assertEquals(1, clientPorts.size());
+  }
+
+  @Test
+  public void post() throws Exception {
+    Map<String, String> body = new HashMap<String, String>();
+    body.put("foo", "bar");
+
+    Optional<Map> result =
+        httpClient.postJson(baseUrl + "/echo", Map.class, null, body).blockingSingle();
+    Assertions.assertEquals("bar", result.get().get("foo"));
+
+    String urlEncoded = httpClient.postUrlEncoded(baseUrl + "/echo", String.class, null, body);
+    Assertions.assertEquals("foo=bar", urlEncoded);
+  }
+
+  @Test
+  public void error() throws Exception {
+    try {
+      httpClient.getJson(baseUrl + "/error", Map.class, null);
+      Assertions.fail();
+    } catch (HttpException e) {
+      Assertions.assertEquals("{\"message\":\"failed\"}", e.getResponseBody());
+    }
+
+    // connection still usable after error
+    httpClient.getJson(baseUrl + "/plain", Map.class, null);
+    Assertions.assertEquals(1, clientPorts.size());
+  }
+
+  @Test
+  public void isolation() throws Exception {
+    PooledHttpClientService httpClientService = new PooledHttpClientService();
+    PooledHttpClient backendClient = httpClientService.getHttpClient(HttpUsage.BACKEND);
+    PooledHttpClient coordinatorClient =
+        httpClientService.getHttpClient(HttpUsage.COORDINATOR_REST);
+    Assertions.assertSame(backendClient, httpClientService.getHttpClient(HttpUsage.BACKEND));
+
+    backendClient.getJson(baseUrl + "/plain", Map.class, null);
+    coordinatorClient.getJson(baseUrl + "/plain", Map.class, null);
+    backendClient.getJson(baseUrl + "/plain", Map.class, null);
+    coordinatorClient.getJson(baseUrl + "/plain", Map.class, null);
+
+    // one connection by usage
+    Assertions.assertEquals(2, clientPorts.size());
+    httpClientService.close();
+  }
+
+  private abstract class TestHandler implements HttpHandler {
+    abstract void handle(HttpExchange exchange, byte[] requestBody) throws IOException;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      byte[] requestBody = ByteStreams.toByteArray(exchange.getRequestBody());
+      handle(exchange, requestBody);
+    }
+
+    void respond(HttpExchange exchange, int status, byte[] body, boolean chunked)
+        throws IOException {
+      exchange.sendResponseHeaders(status, chunked ? 0 : body.length);
+      OutputStream output = exchange.getResponseBody();
+      output.write(body);
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.samourai.http.client;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightHttpClientTest extends AbstractTest {
+  private static final String URL = "http://host/rest/pools";
+
+  private AtomicInteger nbRequests;
+  private CountDownLatch requestStarted;
+  private CountDownLatch requestRelease;
+  private IHttpClient httpClient;
+
+  public SingleFlightHttpClientTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() {
+    nbRequests = new AtomicInteger(0);
+    requestStarted = new CountDownLatch(1);
+    requestRelease = new CountDownLatch(0);
+    httpClient =
+        new JacksonHttpClient(HttpUsage.COORDINATOR_REST) {
+          @Override
+          protected String requestJsonGet(String urlStr, Map<String, String> headers)
+              throws Exception {
+            nbRequests.incrementAndGet();
+            requestStarted.countDown();
+            requestRelease.await(10, TimeUnit.SECONDS);
+            return "{\"foo\":\"bar\"}";
+          }
+
+          @Override
+          protected String requestJsonPost(
+              String urlStr, Map<String, String> headers, String jsonBody) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          protected String requestJsonPostUrlEncoded(
+              String urlStr, Map<String, String> headers, Map<String, String> body) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public void connect() throws Exception {}
+        };
+  }
+
+  @Test
+  public void merge() throws Exception {
+    final SingleFlightHttpClient singleFlightHttpClient = new SingleFlightHttpClient(httpClient);
+    requestRelease = new CountDownLatch(1);
+
+    // first request in flight
+    final Map[] results = new Map[5];
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < results.length; i++) {
+      final int index = i;
+      Thread thread =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    results[index] = singleFlightHttpClient.getJson(URL, Map.class, null);
+                  } catch (Exception e) {
+                    e.printStackTrace();
+                  }
+                }
+              });
+      threads.add(thread);
+      thread.start();
+      if (i == 0) {
+        Assertions.assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+      }
+    }
+
+    // wait for other requests to join
+    while (singleFlightHttpClient.getNbMerged() < results.length - 1) {
+      Thread.sleep(10);
+    }
+    requestRelease.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assertions.assertEquals(1, nbRequests.get());
+    Assertions.assertEquals(1, singleFlightHttpClient.getNbIssued());
+    for (Map result : results) {
+      Assertions.assertSame(results[0], result);
+    }
+
+    // not in flight anymore
+    singleFlightHttpClient.getJson(URL, Map.class, null);
+    Assertions.assertEquals(2, nbRequests.get());
+  }
+
+  @Test
+  public void ttl() throws Exception {
+    SingleFlightHttpClient singleFlightHttpClient = new SingleFlightHttpClient(httpClient, 60000);
+    Map first = singleFlightHttpClient.getJson(URL, Map.class, null);
+    Map second = singleFlightHttpClient.getJson(URL, Map.class, null);
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals(1, nbRequests.get());
+    Assertions.assertEquals(1, singleFlightHttpClient.getNbCached());
+
+    // different url
+    singleFlightHttpClient.getJson(URL + "?foo", Map.class, null);
+    Assertions.assertEquals(2, nbRequests.get());
+  }
+}
@@ -0,0 +1,157 @@
+package com.samourai.stomp.client;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.utils.MessageErrorListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StompTransportPoolTest extends AbstractTest {
+  private static final String URL = "ws://host/ws/connect";
+
+  private List<TestStompClient> stompClients;
+  private StompTransportPool stompTransportPool;
+  private Map<String, String> connectHeaders;
+
+  public StompTransportPoolTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() {
+    stompClients = new ArrayList<TestStompClient>();
+    stompTransportPool =
+        new StompTransportPool(
+            new IStompClientService() {
+              @Override
+              public IStompClient newStompClient() {
+                TestStompClient stompClient = new TestStompClient();
+                stompClients.add(stompClient);
+                return stompClient;
+              }
+            },
+            2);
+    connectHeaders = new HashMap<String, String>();
+    connectHeaders.put("poolId", "0.01btc");
+  }
+
+  @Test
+  public void take() throws Exception {
+    // no spare yet
+    Assertions.assertNull(stompTransportPool.take(URL, connectHeaders));
+    Assertions.assertEquals(1, stompTransportPool.getNbMissed());
+    Assertions.assertEquals(2, stompClients.size());
+
+    // not connected yet
+    Assertions.assertNull(stompTransportPool.take(URL, connectHeaders));
+    Assertions.assertEquals(2, stompClients.size());
+
+    stompClients.get(0).onConnect();
+    stompClients.get(1).onConnect();
+    Assertions.assertEquals(2, stompTransportPool.getNbSpares());
+
+    // take spare, which is replaced
+    StompTransportPool.PooledTransport pooledTransport =
+        stompTransportPool.take(URL, connectHeaders);
+    Assertions.assertNotNull(pooledTransport);
+    Assertions.assertEquals(1, stompTransportPool.getNbTaken());
+    Assertions.assertEquals(1, stompTransportPool.getNbSpares());
+    Assertions.assertEquals(3, stompClients.size());
+
+    // events forwarded once attached
+    TestTransportListener listener = new TestTransportListener();
+    pooledTransport.attach(listener);
+    Assertions.assertEquals(1, listener.nbConnected);
+    stompClients.get(0).onDisconnect();
+    Assertions.assertEquals(1, listener.nbDisconnected);
+    Assertions.assertEquals(1, stompTransportPool.getNbSpares());
+
+    // other pool
+    Map<String, String> otherHeaders = new HashMap<String, String>();
+    otherHeaders.put("poolId", "0.05btc");
+    Assertions.assertNull(stompTransportPool.take(URL, otherHeaders));
+    Assertions.assertEquals(5, stompClients.size());
+  }
+
+  @Test
+  public void disconnected() throws Exception {
+    stompTransportPool.take(URL, connectHeaders);
+    stompClients.get(0).onConnect();
+    stompClients.get(1).onDisconnect(); // failed to connect
+
+    // spare lost
+    stompClients.get(0).onDisconnect();
+    Assertions.assertEquals(0, stompTransportPool.getNbSpares());
+
+    // replaced on next take
+    Assertions.assertNull(stompTransportPool.take(URL, connectHeaders));
+    Assertions.assertEquals(4, stompClients.size());
+  }
+
+  @Test
+  public void close() throws Exception {
+    stompTransportPool.take(URL, connectHeaders);
+    stompClients.get(0).onConnect();
+    stompTransportPool.close();
+    Assertions.assertTrue(stompClients.get(0).disconnected);
+    Assertions.assertEquals(0, stompTransportPool.getNbSpares());
+
+    // connected after close
+    stompClients.get(1).onConnect();
+    Assertions.assertTrue(stompClients.get(1).disconnected);
+    Assertions.assertEquals(0, stompTransportPool.getNbSpares());
+  }
+
+  private static class TestStompClient implements IStompClient {
+    private MessageErrorListener<Void, Throwable> connectListener;
+    private boolean disconnected;
+
+    @Override
+    public void connect(
+        String url,
+        Map<String, String> stompHeaders,
+        MessageErrorListener<Void, Throwable> onConnectOnDisconnectListener) {
+      this.connectListener = onConnectOnDisconnectListener;
+    }
+
+    void onConnect() {
+      connectListener.onMessage(null);
+    }
+
+    void onDisconnect() {
+      connectListener.onError(new Exception("test"));
+    }
+
+    @Override
+    public void subscribe(
+        Map<String, String> stompHeaders,
+        MessageErrorListener<IStompMessage, String> onMessageOnErrorListener) {}
+
+    @Override
+    public void send(Map<String, String> stompHeaders, Object payload) {}
+
+    @Override
+    public void disconnect() {
+      disconnected = true;
+    }
+  }
+
+  private static class TestTransportListener implements IStompTransportListener {
+    private int nbConnected;
+    private int nbDisconnected;
+
+    @Override
+    public void onTransportConnected() {
+      nbConnected++;
+    }
+
+    @Override
+    public void onTransportDisconnected(Throwable exception) {
+      nbDisconnected++;
+    }
+  }
+}
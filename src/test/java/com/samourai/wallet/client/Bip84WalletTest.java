@@ -50,6 +50,27 @@ public class Bip84WalletTest extends AbstractTest {
         toBech32(bip84Wallet.getAddressAt(1, 2)), toBech32(bip84Wallet.getNextChangeAddress()));
   }
 
+  @Test
+  public void addressCache() throws Exception {
+    Bip84AddressCache addressCache = bip84Wallet.getAddressCache();
+    addressCache.setLookahead(0);
+    HD_Address address = bip84Wallet.getAddressAt(0, 5);
+    Assertions.assertSame(address, bip84Wallet.getAddressAt(0, 5));
+    Assertions.assertEquals(1, addressCache.getNbMisses());
+    Assertions.assertEquals(1, addressCache.getNbHits());
+
+    // prefetched addresses are same as derived
+    bip84Wallet.prefetchNextAddresses(3);
+    Assertions.assertEquals(
+        "tb1q5lc455emwwttdqwf9p32xf8fhgrhvfp5vxvul7", toBech32(bip84Wallet.getNextAddress()));
+    Assertions.assertEquals(4, addressCache.getSize()); // 0, 1, 2, 5
+
+    // lookahead window after next address 1 => 0..21
+    addressCache.setLookahead(Bip84Wallet.ADDRESS_LOOKAHEAD_DEFAULT);
+    bip84Wallet.getNextAddress();
+    Assertions.assertEquals(22, addressCache.getSize());
+  }
+
   @Test
   public void getZpub() throws Exception {
     Assertions.assertEquals(
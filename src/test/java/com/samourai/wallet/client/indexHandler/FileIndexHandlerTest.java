@@ -0,0 +1,115 @@
+package com.samourai.wallet.client.indexHandler;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.io.File;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FileIndexHandlerTest extends AbstractTest {
+  private File file;
+  private File journalFile;
+  private File journalCompactingFile;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    file = new File("/tmp/indexes");
+    if (file.exists()) {
+      file.delete();
+    }
+    journalFile = new File("/tmp/indexes.journal");
+    if (journalFile.exists()) {
+      journalFile.delete();
+    }
+    journalCompactingFile = new File("/tmp/indexes.journal.compacting");
+    if (journalCompactingFile.exists()) {
+      journalCompactingFile.delete();
+    }
+  }
+
+  @Test
+  public void replayJournal() throws Exception {
+    FileIndexHandler indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(0, indexHandler.getAndIncrement("foo", 0));
+    Assertions.assertEquals(1, indexHandler.getAndIncrement("foo", 0));
+    indexHandler.set("bar", 5);
+
+    // not compacted yet
+    Assertions.assertFalse(file.exists());
+    Assertions.assertTrue(journalFile.length() > 0);
+
+    // reopen without close
+    indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(2, indexHandler.get("foo", 0));
+    Assertions.assertEquals(5, indexHandler.get("bar", 0));
+
+    // replayed journal was compacted
+    Assertions.assertTrue(file.exists());
+    Assertions.assertEquals(0, journalFile.length());
+  }
+
+  @Test
+  public void tornWrite() throws Exception {
+    Files.write("foo\t3\nbar\t12", journalFile, Charsets.UTF_8);
+
+    // last record is ignored
+    FileIndexHandler indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(3, indexHandler.get("foo", 0));
+    Assertions.assertEquals(0, indexHandler.get("bar", 0));
+  }
+
+  @Test
+  public void close() throws Exception {
+    FileIndexHandler indexHandler = new FileIndexHandler(file, JournalDurability.ASYNC);
+    indexHandler.set("foo", 7);
+    indexHandler.close();
+    Assertions.assertEquals(0, journalFile.length());
+
+    indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(7, indexHandler.get("foo", 0));
+  }
+
+  @Test
+  public void writeError() throws Exception {
+    FileIndexHandler indexHandler = new FileIndexHandler(file);
+
+    // journal can't be written
+    journalFile.mkdir();
+    try {
+      indexHandler.set("foo", 3);
+      Assertions.fail();
+    } catch (RuntimeException e) {
+      // expected
+    }
+
+    // failed records are written with next ones
+    journalFile.delete();
+    indexHandler.set("bar", 4);
+    indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(3, indexHandler.get("foo", 0));
+    Assertions.assertEquals(4, indexHandler.get("bar", 0));
+  }
+
+  @Test
+  public void compactAsync() throws Exception {
+    FileIndexHandler indexHandler = new FileIndexHandler(file);
+    for (int i = 0; i < 1000; i++) {
+      indexHandler.set("foo", i);
+    }
+
+    // new records go to a new journal while snapshot is written
+    indexHandler.set("bar", 1);
+    Assertions.assertEquals("bar\t1\n", Files.toString(journalFile, Charsets.UTF_8));
+    for (int i = 0; i < 50 && journalCompactingFile.exists(); i++) {
+      Thread.sleep(100);
+    }
+    Assertions.assertFalse(journalCompactingFile.exists());
+    Assertions.assertTrue(file.exists());
+
+    indexHandler = new FileIndexHandler(file);
+    Assertions.assertEquals(999, indexHandler.get("foo", 0));
+    Assertions.assertEquals(1, indexHandler.get("bar", 0));
+  }
+}
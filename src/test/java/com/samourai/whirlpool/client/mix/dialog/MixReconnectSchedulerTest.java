@@ -0,0 +1,206 @@
+package com.samourai.whirlpool.client.mix.dialog;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MixReconnectSchedulerTest extends AbstractTest {
+  private static final String SERVER = "http://server";
+
+  public MixReconnectSchedulerTest() {
+    super();
+  }
+
+  @Test
+  public void computeDelay() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(2);
+    for (int i = 0; i < 100; i++) {
+      long delay = reconnectScheduler.computeDelay(0, 5000, 120000);
+      Assertions.assertTrue(delay >= 0 && delay <= 5000);
+
+      delay = reconnectScheduler.computeDelay(3, 5000, 120000);
+      Assertions.assertTrue(delay >= 0 && delay <= 40000);
+
+      // capped
+      delay = reconnectScheduler.computeDelay(100, 5000, 120000);
+      Assertions.assertTrue(delay >= 0 && delay <= 120000);
+    }
+  }
+
+  @Test
+  public void maxHandshakes() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(2);
+    final AtomicInteger nbStarted = new AtomicInteger(0);
+    final CountDownLatch twoStarted = new CountDownLatch(2);
+    final CountDownLatch threeStarted = new CountDownLatch(3);
+    Runnable runnable =
+        new Runnable() {
+          @Override
+          public void run() {
+            nbStarted.incrementAndGet();
+            twoStarted.countDown();
+            threeStarted.countDown();
+          }
+        };
+    List<MixReconnectScheduler.Handshake> handshakes =
+        new ArrayList<MixReconnectScheduler.Handshake>();
+    for (int i = 0; i < 3; i++) {
+      MixReconnectScheduler.Handshake handshake =
+          new MixReconnectScheduler.Handshake(SERVER, runnable);
+      handshakes.add(handshake);
+      reconnectScheduler.schedule(handshake, 0);
+    }
+
+    // third handshake waits for a slot
+    Assertions.assertTrue(twoStarted.await(5, TimeUnit.SECONDS));
+    while (reconnectScheduler.getNbDeferred() < 1) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(2, nbStarted.get());
+    Assertions.assertEquals(2, reconnectScheduler.getNbHandshakesInFlight(SERVER));
+    Assertions.assertEquals(1, reconnectScheduler.getNbHandshakesDeferred(SERVER));
+
+    // other server is not capped
+    final CountDownLatch otherStarted = new CountDownLatch(1);
+    reconnectScheduler.schedule(
+        new MixReconnectScheduler.Handshake(
+            "http://other",
+            new Runnable() {
+              @Override
+              public void run() {
+                otherStarted.countDown();
+              }
+            }),
+        0);
+    Assertions.assertTrue(otherStarted.await(5, TimeUnit.SECONDS));
+
+    // slot released to deferred handshake, once
+    handshakes.get(0).release();
+    handshakes.get(0).release();
+    Assertions.assertTrue(threeStarted.await(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(2, reconnectScheduler.getNbHandshakesInFlight(SERVER));
+    Assertions.assertEquals(0, reconnectScheduler.getNbHandshakesDeferred(SERVER));
+
+    handshakes.get(1).release();
+    handshakes.get(2).release();
+    Assertions.assertEquals(0, reconnectScheduler.getNbHandshakesInFlight(SERVER));
+    Assertions.assertEquals(4, reconnectScheduler.getNbScheduled());
+    Assertions.assertEquals(4, reconnectScheduler.getNbStarted());
+  }
+
+  @Test
+  public void handshakeThrows() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(1);
+    reconnectScheduler.schedule(
+        new MixReconnectScheduler.Handshake(
+            SERVER,
+            new Runnable() {
+              @Override
+              public void run() {
+                throw new IllegalStateException("test");
+              }
+            }),
+        0);
+
+    // slot released without caller
+    CountDownLatch started = new CountDownLatch(1);
+    reconnectScheduler.schedule(newHandshake(started), 0);
+    Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void handshakeTimeout() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(1, 100);
+
+    // never released by caller
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    reconnectScheduler.schedule(newHandshake(firstStarted), 0);
+    Assertions.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+    CountDownLatch secondStarted = new CountDownLatch(1);
+    reconnectScheduler.schedule(newHandshake(secondStarted), 0);
+    Assertions.assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+    Assertions.assertTrue(reconnectScheduler.getNbTimeouts() >= 1);
+  }
+
+  @Test
+  public void releaseBeforeStart() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(1);
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    MixReconnectScheduler.Handshake first = newHandshake(firstStarted);
+    reconnectScheduler.schedule(first, 0);
+    Assertions.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+    // deferred handshake aborted
+    CountDownLatch abortedStarted = new CountDownLatch(1);
+    MixReconnectScheduler.Handshake aborted = newHandshake(abortedStarted);
+    reconnectScheduler.schedule(aborted, 0);
+    while (reconnectScheduler.getNbHandshakesDeferred(SERVER) < 1) {
+      Thread.sleep(10);
+    }
+    aborted.release();
+    Assertions.assertEquals(0, reconnectScheduler.getNbHandshakesDeferred(SERVER));
+
+    // slot is free again, aborted handshake never runs
+    first.release();
+    Assertions.assertEquals(0, reconnectScheduler.getNbHandshakesInFlight(SERVER));
+    Assertions.assertFalse(abortedStarted.await(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void releaseBeforeRun() throws Exception {
+    MixReconnectScheduler reconnectScheduler = new MixReconnectScheduler(1);
+
+    // handshake executor busy with other servers
+    final CountDownLatch busy = new CountDownLatch(1);
+    final CountDownLatch busyStarted = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      reconnectScheduler.schedule(
+          new MixReconnectScheduler.Handshake(
+              "http://other" + i,
+              new Runnable() {
+                @Override
+                public void run() {
+                  busyStarted.countDown();
+                  try {
+                    busy.await(5, TimeUnit.SECONDS);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                }
+              }),
+          0);
+    }
+    Assertions.assertTrue(busyStarted.await(5, TimeUnit.SECONDS));
+
+    // handshake holds its slot, waiting for executor
+    CountDownLatch abortedStarted = new CountDownLatch(1);
+    MixReconnectScheduler.Handshake aborted = newHandshake(abortedStarted);
+    reconnectScheduler.schedule(aborted, 0);
+    while (reconnectScheduler.getNbHandshakesInFlight(SERVER) < 1) {
+      Thread.sleep(10);
+    }
+    aborted.release();
+    Assertions.assertEquals(0, reconnectScheduler.getNbHandshakesInFlight(SERVER));
+
+    // aborted handshake never runs
+    busy.countDown();
+    Assertions.assertFalse(abortedStarted.await(200, TimeUnit.MILLISECONDS));
+  }
+
+  private MixReconnectScheduler.Handshake newHandshake(final CountDownLatch started) {
+    return new MixReconnectScheduler.Handshake(
+        SERVER,
+        new Runnable() {
+          @Override
+          public void run() {
+            started.countDown();
+          }
+        });
+  }
+}
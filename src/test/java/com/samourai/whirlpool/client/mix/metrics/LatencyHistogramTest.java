@@ -0,0 +1,67 @@
+package com.samourai.whirlpool.client.mix.metrics;
+
+import com.samourai.whirlpool.client.mix.listener.MixStep;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest extends AbstractTest {
+
+  public LatencyHistogramTest() {
+    super();
+  }
+
+  @Test
+  public void quantiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assertions.assertEquals(0, histogram.getValueAtQuantile(0.5));
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    Assertions.assertEquals(1000, histogram.getCount());
+    Assertions.assertEquals(1000, histogram.getMax());
+    Assertions.assertEquals(500.5, histogram.getMean(), 0.001);
+    Assertions.assertEquals(1, histogram.getValueAtQuantile(0));
+    assertApprox(500, histogram.getValueAtQuantile(0.5));
+    assertApprox(900, histogram.getValueAtQuantile(0.9));
+    assertApprox(990, histogram.getValueAtQuantile(0.99));
+    Assertions.assertEquals(1000, histogram.getValueAtQuantile(1));
+
+    // small values are exact, huge values are clamped
+    histogram = new LatencyHistogram();
+    histogram.record(7);
+    Assertions.assertEquals(7, histogram.getValueAtQuantile(0.5));
+    histogram.record(Long.MAX_VALUE);
+    Assertions.assertEquals(Integer.MAX_VALUE, histogram.getValueAtQuantile(1));
+  }
+
+  @Test
+  public void mixMetrics() throws Exception {
+    MixMetrics mixMetrics = new MixMetrics();
+    Assertions.assertNull(mixMetrics.getStepDuration("0.01btc", MixStep.CONNECTING));
+
+    MixMetrics.MixTimer mixTimer = mixMetrics.newMixTimer("0.01btc");
+    mixTimer.onStep(MixStep.CONNECTING);
+    mixTimer.onStep(MixStep.CONNECTED);
+    mixTimer.onStep(MixStep.FAIL);
+    mixTimer.onStep(MixStep.FAIL); // ignored
+
+    Assertions.assertEquals(
+        1, mixMetrics.getStepDuration("0.01btc", MixStep.CONNECTING).getCount());
+    Assertions.assertEquals(
+        1,
+        mixMetrics
+            .getStepTransition("0.01btc", MixStep.CONNECTED, MixStep.FAIL)
+            .getCount());
+    Assertions.assertNull(mixMetrics.getStepDuration("0.01btc", MixStep.FAIL));
+    Assertions.assertNull(mixMetrics.getStepDuration("0.05btc", MixStep.CONNECTING));
+    Assertions.assertEquals(0, mixMetrics.getMixDuration("0.01btc").getCount());
+  }
+
+  private void assertApprox(long expected, long actual) {
+    // bucket precision
+    Assertions.assertTrue(
+        Math.abs(expected - actual) <= expected * 0.04, "expected " + expected + ": " + actual);
+  }
+}
@@ -9,6 +9,9 @@ import com.samourai.whirlpool.client.wallet.WhirlpoolWalletConfig;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolServer;
 import com.samourai.whirlpool.client.wallet.beans.WhirlpoolWalletAccount;
 import com.samourai.whirlpool.client.whirlpool.beans.Tx0Data;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java8.util.Lists;
 import org.bitcoinj.core.*;
 import org.bouncycastle.util.encoders.Hex;
@@ -304,6 +307,86 @@ public class Tx0ServiceTest extends AbstractTest {
     Assertions.assertEquals(1009500, tx0Preview.getPremixValue());
   }
 
+  @Test
+  public void computeNbPremixMax() throws Exception {
+    long[] premixValues = new long[] {100017, 100950, 1000201, 1009500, 5000170, 5009500};
+    long[] feeValueOrFeeChanges = new long[] {1, FEE_VALUE, 50000, 250000};
+    int[] feeTx0s = new int[] {1, 5, 50, 510};
+    int[] nbSpendFroms = new int[] {1, 2, 10, 50};
+    int[] nbPremixs = new int[] {0, 1, 2, 5, 10, 99, 100, 101, 599, 600, 601, 1500};
+
+    for (long premixValue : premixValues) {
+      for (long feeValueOrFeeChange : feeValueOrFeeChanges) {
+        for (int feeTx0 : feeTx0s) {
+          for (int nbSpendFrom : nbSpendFroms) {
+            for (int nbPremix : nbPremixs) {
+              // balances around the exact spendValue of nbPremix
+              long tx0MinerFee = tx0Service.computeTx0MinerFee(nbPremix, feeTx0, null);
+              long spendValue = (premixValue * nbPremix) + feeValueOrFeeChange + tx0MinerFee;
+              for (long delta : new long[] {-premixValue, -1, 0, 1, premixValue / 2}) {
+                long balance = Math.max(spendValue + delta, nbSpendFrom);
+                Collection<UnspentResponse.UnspentOutput> spendFroms =
+                    newSpendFroms(nbSpendFrom, balance);
+                int expected =
+                    computeNbPremixMaxLoop(premixValue, spendFroms, feeValueOrFeeChange, feeTx0);
+                int actual =
+                    tx0Service.computeNbPremixMax(
+                        premixValue, spendFroms, feeValueOrFeeChange, feeTx0);
+                Assertions.assertEquals(
+                    expected,
+                    actual,
+                    "premixValue="
+                        + premixValue
+                        + ", feeValueOrFeeChange="
+                        + feeValueOrFeeChange
+                        + ", feeTx0="
+                        + feeTx0
+                        + ", nbSpendFrom="
+                        + nbSpendFrom
+                        + ", balance="
+                        + balance);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private Collection<UnspentResponse.UnspentOutput> newSpendFroms(int nb, long balance) {
+    List<UnspentResponse.UnspentOutput> spendFroms = new ArrayList<UnspentResponse.UnspentOutput>();
+    for (int i = 0; i < nb; i++) {
+      long value = (i == 0 ? balance - (nb - 1) : 1);
+      spendFroms.add(
+          newUnspentOutput(
+              "cc588cdcb368f894a41c372d1f905770b61ecb3fb8e5e01a97e7cedbf5e324ae", i, value));
+    }
+    return spendFroms;
+  }
+
+  // reference implementation: decrement from nbPremixInitial until spendValue is affordable
+  private int computeNbPremixMaxLoop(
+      long premixValue,
+      Collection<UnspentResponse.UnspentOutput> spendFroms,
+      long feeValueOrFeeChange,
+      int feeTx0) {
+    long spendFromBalance = tx0Service.computeSpendFromBalance(spendFroms);
+    int nbPremix = (int) Math.ceil(spendFromBalance / premixValue);
+    while (true) {
+      long tx0MinerFee = tx0Service.computeTx0MinerFee(nbPremix, feeTx0, spendFroms);
+      long spendValue = (premixValue * nbPremix) + feeValueOrFeeChange + tx0MinerFee;
+      if (spendFromBalance < spendValue) {
+        nbPremix--;
+      } else {
+        break;
+      }
+    }
+    if (nbPremix < 0) {
+      nbPremix = 0;
+    }
+    return nbPremix;
+  }
+
   private void assertEquals(Tx0Preview tp, Tx0Preview tp2) {
     Assertions.assertEquals(tp.getMinerFee(), tp2.getMinerFee());
     Assertions.assertEquals(tp.getFeeValue(), tp2.getFeeValue());
@@ -0,0 +1,119 @@
+package com.samourai.whirlpool.client.utils;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.RSAEngine;
+import org.bouncycastle.crypto.params.RSABlindingParameters;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.bouncycastle.crypto.signers.PSSSigner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClientCryptoServiceTest extends AbstractTest {
+  private static final String POOL_ID = "0.01btc";
+  private static final String BORDEREAU = "tb1qjara0278vrsr8gvaga7jpy2c9amtgvytr44xym";
+
+  private ClientCryptoService clientCryptoService;
+
+  public ClientCryptoServiceTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() {
+    clientCryptoService = new ClientCryptoService();
+  }
+
+  @Test
+  public void getPublicKey() throws Exception {
+    KeyPair keyPair = generateKeyPair();
+    byte[] publicKeySerialized = keyPair.getPublic().getEncoded();
+
+    // parsed once
+    RSAKeyParameters publicKey = clientCryptoService.getPublicKey(POOL_ID, publicKeySerialized);
+    Assertions.assertSame(
+        publicKey, clientCryptoService.getPublicKey(POOL_ID, publicKeySerialized.clone()));
+    Assertions.assertEquals(
+        ClientUtils.publicKeyUnserialize(publicKeySerialized).getModulus(),
+        publicKey.getModulus());
+
+    // key rotated
+    byte[] otherKeySerialized = generateKeyPair().getPublic().getEncoded();
+    RSAKeyParameters otherKey = clientCryptoService.getPublicKey(POOL_ID, otherKeySerialized);
+    Assertions.assertNotEquals(publicKey.getModulus(), otherKey.getModulus());
+    Assertions.assertSame(otherKey, clientCryptoService.getPublicKey(POOL_ID, otherKeySerialized));
+  }
+
+  @Test
+  public void blindUnblind() throws Exception {
+    KeyPair keyPair = generateKeyPair();
+    RSAKeyParameters publicKey =
+        clientCryptoService.getPublicKey(POOL_ID, keyPair.getPublic().getEncoded());
+    RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+    RSAKeyParameters serverPrivateKey =
+        new RSAKeyParameters(true, privateKey.getModulus(), privateKey.getPrivateExponent());
+
+    // blinding factors are never reused and signer is reused across mixs
+    Set<BigInteger> blindingFactors = new HashSet<BigInteger>();
+    for (int i = 0; i < 10; i++) {
+      clientCryptoService.prefetchBlindingFactors(POOL_ID);
+      RSABlindingParameters blindingParams = clientCryptoService.computeBlindingParams(publicKey);
+      Assertions.assertTrue(blindingFactors.add(blindingParams.getBlindingFactor()));
+      byte[] blinded = clientCryptoService.blind(BORDEREAU, blindingParams);
+
+      // server signs blinded bordereau
+      RSAEngine serverSigner = new RSAEngine();
+      serverSigner.init(true, serverPrivateKey);
+      byte[] signedBlinded = serverSigner.processBlock(blinded, 0, blinded.length);
+
+      // unblinded signature is valid for clear bordereau
+      byte[] unblinded = clientCryptoService.unblind(signedBlinded, blindingParams);
+      PSSSigner verifier = new PSSSigner(new RSAEngine(), new SHA256Digest(), 32);
+      verifier.init(false, publicKey);
+      verifier.update(BORDEREAU.getBytes(), 0, BORDEREAU.getBytes().length);
+      Assertions.assertTrue(verifier.verifySignature(unblinded));
+    }
+  }
+
+  @Test
+  public void sharedKeyRotated() throws Exception {
+    // executor runs tasks when asked
+    final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+    clientCryptoService =
+        new ClientCryptoService(
+            new Executor() {
+              @Override
+              public void execute(Runnable runnable) {
+                tasks.add(runnable);
+              }
+            });
+    byte[] sharedKeySerialized = generateKeyPair().getPublic().getEncoded();
+    RSAKeyParameters sharedKey = clientCryptoService.getPublicKey(POOL_ID, sharedKeySerialized);
+    clientCryptoService.getPublicKey("other", sharedKeySerialized);
+    Assertions.assertEquals(1, tasks.size());
+    tasks.poll().run();
+
+    // key rotated for one pool only
+    clientCryptoService.getPublicKey(POOL_ID, generateKeyPair().getPublic().getEncoded());
+    tasks.clear();
+
+    // other pool still uses prefetched blinding factors, and refills them
+    clientCryptoService.computeBlindingParams(sharedKey);
+    Assertions.assertEquals(1, tasks.size());
+  }
+
+  private KeyPair generateKeyPair() throws Exception {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+    keyPairGenerator.initialize(2048);
+    return keyPairGenerator.generateKeyPair();
+  }
+}
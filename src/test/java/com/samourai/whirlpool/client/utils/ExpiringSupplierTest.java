@@ -0,0 +1,168 @@
+package com.samourai.whirlpool.client.utils;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.zeroleak.throwingsupplier.LastValueFallbackSupplier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringSupplierTest extends AbstractTest {
+  private int nbFetchs;
+  private List<Runnable> backgroundTasks = new LinkedList<Runnable>();
+  private Executor executor =
+      new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+          backgroundTasks.add(runnable);
+        }
+      };
+
+  public ExpiringSupplierTest() {
+    super();
+  }
+
+  private ExpiringSupplier<Integer> newSupplier(boolean staleWhileRevalidate) {
+    nbFetchs = 0;
+    backgroundTasks.clear();
+    return new ExpiringSupplier<Integer>(
+        new LastValueFallbackSupplier<Integer, Exception>() {
+          @Override
+          public Integer getOrThrow() throws Exception {
+            return ++nbFetchs;
+          }
+        }.attempts(1),
+        60000,
+        staleWhileRevalidate,
+        executor);
+  }
+
+  @Test
+  public void staleWhileRevalidate() throws Exception {
+    ExpiringSupplier<Integer> supplier = newSupplier(true);
+    Assertions.assertNull(supplier.getAge());
+
+    // first fetch waits for value
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+    Assertions.assertNotNull(supplier.getAge());
+
+    // expired => stale value served, single refresh in background
+    supplier.expire();
+    supplier.expire();
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(1, backgroundTasks.size());
+    Assertions.assertEquals(1, nbFetchs);
+
+    // refreshed
+    backgroundTasks.remove(0).run();
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(2, nbFetchs);
+    Assertions.assertTrue(backgroundTasks.isEmpty());
+  }
+
+  @Test
+  public void blocking() throws Exception {
+    ExpiringSupplier<Integer> supplier = newSupplier(false);
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+
+    // expired => next get() waits for fresh value
+    supplier.expire();
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+    Assertions.assertTrue(backgroundTasks.isEmpty());
+  }
+
+  @Test
+  public void invalidate() throws Exception {
+    ExpiringSupplier<Integer> supplier = newSupplier(true);
+    Assertions.assertEquals(1, (int) supplier.get().getOrThrow());
+
+    // expired refresh in flight
+    supplier.expire();
+    Assertions.assertEquals(1, backgroundTasks.size());
+
+    // invalidated => next get() waits for fresh value, even when staleWhileRevalidate
+    supplier.invalidate();
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+
+    // refresh queued before invalidate() was run by get(), not fetched again
+    backgroundTasks.remove(0).run();
+    Assertions.assertEquals(2, nbFetchs);
+    Assertions.assertEquals(2, (int) supplier.get().getOrThrow());
+    Assertions.assertTrue(backgroundTasks.isEmpty());
+  }
+
+  @Test
+  public void invalidateWhileFetching() throws Exception {
+    final AtomicInteger nbRunning = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    final AtomicInteger nbFetched = new AtomicInteger(0);
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch fetchRelease = new CountDownLatch(1);
+    final ExpiringSupplier<Integer> supplier =
+        new ExpiringSupplier<Integer>(
+            new LastValueFallbackSupplier<Integer, Exception>() {
+              @Override
+              public Integer getOrThrow() throws Exception {
+                int running = nbRunning.incrementAndGet();
+                synchronized (maxRunning) {
+                  maxRunning.set(Math.max(maxRunning.get(), running));
+                }
+                fetchStarted.countDown();
+                fetchRelease.await(5, TimeUnit.SECONDS);
+                nbRunning.decrementAndGet();
+                return nbFetched.incrementAndGet();
+              }
+            }.attempts(1),
+            60000,
+            true,
+            Executors.newSingleThreadExecutor());
+
+    // first fetch blocked
+    final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+    Thread first = newGetThread(supplier, results);
+    first.start();
+    Assertions.assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+
+    // invalidated while fetching => waits for the next fetch, not started alongside
+    supplier.invalidate();
+    Thread second = newGetThread(supplier, results);
+    second.start();
+    supplier.refreshAsync();
+    Thread.sleep(100);
+    Assertions.assertEquals(1, nbRunning.get());
+
+    fetchRelease.countDown();
+    first.join(5000);
+    second.join(5000);
+    Assertions.assertEquals(1, maxRunning.get());
+    Assertions.assertEquals(2, nbFetched.get());
+    Assertions.assertEquals(Arrays.asList(2, 2), results);
+  }
+
+  private Thread newGetThread(
+      final ExpiringSupplier<Integer> supplier, final List<Integer> results) {
+    return new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              results.add(supplier.get().getOrThrow());
+            } catch (Exception e) {
+              results.add(-1);
+            }
+          }
+        });
+  }
+}
@@ -0,0 +1,123 @@
+package com.samourai.whirlpool.client.utils;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PrewarmCacheTest extends AbstractTest {
+  private LinkedList<Runnable> tasks;
+  private PrewarmCache<String, String> prewarmCache;
+  private AtomicInteger nbComputed;
+
+  public PrewarmCacheTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() {
+    // executor runs tasks when asked
+    tasks = new LinkedList<Runnable>();
+    Executor executor =
+        new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            tasks.add(runnable);
+          }
+        };
+    prewarmCache = new PrewarmCache<String, String>(executor);
+    nbComputed = new AtomicInteger(0);
+  }
+
+  @Test
+  public void hitsAndMisses() throws Exception {
+    prewarmCache.prewarm("pool", computes("a", "b"));
+    Assertions.assertEquals(2, tasks.size());
+    while (!tasks.isEmpty()) {
+      tasks.poll().run();
+    }
+
+    // ready => hit
+    Assertions.assertEquals("value-a", prewarmCache.take("pool", "a"));
+    Assertions.assertEquals(1, prewarmCache.getNbHits());
+    Assertions.assertEquals(0, prewarmCache.getNbMisses());
+
+    // taken once
+    Assertions.assertNull(prewarmCache.take("pool", "a"));
+    Assertions.assertEquals(1, prewarmCache.getNbMisses());
+
+    // other pool
+    Assertions.assertNull(prewarmCache.take("other", "b"));
+    Assertions.assertEquals(2, prewarmCache.getNbMisses());
+    Assertions.assertEquals(2, nbComputed.get());
+  }
+
+  @Test
+  public void notReady() throws Exception {
+    prewarmCache.prewarm("pool", computes("a"));
+
+    // not started yet => computed inline, counted as miss
+    Assertions.assertEquals("value-a", prewarmCache.take("pool", "a"));
+    Assertions.assertEquals(0, prewarmCache.getNbHits());
+    Assertions.assertEquals(1, prewarmCache.getNbMisses());
+
+    // executor task does nothing
+    tasks.poll().run();
+    Assertions.assertEquals(1, nbComputed.get());
+  }
+
+  @Test
+  public void replace() throws Exception {
+    prewarmCache.prewarm("pool", computes("a", "b"));
+    tasks.clear();
+
+    // "a" is reused, "b" is dropped
+    prewarmCache.prewarm("pool", computes("a", "c"));
+    Assertions.assertEquals(1, tasks.size());
+    Assertions.assertNull(prewarmCache.take("pool", "b"));
+    Assertions.assertEquals("value-a", prewarmCache.take("pool", "a"));
+    Assertions.assertEquals("value-c", prewarmCache.take("pool", "c"));
+  }
+
+  @Test
+  public void failedTask() throws Exception {
+    Map<String, Callable<String>> computes = new HashMap<String, Callable<String>>();
+    computes.put(
+        "a",
+        new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            throw new Exception("test");
+          }
+        });
+    prewarmCache.prewarm("pool", computes);
+    tasks.poll().run();
+
+    // failure => null, caller computes it
+    Assertions.assertNull(prewarmCache.take("pool", "a"));
+    Assertions.assertEquals(0, prewarmCache.getNbHits());
+    Assertions.assertEquals(1, prewarmCache.getNbMisses());
+  }
+
+  private Map<String, Callable<String>> computes(String... keys) {
+    Map<String, Callable<String>> computes = new HashMap<String, Callable<String>>();
+    for (final String key : keys) {
+      computes.put(
+          key,
+          new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              nbComputed.incrementAndGet();
+              return "value-" + key;
+            }
+          });
+    }
+    return computes;
+  }
+}
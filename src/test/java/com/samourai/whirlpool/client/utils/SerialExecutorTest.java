@@ -0,0 +1,99 @@
+package com.samourai.whirlpool.client.utils;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SerialExecutorTest extends AbstractTest {
+
+  public SerialExecutorTest() {
+    super();
+  }
+
+  @Test
+  public void order() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    SerialExecutor serialExecutor = new SerialExecutor(executorService);
+    final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch done = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      final int value = i;
+      serialExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              results.add(value);
+              done.countDown();
+            }
+          });
+    }
+    Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      Assertions.assertEquals(i, results.get(i).intValue());
+    }
+    executorService.shutdown();
+  }
+
+  @Test
+  public void interleave() throws Exception {
+    // shared executor runs tasks when asked
+    final LinkedList<Runnable> sharedTasks = new LinkedList<Runnable>();
+    Executor sharedExecutor =
+        new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            sharedTasks.add(runnable);
+          }
+        };
+    SerialExecutor first = new SerialExecutor(sharedExecutor);
+    SerialExecutor second = new SerialExecutor(sharedExecutor);
+    final List<String> results = new ArrayList<String>();
+    for (int i = 0; i < 2; i++) {
+      first.execute(newTask(results, "first" + i));
+      second.execute(newTask(results, "second" + i));
+    }
+
+    // one shared task by serial executor at once
+    Assertions.assertEquals(2, sharedTasks.size());
+    Assertions.assertEquals(2, first.getNbQueued());
+
+    // each task gives its thread back between tasks
+    while (!sharedTasks.isEmpty()) {
+      sharedTasks.poll().run();
+    }
+    Assertions.assertEquals("[first0, second0, first1, second1]", results.toString());
+    Assertions.assertEquals(0, first.getNbQueued());
+
+    // exception doesn't stop next tasks
+    first.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            throw new IllegalStateException("test");
+          }
+        });
+    first.execute(newTask(results, "first2"));
+    while (!sharedTasks.isEmpty()) {
+      sharedTasks.poll().run();
+    }
+    Assertions.assertEquals("first2", results.get(results.size() - 1));
+  }
+
+  private Runnable newTask(final List<String> results, final String value) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        results.add(value);
+      }
+    };
+  }
+}
@@ -0,0 +1,126 @@
+package com.samourai.whirlpool.client.wallet;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolAccount;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoChanges;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UtxoChangesDispatcherTest extends AbstractTest {
+  private List<Runnable> tasks;
+  private List<WhirlpoolUtxoChanges> dispatched;
+  private UtxoChangesDispatcher dispatcher;
+
+  @BeforeEach
+  public void setUp() {
+    tasks = new LinkedList<Runnable>();
+    dispatched = new LinkedList<WhirlpoolUtxoChanges>();
+    Executor executor =
+        new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            tasks.add(runnable);
+          }
+        };
+    dispatcher =
+        new UtxoChangesDispatcher(executor) {
+          @Override
+          protected void dispatch(WhirlpoolUtxoChanges whirlpoolUtxoChanges) {
+            dispatched.add(whirlpoolUtxoChanges);
+          }
+        };
+  }
+
+  @Test
+  public void coalesce() throws Exception {
+    WhirlpoolUtxo utxo1 = newUtxo("pool", WhirlpoolAccount.PREMIX, "utxo1", 1, null);
+    WhirlpoolUtxo utxo2 = newUtxo("pool", WhirlpoolAccount.PREMIX, "utxo2", 1, null);
+    WhirlpoolUtxo utxo3 = newUtxo("pool", WhirlpoolAccount.POSTMIX, "utxo3", 1, null);
+
+    // first fetch
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(true, utxo1, null, null));
+    // next fetchs: detected then updated
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(false, utxo2, null, null));
+    dispatcher.post(WhirlpoolAccount.POSTMIX, changes(false, utxo3, null, null));
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(false, null, utxo2, null));
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(false, null, utxo1, null));
+    Assertions.assertEquals(3, dispatcher.getNbPending());
+    Assertions.assertEquals(2, dispatcher.getNbCoalesced());
+
+    // single dispatch task
+    Assertions.assertEquals(1, tasks.size());
+    tasks.remove(0).run();
+    Assertions.assertEquals(0, dispatcher.getNbPending());
+    Assertions.assertEquals(3, dispatcher.getNbDispatched());
+
+    // in order
+    Assertions.assertEquals(3, dispatched.size());
+    WhirlpoolUtxoChanges first = dispatched.get(0);
+    Assertions.assertTrue(first.isFirstFetch());
+    Assertions.assertEquals(1, first.getUtxosDetected().size());
+    Assertions.assertSame(utxo1, first.getUtxosDetected().get(0));
+
+    WhirlpoolUtxoChanges second = dispatched.get(1);
+    Assertions.assertFalse(second.isFirstFetch());
+    Assertions.assertEquals(1, second.getUtxosDetected().size());
+    Assertions.assertSame(utxo2, second.getUtxosDetected().get(0));
+    Assertions.assertEquals(1, second.getUtxosUpdated().size());
+    Assertions.assertSame(utxo1, second.getUtxosUpdated().get(0));
+    Assertions.assertTrue(second.getUtxosRemoved().isEmpty());
+
+    // other account not merged
+    WhirlpoolUtxoChanges third = dispatched.get(2);
+    Assertions.assertEquals(1, third.getUtxosDetected().size());
+    Assertions.assertSame(utxo3, third.getUtxosDetected().get(0));
+  }
+
+  @Test
+  public void firstFetch() throws Exception {
+    WhirlpoolUtxo utxo1 = newUtxo("pool", WhirlpoolAccount.PREMIX, "utxo1", 1, null);
+    WhirlpoolUtxo utxo2 = newUtxo("pool", WhirlpoolAccount.POSTMIX, "utxo2", 1, null);
+    WhirlpoolUtxo utxo3 = newUtxo("pool", WhirlpoolAccount.PREMIX, "utxo3", 1, null);
+    WhirlpoolUtxo utxo4 = newUtxo("pool", WhirlpoolAccount.POSTMIX, "utxo4", 1, null);
+
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(true, utxo1, null, null));
+    dispatcher.post(WhirlpoolAccount.POSTMIX, changes(true, utxo2, null, null));
+    dispatcher.post(WhirlpoolAccount.PREMIX, changes(false, utxo3, null, null));
+    dispatcher.post(WhirlpoolAccount.POSTMIX, changes(false, utxo4, null, null));
+
+    // never merged across first fetch
+    Assertions.assertEquals(4, dispatcher.getNbPending());
+    Assertions.assertEquals(0, dispatcher.getNbCoalesced());
+    tasks.remove(0).run();
+    Assertions.assertTrue(dispatched.get(0).isFirstFetch());
+    Assertions.assertTrue(dispatched.get(1).isFirstFetch());
+    Assertions.assertFalse(dispatched.get(2).isFirstFetch());
+    Assertions.assertFalse(dispatched.get(3).isFirstFetch());
+
+    // bounded by account
+    for (int i = 0; i < 10; i++) {
+      dispatcher.post(WhirlpoolAccount.PREMIX, changes(false, null, utxo1, null));
+      dispatcher.post(WhirlpoolAccount.POSTMIX, changes(false, null, utxo2, null));
+    }
+    Assertions.assertEquals(2, dispatcher.getNbPending());
+    Assertions.assertEquals(2, dispatcher.getNbPendingUtxos());
+  }
+
+  private WhirlpoolUtxoChanges changes(
+      boolean isFirstFetch, WhirlpoolUtxo detected, WhirlpoolUtxo updated, WhirlpoolUtxo removed) {
+    WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(isFirstFetch);
+    if (detected != null) {
+      whirlpoolUtxoChanges.getUtxosDetected().add(detected);
+    }
+    if (updated != null) {
+      whirlpoolUtxoChanges.getUtxosUpdated().add(updated);
+    }
+    if (removed != null) {
+      whirlpoolUtxoChanges.getUtxosRemoved().add(removed);
+    }
+    return whirlpoolUtxoChanges;
+  }
+}
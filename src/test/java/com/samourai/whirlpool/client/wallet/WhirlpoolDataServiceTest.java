@@ -0,0 +1,199 @@
+package com.samourai.whirlpool.client.wallet;
+
+import com.samourai.wallet.api.backend.BackendApi;
+import com.samourai.wallet.api.backend.BackendServer;
+import com.samourai.wallet.api.backend.beans.MultiAddrResponse;
+import com.samourai.wallet.api.backend.beans.UnspentResponse.UnspentOutput;
+import com.samourai.wallet.hd.HD_Wallet;
+import com.samourai.wallet.util.oauth.OAuthManager;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolAccount;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolServer;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.persist.FileWhirlpoolWalletPersistHandler;
+import java.io.File;
+import java.util.*;
+import java8.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WhirlpoolDataServiceTest extends AbstractTest {
+  private final WhirlpoolWalletService whirlpoolWalletService = new WhirlpoolWalletService();
+  private WhirlpoolWalletConfig config;
+  private WhirlpoolDataService dataService;
+  private WhirlpoolWallet whirlpoolWallet;
+
+  // backend mock
+  private Map<String, List<UnspentOutput>> backendUtxos;
+  private List<Integer> batchFetchs; // nb zpubs by multi-zpub request
+  private int nbAccountFetchs;
+
+  public WhirlpoolDataServiceTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    backendUtxos = new HashMap<String, List<UnspentOutput>>();
+    batchFetchs = new ArrayList<Integer>();
+    nbAccountFetchs = 0;
+
+    File fileState = File.createTempFile("state", null);
+    File fileUtxos = File.createTempFile("utxos", null);
+    fileState.delete();
+    fileUtxos.delete();
+    FileWhirlpoolWalletPersistHandler persistHandler =
+        new FileWhirlpoolWalletPersistHandler(fileState, fileUtxos);
+    persistHandler.setInitialized(true);
+
+    config =
+        new WhirlpoolWalletConfig(
+            null,
+            null,
+            persistHandler,
+            WhirlpoolServer.LOCAL_TESTNET.getServerUrl(false),
+            WhirlpoolServer.LOCAL_TESTNET.getParams(),
+            false,
+            computeBackendApi());
+    dataService = new WhirlpoolDataService(config, whirlpoolWalletService);
+    byte[] seed =
+        hdWalletFactory.computeSeedFromWords("all all all all all all all all all all all all");
+    HD_Wallet bip84w = hdWalletFactory.getBIP84(seed, "foo", params);
+    whirlpoolWallet = whirlpoolWalletService.openWallet(config, dataService, bip84w);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    whirlpoolWalletService.closeWallet();
+  }
+
+  private BackendApi computeBackendApi() {
+    String backendUrl = BackendServer.TESTNET.getBackendUrl(false);
+    return new BackendApi(null, backendUrl, Optional.<OAuthManager>empty()) {
+      @Override
+      public List<UnspentOutput> fetchUtxos(String[] zpubs) {
+        // MOCK
+        batchFetchs.add(zpubs.length);
+        List<UnspentOutput> result = new ArrayList<UnspentOutput>();
+        for (String zpub : zpubs) {
+          result.addAll(fetchUtxosMock(zpub));
+        }
+        return result;
+      }
+
+      @Override
+      public List<UnspentOutput> fetchUtxos(String zpub) {
+        // MOCK
+        nbAccountFetchs++;
+        return fetchUtxosMock(zpub);
+      }
+
+      @Override
+      public Map<String, MultiAddrResponse.Address> fetchAddresses(String[] zpubs) {
+        // MOCK
+        Map<String, MultiAddrResponse.Address> result =
+            new HashMap<String, MultiAddrResponse.Address>();
+        for (String zpub : zpubs) {
+          result.put(zpub, new MultiAddrResponse.Address());
+        }
+        return result;
+      }
+
+      @Override
+      public MultiAddrResponse.Address fetchAddress(String zpub) {
+        // MOCK
+        return new MultiAddrResponse.Address();
+      }
+    };
+  }
+
+  private List<UnspentOutput> fetchUtxosMock(String zpub) {
+    List<UnspentOutput> utxos = backendUtxos.get(zpub);
+    return utxos != null ? utxos : new ArrayList<UnspentOutput>();
+  }
+
+  private UnspentOutput addBackendUtxo(WhirlpoolAccount whirlpoolAccount, String hash) {
+    String zpub = whirlpoolWallet.getWallet(whirlpoolAccount).getZpub();
+    UnspentOutput utxo = newUnspentOutput(hash, 0, 100000);
+    utxo.xpub.m = zpub;
+    if (!backendUtxos.containsKey(zpub)) {
+      backendUtxos.put(zpub, new ArrayList<UnspentOutput>());
+    }
+    backendUtxos.get(zpub).add(utxo);
+    return utxo;
+  }
+
+  private String getHashs(WhirlpoolAccount whirlpoolAccount) throws Exception {
+    List<String> hashs = new ArrayList<String>();
+    for (WhirlpoolUtxo whirlpoolUtxo : dataService.getUtxos(false, whirlpoolAccount)) {
+      hashs.add(whirlpoolUtxo.getUtxo().tx_hash);
+    }
+    Collections.sort(hashs);
+    return hashs.toString();
+  }
+
+  @Test
+  public void fetchUtxos_splitByXpub() throws Exception {
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit1");
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit2");
+    addBackendUtxo(WhirlpoolAccount.POSTMIX, "postmix1");
+
+    Assertions.assertEquals("[deposit1, deposit2]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals("[]", getHashs(WhirlpoolAccount.PREMIX));
+    Assertions.assertEquals("[postmix1]", getHashs(WhirlpoolAccount.POSTMIX));
+
+    // all accounts in a single request
+    int nbAccounts = WhirlpoolAccount.values().length;
+    Assertions.assertEquals(Arrays.asList(nbAccounts), batchFetchs);
+    Assertions.assertEquals(0, nbAccountFetchs);
+  }
+
+  @Test
+  public void fetchUtxos_unknownXpub() throws Exception {
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit1");
+    addBackendUtxo(WhirlpoolAccount.PREMIX, "premix1").xpub.m = "unknown";
+
+    // fallback to fetching accounts separately
+    Assertions.assertEquals("[deposit1]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals("[premix1]", getHashs(WhirlpoolAccount.PREMIX));
+    Assertions.assertEquals(1, batchFetchs.size());
+    Assertions.assertEquals(WhirlpoolAccount.values().length, nbAccountFetchs);
+  }
+
+  @Test
+  public void fetchUtxos_fallbackByAccount() throws Exception {
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit1");
+    addBackendUtxo(WhirlpoolAccount.POSTMIX, "postmix1").xpub = null;
+
+    // fallback to fetching accounts separately
+    Assertions.assertEquals("[postmix1]", getHashs(WhirlpoolAccount.POSTMIX));
+    Assertions.assertEquals("[deposit1]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals(1, batchFetchs.size());
+    Assertions.assertEquals(WhirlpoolAccount.values().length, nbAccountFetchs);
+  }
+
+  @Test
+  public void clearUtxos_account() throws Exception {
+    config.setRefreshUtxoStaleWhileRevalidate(true);
+    dataService.clearUtxos();
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit1");
+    addBackendUtxo(WhirlpoolAccount.PREMIX, "premix1");
+    Assertions.assertEquals("[deposit1]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals(1, batchFetchs.size());
+
+    // cached
+    addBackendUtxo(WhirlpoolAccount.DEPOSIT, "deposit2");
+    addBackendUtxo(WhirlpoolAccount.PREMIX, "premix2");
+    Assertions.assertEquals("[deposit1]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals(1, batchFetchs.size());
+
+    // explicit clear waits for fresh utxos of this account only
+    dataService.clearUtxos(WhirlpoolAccount.DEPOSIT);
+    Assertions.assertEquals("[deposit1, deposit2]", getHashs(WhirlpoolAccount.DEPOSIT));
+    Assertions.assertEquals(Arrays.asList(WhirlpoolAccount.values().length, 1), batchFetchs);
+    Assertions.assertEquals("[premix1]", getHashs(WhirlpoolAccount.PREMIX));
+    Assertions.assertEquals(2, batchFetchs.size());
+  }
+}
@@ -0,0 +1,36 @@
+package com.samourai.whirlpool.client.wallet.beans;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.utils.ClientUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class UtxoKeyTest extends AbstractTest {
+  private static final String TXID =
+      "cb2fad88ae75fdabb2bcc131b2f4f0ff2c82af22b6dd804dc341900195fb6187";
+
+  @Test
+  public void equalsAndHash() throws Exception {
+    UtxoKey utxoKey = new UtxoKey(TXID, 2);
+    Assertions.assertEquals(new UtxoKey(TXID, 2), utxoKey);
+    Assertions.assertEquals(new UtxoKey(TXID, 2).hashCode(), utxoKey.hashCode());
+    Assertions.assertNotEquals(new UtxoKey(TXID, 3), utxoKey);
+    Assertions.assertEquals(TXID, utxoKey.getUtxoHash());
+    Assertions.assertEquals(TXID + ":2", utxoKey.toString());
+
+    // non-hex hash
+    Assertions.assertEquals(new UtxoKey("foo", 1), new UtxoKey("foo", 1));
+    Assertions.assertEquals("foo:1", new UtxoKey("foo", 1).toString());
+  }
+
+  @Test
+  public void persistKey() throws Exception {
+    // same as previous persisted keys
+    Assertions.assertEquals(
+        ClientUtils.sha256Hash(ClientUtils.utxoToKey(TXID, 2)),
+        new UtxoKey(TXID, 2).getPersistKey());
+    Assertions.assertEquals(
+        ClientUtils.sha256Hash(ClientUtils.utxoToKey("foo", 1)),
+        new UtxoKey("foo", 1).getPersistKey());
+  }
+}
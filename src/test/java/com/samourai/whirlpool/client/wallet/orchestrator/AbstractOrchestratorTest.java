@@ -0,0 +1,72 @@
+package com.samourai.whirlpool.client.wallet.orchestrator;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AbstractOrchestratorTest extends AbstractTest {
+  private static final long NEVER = 3600000;
+
+  private List<Runnable> scheduledTasks = new ArrayList<Runnable>();
+  private List<ScheduledFuture<?>> scheduledFutures = new ArrayList<ScheduledFuture<?>>();
+  private int nbRuns = 0;
+
+  public AbstractOrchestratorTest() {
+    super();
+  }
+
+  @Test
+  public void replacedRun() throws Exception {
+    // scheduled tasks are run by test
+    OrchestratorScheduler scheduler =
+        new OrchestratorScheduler(1) {
+          @Override
+          protected ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+            scheduledTasks.add(task);
+            ScheduledFuture<?> future =
+                super.schedule(
+                    new Runnable() {
+                      @Override
+                      public void run() {}
+                    },
+                    NEVER);
+            scheduledFutures.add(future);
+            return future;
+          }
+        };
+    AbstractOrchestrator orchestrator =
+        new AbstractOrchestrator(999999, 999999, null, scheduler) {
+          @Override
+          protected void runOrchestrator() {
+            nbRuns++;
+          }
+        };
+    orchestrator.start();
+    Assertions.assertEquals(1, scheduledTasks.size());
+
+    // first run is already dispatched when notified
+    orchestrator.notifyOrchestrator();
+    Assertions.assertEquals(2, scheduledTasks.size());
+    Assertions.assertTrue(scheduledFutures.get(0).isCancelled());
+
+    // replaced run doesn't run
+    scheduledTasks.get(0).run();
+    Assertions.assertEquals(0, nbRuns);
+    Assertions.assertEquals(2, scheduledTasks.size());
+
+    // current run runs then schedules next run
+    scheduledTasks.get(1).run();
+    Assertions.assertEquals(1, nbRuns);
+    Assertions.assertEquals(3, scheduledTasks.size());
+
+    // stop cancels next run
+    orchestrator.stop();
+    Assertions.assertTrue(scheduledFutures.get(2).isCancelled());
+    scheduledTasks.get(2).run();
+    Assertions.assertEquals(1, nbRuns);
+    scheduler.shutdown();
+  }
+}
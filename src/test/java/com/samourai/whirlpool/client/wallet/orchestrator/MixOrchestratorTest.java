@@ -10,7 +10,6 @@ import com.samourai.whirlpool.client.whirlpool.listener.WhirlpoolClientListener;
 import java.util.*;
 import java8.util.function.Function;
 import java8.util.stream.Collectors;
-import java8.util.stream.Stream;
 import java8.util.stream.StreamSupport;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -48,11 +47,6 @@ public class MixOrchestratorTest extends AbstractTest {
 
     data =
         new MixOrchestratorData(mixingState) {
-          @Override
-          public Stream<WhirlpoolUtxo> getQueue() {
-            return StreamSupport.stream(utxos);
-          }
-
           @Override
           public Collection<Pool> getPools() throws Exception {
             return MixOrchestratorTest.this.getPools();
@@ -60,7 +54,15 @@ public class MixOrchestratorTest extends AbstractTest {
         };
 
     mixOrchestrator =
-        new MixOrchestrator(999999, 0, data, maxClients, maxClientsPerPool, true, 99) {
+        new MixOrchestrator(
+            999999,
+            0,
+            data,
+            maxClients,
+            maxClientsPerPool,
+            true,
+            99,
+            OrchestratorScheduler.getInstance()) {
           @Override
           protected WhirlpoolClient runWhirlpoolClient(
               WhirlpoolUtxo whirlpoolUtxo, WhirlpoolClientListener listener) {
@@ -86,14 +88,18 @@ public class MixOrchestratorTest extends AbstractTest {
           }
         };
 
-    WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(true);
-    whirlpoolUtxoChanges.getUtxosDetected().addAll(utxos);
-    mixOrchestrator.onUtxoChanges(whirlpoolUtxoChanges);
+    detectUtxos();
 
     Thread.sleep(600);
     log.debug("// --- init complete ---");
   }
 
+  private void detectUtxos() {
+    WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(true);
+    whirlpoolUtxoChanges.getUtxosDetected().addAll(utxos);
+    mixOrchestrator.onUtxoChanges(whirlpoolUtxoChanges);
+  }
+
   @AfterEach
   public void tearDown() {
     log.debug("// --- tearDown ---");
@@ -120,11 +126,14 @@ public class MixOrchestratorTest extends AbstractTest {
     verifySortShuffled(utxoStrings);
     mixOrchestrator.stop();
     mixingHistory.clear();
+
+    // utxos are detected again on restart
+    detectUtxos();
     return utxoStrings;
   }
 
   private void findAndMixAll() throws Exception {
-    mixOrchestrator.start(false);
+    mixOrchestrator.start();
     boolean found;
     do {
       found = mixOrchestrator.findAndMix();
@@ -241,6 +250,58 @@ public class MixOrchestratorTest extends AbstractTest {
     Assertions.assertEquals("0.01btcPremix10confNew:3", utxoStrings[1]);
   }
 
+  @Test
+  public void testQueueIndex() throws Exception {
+    init(99, 99);
+
+    // all utxos queued by autoMix, unconfirmed ones are not mixable
+    Assertions.assertEquals(8, data.getNbQueued());
+    Assertions.assertEquals(6, toUtxoStrings(queueMixable()).length);
+    Assertions.assertTrue(data.hasQueuedMixableOrUnconfirmed());
+
+    // remove from queue
+    WhirlpoolUtxo utxo = utxos.get(1);
+    mixOrchestrator.mixStop(utxo, true, false);
+    Assertions.assertEquals(7, data.getNbQueued());
+    Assertions.assertEquals(7, mixingState.getNbQueued());
+    Assertions.assertEquals(5, queueMixable().size());
+
+    // confirm "0.01btcPremix0conf" => mixable, first by priority
+    utxo = utxos.get(0);
+    utxo.getUtxo().confirmations = 7;
+    {
+      WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(false);
+      whirlpoolUtxoChanges.getUtxosUpdated().add(utxo);
+      mixOrchestrator.onUtxoChanges(whirlpoolUtxoChanges);
+    }
+    Assertions.assertEquals(6, queueMixable().size());
+    String[] utxoStrings = toUtxoStrings(queueMixable());
+    Assertions.assertTrue(ArrayUtils.indexOf(utxoStrings, "0.01btcPremix0conf:3") < 2);
+
+    // error => lowest premix priority, after older error
+    utxo.getUtxoState().setLastError(5L);
+    utxoStrings = toUtxoStrings(queueMixable());
+    Assertions.assertEquals("0.01btcPremix5confError:3", utxoStrings[1]);
+    Assertions.assertEquals("0.01btcPremix0conf:3", utxoStrings[2]);
+
+    // spent => removed from queue
+    {
+      WhirlpoolUtxoChanges whirlpoolUtxoChanges = new WhirlpoolUtxoChanges(false);
+      whirlpoolUtxoChanges.getUtxosRemoved().add(utxo);
+      mixOrchestrator.onUtxoChanges(whirlpoolUtxoChanges);
+    }
+    Assertions.assertEquals(6, data.getNbQueued());
+    Assertions.assertEquals(5, queueMixable().size());
+  }
+
+  private List<WhirlpoolUtxo> queueMixable() {
+    List<WhirlpoolUtxo> queueMixable = new ArrayList<WhirlpoolUtxo>();
+    for (WhirlpoolUtxo whirlpoolUtxo : data.getQueueMixable(POOL_001)) {
+      queueMixable.add(whirlpoolUtxo);
+    }
+    return queueMixable;
+  }
+
   private void verifySortShuffled(String[] utxoStrings) {
     // first premix
     for (int i = 0; i < 2; i++) {
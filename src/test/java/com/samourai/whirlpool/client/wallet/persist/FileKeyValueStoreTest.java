@@ -0,0 +1,86 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+import com.samourai.whirlpool.client.test.AbstractTest;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FileKeyValueStoreTest extends AbstractTest {
+  private File file;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    file = new File("/tmp/store");
+    if (file.exists()) {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void commitAndReopen() throws Exception {
+    FileKeyValueStore store = new FileKeyValueStore(file);
+    Assertions.assertTrue(store.isEmpty());
+    store.put("foo", "1");
+    store.put("bar", "2");
+    Assertions.assertEquals("1", store.get("foo"));
+    store.commit();
+
+    store.put("foo", "3");
+    store.delete("bar");
+    store.commit();
+
+    // uncommitted
+    store.put("baz", "4");
+    store.close();
+
+    store = new FileKeyValueStore(file);
+    Assertions.assertEquals("3", store.get("foo"));
+    Assertions.assertNull(store.get("bar"));
+    Assertions.assertNull(store.get("baz"));
+    Assertions.assertEquals(1, store.keys().size());
+    store.close();
+  }
+
+  @Test
+  public void keysByPrefix() throws Exception {
+    FileKeyValueStore store = new FileKeyValueStore(file);
+    store.put("utxo/a", "1");
+    store.put("utxo/b", "2");
+    store.put("index/a", "3");
+    store.commit();
+
+    // staged changes included
+    store.delete("utxo/a");
+    store.put("utxo/c", "4");
+    Assertions.assertEquals(
+        new HashSet<String>(Arrays.asList("utxo/b", "utxo/c")),
+        new HashSet<String>(store.keys("utxo/")));
+    Assertions.assertEquals(3, store.keys().size());
+    store.close();
+  }
+
+  @Test
+  public void tornCommit() throws Exception {
+    FileKeyValueStore store = new FileKeyValueStore(file);
+    store.put("foo", "1");
+    store.commit();
+    long length = file.length();
+    store.put("foo", "2");
+    store.commit();
+    store.close();
+
+    // truncate last commit
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.setLength(file.length() - 1);
+    raf.close();
+
+    store = new FileKeyValueStore(file);
+    Assertions.assertEquals("1", store.get("foo"));
+    Assertions.assertEquals(length, file.length());
+    store.close();
+  }
+}
@@ -32,14 +32,13 @@ public class FileWhirlpoolWalletPersistHandlerTest extends AbstractTest {
   @BeforeEach
   public void setup() throws Exception {
     fileState = new File("/tmp/state");
-    if (fileState.exists()) {
-      fileState.delete();
-    }
+    delete(fileState);
+    delete(new File("/tmp/state.journal"));
 
     fileUtxos = new File("/tmp/utxos");
-    if (fileUtxos.exists()) {
-      fileUtxos.delete();
-    }
+    delete(fileUtxos);
+    delete(new File("/tmp/utxos.log"));
+    delete(new File("/tmp/utxos.log.compacting"));
 
     this.persistHandler = new FileWhirlpoolWalletPersistHandler(fileState, fileUtxos);
     persistHandler.setInitialized(true);
@@ -47,6 +46,12 @@ public class FileWhirlpoolWalletPersistHandlerTest extends AbstractTest {
     this.whirlpoolWallet = computeWallet();
   }
 
+  private void delete(File file) {
+    if (file.exists()) {
+      file.delete();
+    }
+  }
+
   private void reload() {
     ((FileWhirlpoolWalletPersistHandler) whirlpoolWallet.getConfig().getPersistHandler())
         .getUtxoConfigHandler()
@@ -138,6 +143,41 @@ public class FileWhirlpoolWalletPersistHandlerTest extends AbstractTest {
     Assertions.assertEquals(5, persistHandler.getUtxoConfig("foo", 1).getMixsTarget());
   }
 
+  @Test
+  public void testLog() throws Exception {
+    File fileLog = new File("/tmp/utxos.log");
+
+    UnspentOutput utxoFoo = new UnspentOutput();
+    utxoFoo.tx_output_n = 1;
+    utxoFoo.tx_hash = "foo";
+    utxoFoo.value = 1234;
+    utxoFoo.confirmations = 9999;
+    utxoFoo.addr = "foo";
+    utxoFoo.xpub = new UnspentResponse.UnspentOutput.Xpub();
+    utxoFoo.xpub.path = "foo";
+    WhirlpoolUtxo foo = computeUtxo(utxoFoo);
+    foo.getUtxoConfig().setMixsTarget(1);
+
+    // changes are appended to log
+    persistHandler.save();
+    long logLength = fileLog.length();
+    Assertions.assertTrue(logLength > 0);
+    foo.getUtxoConfig().incrementMixsDone();
+    persistHandler.save();
+    Assertions.assertTrue(fileLog.length() > logLength);
+
+    // nothing to append
+    logLength = fileLog.length();
+    Assertions.assertFalse(persistHandler.getUtxoConfigHandler().save());
+    Assertions.assertEquals(logLength, fileLog.length());
+
+    // replayed and compacted on load
+    reload();
+    Assertions.assertEquals(1, persistHandler.getUtxoConfig("foo", 1).getMixsDone());
+    Assertions.assertFalse(fileLog.exists());
+    Assertions.assertTrue(fileUtxos.length() > 0);
+  }
+
   private WhirlpoolWallet computeWallet() throws Exception {
     String backendUrl = BackendServer.TESTNET.getBackendUrl(false);
     BackendApi backendApi =
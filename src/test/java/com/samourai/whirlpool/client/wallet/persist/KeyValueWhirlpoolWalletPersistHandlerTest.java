@@ -0,0 +1,161 @@
+package com.samourai.whirlpool.client.wallet.persist;
+
+import com.samourai.wallet.client.indexHandler.FileIndexHandler;
+import com.samourai.wallet.client.indexHandler.IIndexHandler;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.wallet.beans.UtxoKey;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolAccount;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxo;
+import com.samourai.whirlpool.client.wallet.beans.WhirlpoolUtxoConfig;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class KeyValueWhirlpoolWalletPersistHandlerTest extends AbstractTest {
+  private File fileStore;
+  private File fileIndex;
+  private File fileUtxos;
+
+  public KeyValueWhirlpoolWalletPersistHandlerTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    fileStore = new File("/tmp/kvstore");
+    fileIndex = new File("/tmp/kvstore-state");
+    fileUtxos = new File("/tmp/kvstore-utxos");
+    for (String path :
+        new String[] {
+          "/tmp/kvstore",
+          "/tmp/kvstore.compact",
+          "/tmp/kvstore-state",
+          "/tmp/kvstore-state.journal",
+          "/tmp/kvstore-utxos",
+          "/tmp/kvstore-utxos.log",
+          "/tmp/kvstore-utxos.log.compacting"
+        }) {
+      File file = new File(path);
+      if (file.exists()) {
+        file.delete();
+      }
+    }
+  }
+
+  @Test
+  public void indexes() throws Exception {
+    KeyValueWhirlpoolWalletPersistHandler persistHandler =
+        new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    IIndexHandler indexHandler = persistHandler.getIndexHandler("foo");
+    Assertions.assertEquals(0, indexHandler.getAndIncrement());
+    Assertions.assertEquals(1, indexHandler.getAndIncrement());
+    persistHandler.setInitialized(true);
+    persistHandler.close();
+
+    // committed immediately
+    persistHandler = new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    Assertions.assertEquals(2, persistHandler.getIndexHandler("foo").get());
+    Assertions.assertTrue(persistHandler.isInitialized());
+
+    // write failure is not ignored
+    persistHandler.close();
+    try {
+      persistHandler.getIndexHandler("foo").set(5);
+      Assertions.fail();
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void utxoConfigs() throws Exception {
+    KeyValueWhirlpoolWalletPersistHandler persistHandler =
+        new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    WhirlpoolUtxoConfig utxoConfig = new WhirlpoolUtxoConfig("pool", 5, 0, 0);
+    persistHandler.addUtxoConfig("foo", 1, utxoConfig);
+    persistHandler.save();
+
+    // modifications are saved
+    utxoConfig.incrementMixsDone();
+    persistHandler.save();
+    persistHandler.close();
+
+    persistHandler = new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    Assertions.assertEquals(1, persistHandler.getUtxoConfig("foo", 1).getMixsDone());
+    Assertions.assertEquals("pool", persistHandler.getUtxoConfig("foo", 1).getPoolId());
+    Assertions.assertNull(persistHandler.getUtxoConfig("foo", 2));
+    persistHandler.close();
+  }
+
+  @Test
+  public void cleanUtxoConfig() throws Exception {
+    KeyValueWhirlpoolWalletPersistHandler persistHandler =
+        new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    WhirlpoolUtxo known = newUtxo("pool", WhirlpoolAccount.PREMIX, "known", 1, null);
+    WhirlpoolUtxo obsolete = newUtxo("pool", WhirlpoolAccount.PREMIX, "obsolete", 1, null);
+    persistHandler.addUtxoConfig(known.getUtxoKey(), new WhirlpoolUtxoConfig(1));
+    persistHandler.addUtxoConfig(obsolete.getUtxoKey(), new WhirlpoolUtxoConfig(2));
+    persistHandler.save();
+    persistHandler.close();
+
+    // obsolete entry is evicted from memory but kept in store
+    persistHandler = new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    WhirlpoolUtxoConfig obsoleteConfig = persistHandler.getUtxoConfig(obsolete.getUtxoKey());
+    List<WhirlpoolUtxo> knownUtxos = new ArrayList<WhirlpoolUtxo>();
+    knownUtxos.add(known);
+    persistHandler.cleanUtxoConfig(knownUtxos);
+    persistHandler.save();
+    WhirlpoolUtxoConfig reloaded = persistHandler.getUtxoConfig(obsolete.getUtxoKey());
+    Assertions.assertNotSame(obsoleteConfig, reloaded);
+    Assertions.assertEquals(2, reloaded.getMixsDone());
+
+    // entry in use again is not removed
+    knownUtxos.add(obsolete);
+    persistHandler.cleanUtxoConfig(knownUtxos);
+    knownUtxos.remove(obsolete);
+    persistHandler.cleanUtxoConfig(knownUtxos);
+    persistHandler.save();
+    Assertions.assertNotNull(persistHandler.getUtxoConfig(obsolete.getUtxoKey()));
+
+    // obsolete twice => removed
+    persistHandler.cleanUtxoConfig(knownUtxos);
+    persistHandler.save();
+    Assertions.assertNull(persistHandler.getUtxoConfig(obsolete.getUtxoKey()));
+    Assertions.assertNotNull(persistHandler.getUtxoConfig(known.getUtxoKey()));
+    persistHandler.close();
+
+    persistHandler = new KeyValueWhirlpoolWalletPersistHandler(fileStore);
+    Assertions.assertNull(persistHandler.getUtxoConfig(obsolete.getUtxoKey()));
+    Assertions.assertEquals(1, persistHandler.getUtxoConfig(known.getUtxoKey()).getMixsDone());
+    persistHandler.close();
+  }
+
+  @Test
+  public void migrate() throws Exception {
+    // files of FileWhirlpoolWalletPersistHandler, with changes not compacted yet
+    FileIndexHandler fileIndexHandler = new FileIndexHandler(fileIndex);
+    fileIndexHandler.set("foo", 12);
+    fileIndexHandler.flush();
+    Assertions.assertFalse(fileIndex.exists());
+    FileWhirlpoolUtxoConfigHandler fileUtxoConfigHandler =
+        new FileWhirlpoolUtxoConfigHandler(fileUtxos);
+    fileUtxoConfigHandler.add(
+        new UtxoKey("bar", 3).getPersistKey(), new WhirlpoolUtxoConfig("pool", 5, 2, 0));
+    fileUtxoConfigHandler.save();
+
+    KeyValueWhirlpoolWalletPersistHandler persistHandler =
+        new KeyValueWhirlpoolWalletPersistHandler(fileStore, fileIndex, fileUtxos);
+    Assertions.assertEquals(12, persistHandler.getIndexHandler("foo").get());
+    Assertions.assertEquals(2, persistHandler.getUtxoConfig("bar", 3).getMixsDone());
+    persistHandler.getIndexHandler("foo").set(13);
+    persistHandler.close();
+
+    // migrated only once
+    persistHandler = new KeyValueWhirlpoolWalletPersistHandler(fileStore, fileIndex, fileUtxos);
+    Assertions.assertEquals(13, persistHandler.getIndexHandler("foo").get());
+    persistHandler.close();
+  }
+}
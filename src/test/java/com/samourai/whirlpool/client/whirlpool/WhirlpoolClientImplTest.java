@@ -0,0 +1,89 @@
+package com.samourai.whirlpool.client.whirlpool;
+
+import com.samourai.whirlpool.client.WhirlpoolClient;
+import com.samourai.whirlpool.client.mix.listener.MixFailReason;
+import com.samourai.whirlpool.client.mix.listener.MixStep;
+import com.samourai.whirlpool.client.mix.listener.MixSuccess;
+import com.samourai.whirlpool.client.test.AbstractTest;
+import com.samourai.whirlpool.client.wallet.beans.MixProgress;
+import com.samourai.whirlpool.client.whirlpool.listener.WhirlpoolClientListener;
+import io.reactivex.subjects.Subject;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WhirlpoolClientImplTest extends AbstractTest {
+  private List<Runnable> tasks;
+  private List<MixFailReason> failReasons;
+  private WhirlpoolClientConfig config;
+
+  public WhirlpoolClientImplTest() {
+    super();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    tasks = new LinkedList<Runnable>();
+    failReasons = new LinkedList<MixFailReason>();
+    config = new WhirlpoolClientConfig(null, null, null, "http://server", params, false);
+    config.setClientExecutor(
+        new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            tasks.add(runnable);
+          }
+        });
+  }
+
+  @Test
+  public void stopBeforeConnect_cancel() throws Exception {
+    WhirlpoolClient whirlpoolClient = WhirlpoolClientImpl.newClient(config);
+    whirlpoolClient.whirlpool(null, computeListener());
+    Assertions.assertEquals(1, tasks.size());
+
+    // stopped while connect task is queued
+    whirlpoolClient.stop(true);
+    Assertions.assertTrue(failReasons.isEmpty());
+
+    // connect task fails with stop reason, without connecting
+    tasks.remove(0).run();
+    Assertions.assertEquals(1, failReasons.size());
+    Assertions.assertEquals(MixFailReason.CANCEL, failReasons.get(0));
+    Assertions.assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  public void stopBeforeConnect_stop() throws Exception {
+    WhirlpoolClient whirlpoolClient = WhirlpoolClientImpl.newClient(config);
+    whirlpoolClient.whirlpool(null, computeListener());
+    whirlpoolClient.stop(false);
+    tasks.remove(0).run();
+    Assertions.assertEquals(1, failReasons.size());
+    Assertions.assertEquals(MixFailReason.STOP, failReasons.get(0));
+  }
+
+  private WhirlpoolClientListener computeListener() {
+    return new WhirlpoolClientListener() {
+      @Override
+      public void success(MixSuccess mixSuccess) {
+        Assertions.fail();
+      }
+
+      @Override
+      public void fail(MixFailReason reason, String notifiableError) {
+        failReasons.add(reason);
+      }
+
+      @Override
+      public void progress(MixStep step) {}
+
+      @Override
+      public Subject<MixProgress> getObservable() {
+        return null;
+      }
+    };
+  }
+}